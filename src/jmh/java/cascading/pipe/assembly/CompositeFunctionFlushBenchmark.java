@@ -0,0 +1,103 @@
+package cascading.pipe.assembly;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains a full sketch through {@link CompositeFunction#flush}, the tail of every map
+ * task. The function is prepared and refilled before each invocation, only the drain
+ * into a collector that drops the tuples is timed.
+ *
+ * @author: pavanachanta
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CompositeFunctionFlushBenchmark
+{
+    private static final Fields WORD = new Fields( "word" );
+
+    @Param( {"1000", "100000"} )
+    int topK;
+
+    CompositeFunction function;
+
+    ConcreteCall<CompositeFunction.Context, Object> call;
+
+    Tuple[] stream;
+
+    DroppingCollector collector;
+
+    @Setup( Level.Trial )
+    public void generate()
+    {
+        Fields count = new Fields( "count" ).applyTypes( Long.TYPE );
+        function = new CompositeFunction( WORD, Fields.ALL, new CountBySketch.CountPartials( count ), topK );
+        collector = new DroppingCollector( function.getFieldDeclaration() );
+
+        // topK distinct words seen 1 to 8 times, so the drain walks several buckets
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for( int i = 0; i < topK; i++ )
+        {
+            Tuple word = new Tuple( "w" + Integer.toString( i, 36 ) );
+            for( int j = 0; j <= i % 8; j++ )
+                tuples.add( word );
+        }
+        stream = tuples.toArray( new Tuple[ tuples.size() ] );
+    }
+
+    @Setup( Level.Invocation )
+    public void fill()
+    {
+        call = new ConcreteCall<CompositeFunction.Context, Object>( WORD );
+        call.setOutputCollector( collector );
+        function.prepare( FlowProcess.NULL, call );
+        call.getContext().topN.addAll( stream, 0, stream.length );
+    }
+
+    @Benchmark
+    public long flush()
+    {
+        function.flush( FlowProcess.NULL, call );
+        return collector.collected;
+    }
+
+    static class DroppingCollector extends TupleEntryCollector
+    {
+        long collected;
+
+        DroppingCollector( Fields declared )
+        {
+            super( declared );
+        }
+
+        @Override
+        protected void collect( TupleEntry tupleEntry )
+        {
+            collected++;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of per-element {@link FrequentItemsSketch#add(Object)} against
+ * {@link FrequentItemsSketch#addAll(Object[], int, int)} on Zipf distributed word streams,
+ * for every engine. One invocation adds the whole stream to a fresh sketch of 1000
+ * counters, the scores are Mkeys/s as ops/us.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchAddBenchmark {
+
+    static final int STREAM_LENGTH = 5000000;
+
+    static final int M = 1000;
+
+    @Param({"1.0", "1.2", "1.5"})
+    double skew;
+
+    @Param({"256"})
+    int batchSize;
+
+    @Param({"LINKED", "ARRAY", "MISRA_GRIES", "LOSSY_COUNTING", "FILTERED", "STRIPED"})
+    SketchEngine engine;
+
+    String[] stream;
+
+    FrequentItemsSketch<String> topN;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = WordStreams.zipfStream(STREAM_LENGTH, 100 * M, skew, new Random(17));
+    }
+
+    @Setup(Level.Invocation)
+    public void createSketch() {
+        topN = engine.create(M);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public int add() {
+        FrequentItemsSketch<String> topN = this.topN;
+        for(String e : stream){
+            topN.add(e);
+        }
+        return topN.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public int addAll() {
+        FrequentItemsSketch<String> topN = this.topN;
+        for(int from = 0; from < stream.length; from += batchSize){
+            topN.addAll(stream, from, Math.min(stream.length, from + batchSize));
+        }
+        return topN.size();
+    }
+}
@@ -0,0 +1,80 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The list operations behind a {@link SpaceSavingTopN} increment: an element node moving
+ * from its bucket's list to the head of the next bucket's, and a bucket linked after
+ * its predecessor and unlinked again once it empties.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassicLinkedListBenchmark {
+
+    @Param({"16", "4096"})
+    int size;
+
+    ClassicLinkedList<Integer> from;
+
+    ClassicLinkedList<Integer> to;
+
+    //middle node the bucket benchmarks insert after
+    Node<Integer> pred;
+
+    Node<Integer> spare;
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        from = new ClassicLinkedList<Integer>();
+        to = new ClassicLinkedList<Integer>();
+        for(int i = 0; i < size; i++){
+            Node<Integer> node = from.addAndGetFirst(i);
+            if(i == size / 2)
+                pred = node;
+        }
+        spare = new Node<Integer>(null, -1, null);
+    }
+
+    @Benchmark
+    public Node<Integer> relink() {
+        if(from.isEmpty()){
+            ClassicLinkedList<Integer> swap = from;
+            from = to;
+            to = swap;
+        }
+        Node<Integer> node = from.getLast();
+        from.unlink(node);
+        to.addNodeFirst(node);
+        return node;
+    }
+
+    @Benchmark
+    public Integer linkReusedNode() {
+        from.insertNodeAfter(pred, spare);
+        return from.unlink(spare);
+    }
+
+    @Benchmark
+    public Integer linkAllocatedNode() {
+        return from.unlink(from.insertElementAfterNode(pred, -1));
+    }
+}
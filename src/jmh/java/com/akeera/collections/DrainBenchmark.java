@@ -0,0 +1,110 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the counters out of a full sketch: the top K through {@link SpaceSavingTopN#elements()}
+ * with a lookup per element into a {@link BoundedTopK}, as the flushes did, against
+ * {@link SpaceSavingTopN#descendingIterator(int)}, all counters both ways, and the
+ * heavy hitters through {@link SpaceSavingTopN#heavyHitters(double)} against a filter
+ * over every counter. The sketch is filled once, the reads leave it as it is.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class DrainBenchmark {
+
+    static final int K = 100;
+
+    static final double PHI = 0.001;
+
+    @Param({"1000000"})
+    int m;
+
+    SpaceSavingTopN<String> topN;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        topN = new SpaceSavingTopN<String>(m);
+        Random rn = new Random(3);
+        for(int i = 0; i < m; i++){
+            //a long tail of small counts under a few large ones
+            topN.add("w" + Integer.toString(i, 36), 1 + (long)(1e6 / Math.pow(i + 1, 1.1)) + rn.nextInt(3));
+        }
+    }
+
+    @Benchmark
+    public long topKByLookup() {
+        BoundedTopK<String> top = new BoundedTopK<String>(K);
+        for(String e : topN.elements()){
+            top.offer(e, topN.getCountByElement(e));
+        }
+        top.sort();
+        return top.count(K - 1);
+    }
+
+    @Benchmark
+    public long topKDescending() {
+        long sum = 0;
+        CounterIterator<String> counters = topN.descendingIterator(K);
+        while(counters.hasNext()){
+            counters.next();
+            sum += counters.count();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long allByLookup() {
+        long sum = 0;
+        for(String e : topN.elements()){
+            sum += topN.getCountByElement(e);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long allDescending() {
+        long sum = 0;
+        CounterIterator<String> counters = topN.descendingIterator();
+        while(counters.hasNext()){
+            counters.next();
+            sum += counters.count();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int heavyByLookup() {
+        int heavy = 0;
+        for(String e : topN.elements()){
+            if(topN.getCountByElement(e) >= PHI * topN.getStreamLength())
+                heavy++;
+        }
+        return heavy;
+    }
+
+    @Benchmark
+    public int heavyHitters() {
+        return topN.heavyHitters(PHI).size();
+    }
+}
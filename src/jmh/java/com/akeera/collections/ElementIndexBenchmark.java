@@ -0,0 +1,123 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-add cost of the element index behind {@link SpaceSavingTopN}:
+ * the synchronized Hashtable path it used to take (containsKey + get, put and remove
+ * on eviction) against {@link OpenAddressingIndex} (one putIfAbsent, remove on eviction).
+ * <p/>
+ * Eviction is simulated with a round robin over the slots so that only the index is
+ * measured. One invocation indexes the whole stream into a fresh index, the scores are
+ * per add.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ElementIndexBenchmark {
+
+    static final int STREAM_LENGTH = 5000000;
+
+    @Param({"100", "10000", "1000000"})
+    int m;
+
+    //distinct keys per counter: 1 is hit dominated, 10 evicts on most adds
+    @Param({"1", "10"})
+    int keysPerCounter;
+
+    String[] stream;
+
+    Hashtable<String,Integer> hashtable;
+
+    OpenAddressingIndex<String> openAddressing;
+
+    String[] slots;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = WordStreams.zipfStream(STREAM_LENGTH, keysPerCounter * m, 1.1, new Random(m));
+    }
+
+    @Setup(Level.Invocation)
+    public void createIndexes() {
+        hashtable = new Hashtable<String,Integer>();
+        openAddressing = new OpenAddressingIndex<String>(m);
+        slots = new String[m];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public long hashtable() {
+        Hashtable<String,Integer> index = hashtable;
+        String[] slots = this.slots;
+        int size = 0;
+        int victim = 0;
+        long hits = 0;
+
+        for(String e : stream){
+            if(index.containsKey(e)){
+                hits += index.get(e);
+            }else{
+                int slot;
+                if(size == m){
+                    slot = victim;
+                    victim = (victim + 1) % m;
+                    index.remove(slots[slot]);
+                }else{
+                    slot = size++;
+                }
+                slots[slot] = e;
+                index.put(e, slot);
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public long openAddressing() {
+        OpenAddressingIndex<String> index = openAddressing;
+        String[] slots = this.slots;
+        int size = 0;
+        int victim = 0;
+        long hits = 0;
+
+        for(String e : stream){
+            int slot = size < m ? size : victim;
+            int existing = index.putIfAbsent(e, slot);
+            if(existing >= 0){
+                hits += existing;
+            }else{
+                if(size == m){
+                    victim = (victim + 1) % m;
+                    index.remove(slots[slot]);
+                }else{
+                    size++;
+                }
+                slots[slot] = e;
+            }
+        }
+        return hits;
+    }
+}
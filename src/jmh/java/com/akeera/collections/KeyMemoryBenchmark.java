@@ -0,0 +1,114 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained per counter by a full sketch of word keys: {@link SpaceSavingTopN} on
+ * String keys against {@link Utf8SpaceSavingTopN} on the same words as UTF-8 slices.
+ * <p/>
+ * Every iteration fills one sketch from empty, which is the score, and prints the heap
+ * it retains per counter once it is full. Run it single shot, the retained heap is what
+ * the benchmark is for.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class KeyMemoryBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Param({"1000000"})
+    int m;
+
+    @Param({"string", "utf8"})
+    String keys;
+
+    String[] stream;
+
+    byte[][] bytes;
+
+    SpaceSavingTopN<String> linked;
+
+    Utf8SpaceSavingTopN utf8;
+
+    long base;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = WordStreams.zipfStream(4 * m, 4 * m, 0.8, new Random(m));
+        bytes = new byte[stream.length][];
+        long keyBytes = 0;
+        for(int i = 0; i < stream.length; i++){
+            bytes[i] = stream[i].getBytes(UTF8);
+            keyBytes += bytes[i].length;
+        }
+        System.out.printf("m=%d average key %.1f bytes%n", m, (double)keyBytes / stream.length);
+    }
+
+    @Setup(Level.Iteration)
+    public void measureBase() {
+        linked = null;
+        utf8 = null;
+        base = usedHeap();
+    }
+
+    @Benchmark
+    public int fill() {
+        if(keys.equals("string")){
+            linked = new SpaceSavingTopN<String>(m);
+            for(String e : stream){
+                //a fresh key per add, as a map task would produce it
+                linked.add(new String(e));
+            }
+            return linked.size();
+        }else if(keys.equals("utf8")){
+            utf8 = new Utf8SpaceSavingTopN(m);
+            for(byte[] e : bytes){
+                utf8.add(e, 0, e.length);
+            }
+            return utf8.size();
+        }else{
+            throw new IllegalArgumentException("Unknown keys " + keys);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureRetained() {
+        long retained = usedHeap() - base;
+        if(linked != null){
+            System.out.printf("SpaceSavingTopN<String> %6.1f bytes/counter%n", (double)retained / linked.size());
+        }else{
+            System.out.printf("Utf8SpaceSavingTopN     %6.1f bytes/counter (arrays %.1f)%n",
+                    (double)retained / utf8.size(), (double)utf8.memoryBytes() / utf8.size());
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,168 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writer throughput while reader threads poll the top 100: a {@link SpaceSavingTopN}
+ * whose readers copy the top buckets under its monitor, against a
+ * {@link LiveSpaceSavingTopN} read optimistically. Each group runs one writer and two
+ * pollers, the writer and poll scores are reported separately, in keys/s and polls/s.
+ * The *Alone groups are the writer without readers. The pollers either poll back to
+ * back or sleep pauseMillis after each poll, like a dashboard. Other reader counts with
+ * e.g.
+ *     mvn -Pjmh test-compile exec:exec -Djmh.args="LiveTopN -tg 1,4"
+ * <p/>
+ * The sketches start empty on every iteration.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LiveTopNBenchmark {
+
+    static final int LENGTH = 1 << 22;
+
+    static final int K = 100;
+
+    @Param({"10000"})
+    int m;
+
+    @Param({"0", "1"})
+    long pauseMillis;
+
+    String[] stream;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = WordStreams.zipfStream(LENGTH, 100 * m, 1.1, new Random(5));
+    }
+
+    /**
+     * The sketch shared by the writer and the pollers of a group.
+     */
+    @State(Scope.Group)
+    public static class Sketches {
+        SpaceSavingTopN<String> locked;
+        LiveSpaceSavingTopN<String> live;
+
+        @Setup(Level.Iteration)
+        public void create(LiveTopNBenchmark benchmark) {
+            locked = new SpaceSavingTopN<String>(benchmark.m);
+            live = new LiveSpaceSavingTopN<String>(benchmark.m);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+
+        String next(String[] stream) {
+            String e = stream[i];
+            i = (i + 1) & (LENGTH - 1);
+            return e;
+        }
+    }
+
+    /**
+     * A poller's own result, refilled on every poll.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+        final BoundedTopK<String> top = new BoundedTopK<String>(K);
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public boolean lockedAdd(Sketches sketches, Cursor cursor) {
+        return lockedAdd(sketches.locked, cursor.next(stream));
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(2)
+    public int lockedPoll(Sketches sketches, Reader reader) throws InterruptedException {
+        int size = lockedPoll(sketches.locked, reader.top);
+        pause();
+        return size;
+    }
+
+    @Benchmark
+    @Group("lockedAlone")
+    @GroupThreads(1)
+    public boolean lockedAlone(Sketches sketches, Cursor cursor) {
+        return lockedAdd(sketches.locked, cursor.next(stream));
+    }
+
+    @Benchmark
+    @Group("live")
+    @GroupThreads(1)
+    public boolean liveAdd(Sketches sketches, Cursor cursor) {
+        return sketches.live.add(cursor.next(stream));
+    }
+
+    @Benchmark
+    @Group("live")
+    @GroupThreads(2)
+    public int livePoll(Sketches sketches, Reader reader) throws InterruptedException {
+        sketches.live.topK(reader.top);
+        pause();
+        return reader.top.size();
+    }
+
+    @Benchmark
+    @Group("liveAlone")
+    @GroupThreads(1)
+    public boolean liveAlone(Sketches sketches, Cursor cursor) {
+        return sketches.live.add(cursor.next(stream));
+    }
+
+    private void pause() throws InterruptedException {
+        if(pauseMillis > 0)
+            Thread.sleep(pauseMillis);
+    }
+
+    private static boolean lockedAdd(SpaceSavingTopN<String> topN, String e) {
+        synchronized(topN){
+            return topN.add(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int lockedPoll(SpaceSavingTopN<String> topN, BoundedTopK<String> top) {
+        top.clear();
+        synchronized(topN){
+            Node<Bucket> bucketNode = topN.getBuckets().getLast();
+            while(bucketNode != null && top.size() < K){
+                Node<String> elementNode = (Node<String>)bucketNode.item.elements.getFirst();
+                while(elementNode != null && top.size() < K){
+                    top.offer(elementNode.item, bucketNode.item.count);
+                    elementNode = elementNode.next;
+                }
+                bucketNode = bucketNode.prev;
+            }
+        }
+        top.sort();
+        return top.size();
+    }
+}
@@ -0,0 +1,92 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of counting numeric ids: boxed Long keys through {@link SpaceSavingTopN}
+ * and {@link ArraySpaceSavingTopN} against {@link LongSpaceSavingTopN}, on the
+ * old TestDataGenerator workload (1M uniform ids below 2000) and on a skewed one.
+ * One invocation counts the whole stream into a new sketch, the scores are per add.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongKeyBenchmark {
+
+    static final int LENGTH = 1000000;
+
+    @Param({"100", "1000", "10000"})
+    int m;
+
+    @Param({"uniform2000", "skewed1M"})
+    String workload;
+
+    long[] stream;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random rn = new Random(1);
+        stream = new long[LENGTH];
+        if(workload.equals("uniform2000")){
+            for(int i = 0; i < LENGTH; i++){
+                stream[i] = rn.nextInt(2000);
+            }
+        }else if(workload.equals("skewed1M")){
+            for(int i = 0; i < LENGTH; i++){
+                stream[i] = (long)Math.floor(Math.pow(rn.nextDouble(), 4) * 1000000) * 7919L;
+            }
+        }else{
+            throw new IllegalArgumentException("Unknown workload " + workload);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int linked() {
+        SpaceSavingTopN<Long> topN = new SpaceSavingTopN<Long>(m);
+        for(long e : stream){
+            topN.add(e);
+        }
+        return topN.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int array() {
+        ArraySpaceSavingTopN<Long> topN = new ArraySpaceSavingTopN<Long>(m);
+        for(long e : stream){
+            topN.add(e);
+        }
+        return topN.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int primitive() {
+        LongSpaceSavingTopN topN = new LongSpaceSavingTopN(m);
+        for(long e : stream){
+            topN.add(e);
+        }
+        return topN.size();
+    }
+}
@@ -0,0 +1,68 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write and read time of a full sketch in the binary format of {@link SpaceSavingTopN#write}.
+ * The size of the written sketch is printed once per trial.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SerializationBenchmark {
+
+    @Param({"10000", "1000000"})
+    int m;
+
+    SpaceSavingTopN<String> topN;
+
+    byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        topN = new SpaceSavingTopN<String>(m);
+        for(String e : WordStreams.zipfStream(8 * m, 4 * m, 1.0, new Random(m))){
+            topN.add(e);
+        }
+        bytes = write();
+
+        System.out.printf("m=%d counters=%d buckets=%d bytes=%d (%.1f per counter)%n",
+                m, topN.size(), topN.getBuckets().size(), bytes.length, (double)bytes.length / topN.size());
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * m);
+        topN.write(new DataOutputStream(out), KeySerializers.STRING);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public SpaceSavingTopN<String> read() throws IOException {
+        return SpaceSavingTopN.read(new DataInputStream(new ByteArrayInputStream(bytes)), KeySerializers.STRING);
+    }
+}
@@ -0,0 +1,150 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link SketchEngine}s on Zipf distributed word streams. One invocation adds
+ * the whole stream to a fresh sketch, the scores are Mkeys/s as ops/us.
+ * <p/>
+ * At the end of a trial the heap retained by a filled sketch and the recall of the true
+ * top K among its K highest estimates are printed, the other two columns the engines are
+ * chosen by.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SketchEngineBenchmark {
+
+    static final int STREAM_LENGTH = 5000000;
+
+    static final int K = 100;
+
+    @Param({"10000"})
+    int m;
+
+    @Param({"0.8", "1.0", "1.2"})
+    double skew;
+
+    @Param({"LINKED", "ARRAY", "MISRA_GRIES", "LOSSY_COUNTING", "FILTERED", "STRIPED"})
+    SketchEngine engine;
+
+    String[] stream;
+
+    FrequentItemsSketch<String> topN;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = WordStreams.zipfStream(STREAM_LENGTH, 1000 * m, skew, new Random(23));
+    }
+
+    @Setup(Level.Invocation)
+    public void createSketch() {
+        topN = engine.create(m);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public int add() {
+        FrequentItemsSketch<String> topN = this.topN;
+        for(String e : stream){
+            topN.add(e);
+        }
+        return topN.size();
+    }
+
+    /**
+     * Sizes a freshly filled sketch as the heap it holds: the used heap with it less the
+     * used heap once it is dropped.
+     */
+    @TearDown(Level.Trial)
+    public void report() {
+        topN = null;
+        FrequentItemsSketch<String> filled = engine.create(m);
+        for(String e : stream){
+            filled.add(e);
+        }
+        int size = filled.size();
+        double recall = recall(filled, trueTopK(stream));
+
+        //the holder keeps the sketch reachable until it is cleared, even once compiled
+        Object[] holder = {filled};
+        filled = null;
+        long with = usedHeap();
+        holder[0] = null;
+        long bytes = with - usedHeap();
+
+        System.out.printf("%nzipf(%.1f) %-14s %6d KB  %6d counters  recall@%d %.2f%n",
+                skew, engine, bytes / 1024, size, K, recall);
+    }
+
+    private static Set<String> trueTopK(String[] stream) {
+        final Map<String, Long> exact = new HashMap<String, Long>();
+        for(String e : stream){
+            Long count = exact.get(e);
+            exact.put(e, count == null ? 1 : count + 1);
+        }
+        return highest(exact.keySet(), new Comparator<String>() {
+            public int compare(String a, String b) {
+                return exact.get(b).compareTo(exact.get(a));
+            }
+        });
+    }
+
+    private static double recall(final FrequentItemsSketch<String> topN, Set<String> trueTopK) {
+        Set<String> reported = highest(topN.elements(), new Comparator<String>() {
+            public int compare(String a, String b) {
+                long ca = topN.getCountByElement(a);
+                long cb = topN.getCountByElement(b);
+                return ca > cb ? -1 : (ca == cb ? 0 : 1);
+            }
+        });
+        reported.retainAll(trueTopK);
+        return (double)reported.size() / K;
+    }
+
+    private static Set<String> highest(Iterable<String> elements, Comparator<String> order) {
+        List<String> sorted = new ArrayList<String>();
+        for(String e : elements){
+            sorted.add(e);
+        }
+        Collections.sort(sorted, order);
+        return new HashSet<String>(sorted.subList(0, Math.min(K, sorted.size())));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
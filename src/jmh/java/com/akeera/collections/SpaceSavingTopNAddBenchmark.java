@@ -0,0 +1,88 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds a pregenerated word stream to a sketch of m counters. One invocation adds the
+ * whole stream, the scores are per add: Mkeys/s as ops/us and us per add.
+ * <p/>
+ * The sketch starts empty on every iteration, so after the first pass over the stream
+ * the adds run against a full sketch. The all-distinct stream never repeats a word
+ * within a pass, every add past the first m evicts.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class SpaceSavingTopNAddBenchmark {
+
+    static final int STREAM_LENGTH = 1 << 21;
+
+    //number of distinct words the skewed streams draw from
+    static final int RANGE = 1 << 20;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int m;
+
+    @Param({"uniform", "zipf1.0", "zipf1.2", "zipf1.5", "distinct"})
+    String stream;
+
+    @Param({"LINKED"})
+    SketchEngine engine;
+
+    String[] words;
+
+    FrequentItemsSketch<String> topN;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random rn = new Random(17);
+        if(stream.equals("distinct")){
+            words = new String[STREAM_LENGTH];
+            for(int i = 0; i < words.length; i++){
+                words[i] = "w" + Integer.toString(i, 36);
+            }
+        }else if(stream.equals("uniform")){
+            //a Zipf exponent of 0 weighs every word the same
+            words = WordStreams.zipfStream(STREAM_LENGTH, RANGE, 0, rn);
+        }else if(stream.startsWith("zipf")){
+            words = WordStreams.zipfStream(STREAM_LENGTH, RANGE, Double.parseDouble(stream.substring(4)), rn);
+        }else{
+            throw new IllegalArgumentException("Unknown stream " + stream);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createSketch() {
+        topN = engine.create(m);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_LENGTH)
+    public int add() {
+        FrequentItemsSketch<String> topN = this.topN;
+        for(String e : words){
+            topN.add(e);
+        }
+        return topN.size();
+    }
+}
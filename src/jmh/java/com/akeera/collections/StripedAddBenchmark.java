@@ -0,0 +1,98 @@
+package com.akeera.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writer threads sharing one sketch: a {@link SpaceSavingTopN} behind one global lock
+ * against a {@link StripedSpaceSavingTopN}, on a Zipf(1.1) word stream. Every thread adds
+ * its own slice of the stream, one add per invocation, so the throughput is in Mkeys/s.
+ * The number of writers is the JMH thread count, e.g.
+ *     mvn -Pjmh test-compile exec:exec -Djmh.args="StripedAdd -t 4"
+ * <p/>
+ * The sketches start empty on every iteration.
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StripedAddBenchmark {
+
+    static final int MAX_THREADS = 16;
+
+    static final int PER_THREAD = 1 << 21;
+
+    @Param({"10000"})
+    int m;
+
+    String[] stream;
+
+    SpaceSavingTopN<String> single;
+
+    StripedSpaceSavingTopN<String> striped;
+
+    final AtomicInteger slices = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void generate() {
+        stream = WordStreams.zipfStream(MAX_THREADS * PER_THREAD, 100 * m, 1.1, new Random(3));
+    }
+
+    @Setup(Level.Iteration)
+    public void createSketches() {
+        single = new SpaceSavingTopN<String>(m);
+        striped = new StripedSpaceSavingTopN<String>(m);
+    }
+
+    /**
+     * A writer's position in its own slice of the stream.
+     */
+    @State(Scope.Thread)
+    public static class Slice {
+        int from;
+        int i;
+
+        @Setup(Level.Trial)
+        public void assign(StripedAddBenchmark benchmark) {
+            from = (benchmark.slices.getAndIncrement() % MAX_THREADS) * PER_THREAD;
+        }
+
+        String next(String[] stream) {
+            String e = stream[from + i];
+            i = (i + 1) & (PER_THREAD - 1);
+            return e;
+        }
+    }
+
+    @Benchmark
+    public boolean globalLock(Slice slice) {
+        String e = slice.next(stream);
+        SpaceSavingTopN<String> single = this.single;
+        synchronized(single){
+            return single.add(e);
+        }
+    }
+
+    @Benchmark
+    public boolean striped(Slice slice) {
+        return striped.add(slice.next(stream));
+    }
+}
@@ -0,0 +1,104 @@
+package com.akeera.hadoop.topn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads every line of a file with {@link ByteLineReader} and with a BufferedReader,
+ * summing the line lengths. One invocation reads the whole file, the score is the time
+ * per file: the size is printed in the setup, for MB/s. Without a file parameter it
+ * reads Zipf distributed words in lines of 16 written to a temporary file, e.g.
+ *     mvn -Pjmh test-compile exec:exec -Djmh.args="LineReader -p file=/data/words.txt"
+ *
+ * @author: pavanachanta
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineReaderBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Param({""})
+    String file;
+
+    @Param({"50000000"})
+    long words;
+
+    File input;
+
+    boolean generated;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        if(file.isEmpty()){
+            input = File.createTempFile("lines", ".txt");
+            generated = true;
+            new WorkloadGenerator(WorkloadGenerator.Distribution.ZIPF, WorkloadGenerator.Keys.WORD, 1000000, 1.1, 1)
+                    .setPerLine(16)
+                    .write(input, words, 1, Runtime.getRuntime().availableProcessors());
+        }else{
+            input = new File(file);
+        }
+        System.out.printf("%n%s: %.0f MB%n", input, input.length() / 1048576.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        if(generated)
+            input.delete();
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        long sum = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), UTF8), 1 << 16);
+        try{
+            String line;
+            while((line = reader.readLine()) != null){
+                sum += line.length();
+            }
+        }finally{
+            reader.close();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long byteLineReader() throws IOException {
+        long sum = 0;
+        ByteLineReader reader = new ByteLineReader().add(input);
+        try{
+            while(reader.next()){
+                ByteBuffer record = reader.record();
+                sum += record.remaining();
+            }
+        }finally{
+            reader.close();
+        }
+        return sum;
+    }
+}
@@ -100,10 +100,18 @@ public class AggregateBySketch extends SubAssembly
 {
     private static final Logger LOG = LoggerFactory.getLogger( AggregateBySketch.class );
 
-
+    /** What each map task sends over the shuffle. */
+    public enum Shuffle
+    {
+        /** One (key, count) tuple per monitored key, summed per key on the reduce side. */
+        COUNTS,
+        /** The whole sketch as a single tuple, all of them merged by one reducer. */
+        SKETCH
+    }
 
     private String name;
     private int topK;
+    private Shuffle shuffle = Shuffle.COUNTS;
     private Fields groupingFields;
     private Fields[] argumentFields;
     private AggregateBy.Functor[] functors;
@@ -121,9 +129,22 @@ public class AggregateBySketch extends SubAssembly
      * @param topK of type int
      */
     protected AggregateBySketch(String name, int topK)
+    {
+        this( name, topK, Shuffle.COUNTS );
+    }
+
+    /**
+     * Constructor CompositeAggregator creates a new CompositeAggregator instance.
+     *
+     * @param name      of type String
+     * @param topK of type int
+     * @param shuffle   of type Shuffle
+     */
+    protected AggregateBySketch(String name, int topK, Shuffle shuffle)
     {
         this.name = name;
         this.topK = topK;
+        this.shuffle = shuffle;
     }
 
     /**
@@ -175,6 +196,21 @@ public class AggregateBySketch extends SubAssembly
      * @param topK      of type int
      * @param assemblies     of type CompositeAggregator...
      */
+    @ConstructorProperties({"pipe", "groupingFields", "topK", "shuffle", "assemblies"})
+    public AggregateBySketch(Pipe pipe, Fields groupingFields, int topK, Shuffle shuffle, AggregateBySketch... assemblies)
+    {
+        this( null, Pipe.pipes( pipe ), groupingFields, topK, shuffle, assemblies );
+    }
+
+    /**
+     * Constructor CompositeAggregator creates a new CompositeAggregator instance.
+     *
+     * @param name           of type String
+     * @param pipe           of type Pipe
+     * @param groupingFields of type Fields
+     * @param topK      of type int
+     * @param assemblies     of type CompositeAggregator...
+     */
     @ConstructorProperties({"name", "pipe", "groupingFields", "topK", "assemblies"})
     public AggregateBySketch(String name, Pipe pipe, Fields groupingFields, int topK, AggregateBySketch... assemblies)
     {
@@ -207,7 +243,23 @@ public class AggregateBySketch extends SubAssembly
     @ConstructorProperties({"name", "pipes", "groupingFields", "topK", "assemblies"})
     public AggregateBySketch(String name, Pipe[] pipes, Fields groupingFields, int topK, AggregateBySketch... assemblies)
     {
-        this( name, topK );
+        this( name, pipes, groupingFields, topK, Shuffle.COUNTS, assemblies );
+    }
+
+    /**
+     * Constructor CompositeAggregator creates a new CompositeAggregator instance.
+     *
+     * @param name           of type String
+     * @param pipes          of type Pipe[]
+     * @param groupingFields of type Fields
+     * @param topK      of type int
+     * @param shuffle        of type Shuffle
+     * @param assemblies     of type CompositeAggregator...
+     */
+    @ConstructorProperties({"name", "pipes", "groupingFields", "topK", "shuffle", "assemblies"})
+    public AggregateBySketch(String name, Pipe[] pipes, Fields groupingFields, int topK, Shuffle shuffle, AggregateBySketch... assemblies)
+    {
+        this( name, topK, shuffle );
 
         List<Fields> arguments = new ArrayList<Fields>();
         List<Functor> functors = new ArrayList<Functor>();
@@ -227,7 +279,12 @@ public class AggregateBySketch extends SubAssembly
 
     protected AggregateBySketch(String name, Pipe[] pipes, Fields groupingFields, Fields argumentFields, Functor functor, Aggregator aggregator, int topK)
     {
-        this( name, topK );
+        this( name, pipes, groupingFields, argumentFields, functor, aggregator, topK, Shuffle.COUNTS );
+    }
+
+    protected AggregateBySketch(String name, Pipe[] pipes, Fields groupingFields, Fields argumentFields, Functor functor, Aggregator aggregator, int topK, Shuffle shuffle)
+    {
+        this( name, topK, shuffle );
         initialize( groupingFields, pipes, argumentFields, functor, aggregator );
     }
 
@@ -247,6 +304,9 @@ public class AggregateBySketch extends SubAssembly
         this.functors = functors;
         this.aggregators = aggregators;
 
+        if( shuffle == Shuffle.SKETCH && functors.length != 1 )
+            throw new IllegalArgumentException( "a sketch shuffle only carries a single count, got " + functors.length + " functors" );
+
         verify();
 
         Fields sortFields = Fields.copyComparators( Fields.merge( this.argumentFields ), this.argumentFields );
@@ -257,11 +317,22 @@ public class AggregateBySketch extends SubAssembly
 
         Pipe[] functions = new Pipe[ pipes.length ];
 
-        CompositeFunction function = new CompositeFunction( this.groupingFields, this.argumentFields, this.functors, topK);
+        CompositeFunction function = new CompositeFunction( this.groupingFields, this.argumentFields, this.functors, topK, shuffle );
 
         for( int i = 0; i < functions.length; i++ )
             functions[ i ] = new Each( pipes[ i ], argumentSelector, function, Fields.RESULTS );
 
+        if( shuffle == Shuffle.SKETCH )
+        {
+            // one sketch per map task, a single group gathers them all for merging
+            groupBy = new GroupBy( name, functions, Fields.NONE );
+
+            Fields resultFields = this.groupingFields.append( this.functors[ 0 ].getDeclaredFields() );
+
+            setTails( new Every( groupBy, CompositeFunction.SKETCH_FIELDS, new MergeSketches( resultFields, topK, getRankFields() != null ), Fields.RESULTS ) );
+            return;
+        }
+
         groupBy = new GroupBy( name, functions, this.groupingFields, sortFields.hasComparators() ? sortFields : null );
 
         Pipe pipe = groupBy;
@@ -269,9 +340,27 @@ public class AggregateBySketch extends SubAssembly
         for( int i = 0; i < aggregators.length; i++ )
             pipe = new Every( pipe, this.functors[ i ].getDeclaredFields(), this.aggregators[ i ], Fields.ALL );
 
+        Fields rankFields = getRankFields();
+
+        if( rankFields != null && topK > 0 )
+            pipe = new GlobalTopKByCount( pipe, this.groupingFields, rankFields, topK );
+
         setTails( pipe );
     }
 
+    /**
+     * Method getRankFields returns the field the final output is ranked by, null to leave the output unranked.
+     * When set, only the topK groups with the largest value are written, in descending order.
+     * <p/>
+     * Called while the constructor initializes the assembly, after the functors are set.
+     *
+     * @return the field to rank by, or null
+     */
+    protected Fields getRankFields()
+    {
+        return null;
+    }
+
     /** Method verify should be overridden by sub-classes if any values must be tested before the calling constructor returns. */
     protected void verify()
     {
@@ -288,6 +377,16 @@ public class AggregateBySketch extends SubAssembly
         return groupingFields;
     }
 
+    /**
+     * Method getShuffle returns what the map side of this assembly sends to the reducers.
+     *
+     * @return the shuffle mode
+     */
+    public Shuffle getShuffle()
+    {
+        return shuffle;
+    }
+
     /**
      * Method getFieldDeclarations returns an array of Fields where each Field element in the array corresponds to the
      * field declaration of the given Aggregator operations.
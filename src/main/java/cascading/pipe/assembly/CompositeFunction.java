@@ -13,7 +13,11 @@ import cascading.tuple.TupleEntryCollector;
 import cascading.tuple.util.TupleViews;
 import cascading.pipe.assembly.AggregateBy.Functor;
 import com.akeera.collections.Bucket;
+import com.akeera.collections.CounterIterator;
+import com.akeera.collections.FrequentItemsSketch;
+import com.akeera.collections.SketchEngine;
 import com.akeera.collections.SpaceSavingTopN;
+import com.akeera.hadoop.topn.SpaceSavingTopNWritable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,7 +35,14 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
 
     private static final Logger LOG = LoggerFactory.getLogger(AggregateBySketch.class);
 
+    /** Number of keys buffered before they are handed to the sketch as one batch. */
+    public static final int BATCH_SIZE = 256;
+
+    /** Single field carrying the serialized sketch in {@link AggregateBySketch.Shuffle#SKETCH} mode. */
+    public static final Fields SKETCH_FIELDS = new Fields( "sketch" );
+
     private int topK = 0;
+    private final AggregateBySketch.Shuffle shuffle;
     private final Fields groupingFields;
     private final Fields[] argumentFields;
     private final Fields[] functorFields;
@@ -44,7 +55,10 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
 
     public static class Context
     {
-        SpaceSavingTopN<Tuple> topN;
+        FrequentItemsSketch<Tuple> topN;
+        Tuple key;
+        Tuple[] pending;
+        int numPending;
         TupleEntry[] arguments;
         Tuple result;
     }
@@ -72,11 +86,26 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
      */
     public CompositeFunction( Fields groupingFields, Fields[] argumentFields, Functor[] functors, int topK )
     {
-        super( getFields( groupingFields, functors ) ); // todo: groupingFields should lookup incoming type information
+        this( groupingFields, argumentFields, functors, topK, AggregateBySketch.Shuffle.COUNTS );
+    }
+
+    /**
+     * Constructor CompositeFunction creates a new CompositeFunction instance.
+     *
+     * @param groupingFields of type Fields
+     * @param argumentFields of type Fields[]
+     * @param functors       of type Functor[]
+     * @param topK      of type int
+     * @param shuffle        of type Shuffle
+     */
+    public CompositeFunction( Fields groupingFields, Fields[] argumentFields, Functor[] functors, int topK, AggregateBySketch.Shuffle shuffle )
+    {
+        super( shuffle == AggregateBySketch.Shuffle.SKETCH ? SKETCH_FIELDS : getFields( groupingFields, functors ) ); // todo: groupingFields should lookup incoming type information
         this.groupingFields = groupingFields;
         this.argumentFields = argumentFields;
         this.functors = functors;
         this.topK = topK;
+        this.shuffle = shuffle;
 
         this.functorFields = new Fields[ functors.length ];
 
@@ -134,7 +163,15 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
 
         context.result = TupleViews.createComposite( fields );
 
-        context.topN = new SpaceSavingTopN<Tuple>(topK);
+        Fields resolvedArgumentFields = operationCall.getArgumentFields();
+
+        if( groupingFields.isAll() )
+            context.key = TupleViews.createNarrow( resolvedArgumentFields.getPos() );
+        else
+            context.key = TupleViews.createNarrow( resolvedArgumentFields.getPos( groupingFields ) );
+
+        context.topN = SketchEngine.fromProperty( flowProcess.getProperty( SketchEngine.PROPERTY ) ).create( topK );
+        context.pending = new Tuple[ BATCH_SIZE ];
 
 
         operationCall.setContext( context );
@@ -143,10 +180,26 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
     @Override
     public void operate( FlowProcess flowProcess, FunctionCall<CompositeFunction.Context> functionCall )
     {
-        TupleEntry arguments = functionCall.getArguments();
-        Tuple key = arguments.selectTupleCopy( groupingFields );
         Context context = functionCall.getContext();
-        context.topN.add(key);
+        Tuple key = context.key;
+
+        TupleViews.reset( key, functionCall.getArguments().getTuple() );
+
+        // a monitored key is counted through the view, only keys the sketch may insert are copied
+        if( context.topN.addIfMonitored( key, 1 ) )
+            return;
+
+        // skewed key streams repeat within a batch, the sketch collapses them before counting
+        context.pending[ context.numPending++ ] = new Tuple( key );
+
+        if( context.numPending == context.pending.length )
+            addPending( context );
+    }
+
+    private static void addPending( Context context )
+    {
+        context.topN.addAll( context.pending, 0, context.numPending );
+        context.numPending = 0;
     }
 
 
@@ -158,22 +211,48 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
 
         Tuple result = operationCall.getContext().result;
 
-        SpaceSavingTopN<Tuple> topN = operationCall.getContext().topN;
-
-        for(Tuple tuple : topN.getElementIndex().keySet()){
-            Tuple[] results = new Tuple[ functors.length + 1 ];
-            results[ 0 ] = tuple;
-            int count = topN.getCountByElement(tuple);
-            Tuple countResult =  new Tuple();
-            countResult.add(count);
-            results[ 1 ] = countResult;
-            TupleViews.reset( result, results );
-            collector.add( result );
+        addPending( operationCall.getContext() );
+
+        FrequentItemsSketch<Tuple> topN = operationCall.getContext().topN;
+
+        if( shuffle == AggregateBySketch.Shuffle.SKETCH )
+        {
+            collector.add( new Tuple( new SpaceSavingTopNWritable( topN ) ) );
+            operationCall.setContext( null );
+            return;
+        }
+
+        if( topN instanceof SpaceSavingTopN )
+        {
+            // walks the buckets from the highest count down, each count comes with its node
+            CounterIterator<Tuple> counters = ( (SpaceSavingTopN<Tuple>) topN ).descendingIterator();
+
+            while( counters.hasNext() )
+            {
+                Tuple tuple = counters.next();
+                emit( collector, result, tuple, counters.count() );
+            }
+        }
+        else
+        {
+            for( Tuple tuple : topN.elements() )
+                emit( collector, result, tuple, topN.getCountByElement( tuple ) );
         }
 
         operationCall.setContext( null );
     }
 
+    private void emit( TupleEntryCollector collector, Tuple result, Tuple key, long count )
+    {
+        Tuple[] results = new Tuple[ functors.length + 1 ];
+        results[ 0 ] = key;
+        Tuple countResult = new Tuple();
+        countResult.add( count );
+        results[ 1 ] = countResult;
+        TupleViews.reset( result, results );
+        collector.add( result );
+    }
+
 //    private void completeFunctors( FlowProcess flowProcess, TupleEntryCollector outputCollector, Tuple result, Map.Entry<Tuple, Tuple[]> entry )
 //    {
 //        Tuple[] results = new Tuple[ functors.length + 1 ];
@@ -204,6 +283,8 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
 
         if( topK != that.topK)
             return false;
+        if( shuffle != that.shuffle )
+            return false;
         if( !Arrays.equals(argumentFields, that.argumentFields) )
             return false;
         if( !Arrays.equals( functorFields, that.functorFields ) )
@@ -221,6 +302,7 @@ public class CompositeFunction extends BaseOperation<CompositeFunction.Context>
     {
         int result = super.hashCode();
         result = 31 * result + topK;
+        result = 31 * result + shuffle.hashCode();
         result = 31 * result + ( groupingFields != null ? groupingFields.hashCode() : 0 );
         result = 31 * result + ( argumentFields != null ? Arrays.hashCode( argumentFields ) : 0 );
         result = 31 * result + ( functorFields != null ? Arrays.hashCode( functorFields ) : 0 );
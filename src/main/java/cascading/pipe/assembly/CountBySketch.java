@@ -261,7 +261,39 @@ public class CountBySketch extends AggregateBySketch
     @ConstructorProperties({"name", "pipes", "groupingFields", "countField", "topK"})
     public CountBySketch(String name, Pipe[] pipes, Fields groupingFields, Fields countField, int topK)
     {
-        super( name, pipes, groupingFields, groupingFields, new CountPartials( countField.applyTypes( Long.TYPE ) ), new Sum( countField.applyTypes( Long.TYPE ) ), topK );
+        this( name, pipes, groupingFields, countField, topK, Shuffle.COUNTS );
+    }
+
+    /**
+     * Constructor CountBySketch creates a new CountBySketch instance.
+     *
+     * @param pipe           of type Pipe
+     * @param groupingFields of type Fields
+     * @param countField     of type Fields
+     * @param topK      of type int
+     * @param shuffle        of type Shuffle
+     */
+    @ConstructorProperties({"pipe", "groupingFields", "countField", "topK", "shuffle"})
+    public CountBySketch(Pipe pipe, Fields groupingFields, Fields countField, int topK, Shuffle shuffle)
+    {
+        this( null, Pipe.pipes( pipe ), groupingFields, countField, topK, shuffle );
+    }
+
+    /**
+     * Constructor CountBySketch creates a new CountBySketch instance. With {@link Shuffle#SKETCH} every map task
+     * sends its whole sketch as one tuple and a single reducer merges them, instead of one tuple per counter.
+     *
+     * @param name           of type String
+     * @param pipes          of type Pipe[]
+     * @param groupingFields of type Fields
+     * @param countField     of type Fields
+     * @param topK      of type int
+     * @param shuffle        of type Shuffle
+     */
+    @ConstructorProperties({"name", "pipes", "groupingFields", "countField", "topK", "shuffle"})
+    public CountBySketch(String name, Pipe[] pipes, Fields groupingFields, Fields countField, int topK, Shuffle shuffle)
+    {
+        super( name, pipes, groupingFields, groupingFields, new CountPartials( countField.applyTypes( Long.TYPE ) ), new Sum( countField.applyTypes( Long.TYPE ) ), topK, shuffle );
     }
 
 
@@ -473,4 +505,11 @@ public class CountBySketch extends AggregateBySketch
     {
         super( name, pipes, groupingFields, valueFields, new CountPartials( countField.applyTypes( Long.TYPE ), include ), new Sum( countField.applyTypes( Long.TYPE ) ), topK );
     }
+
+    /** Ranks the output by count, so only the topK most frequent groups are written, most frequent first. */
+    @Override
+    protected Fields getRankFields()
+    {
+        return getFunctors()[ 0 ].getDeclaredFields();
+    }
 }
@@ -0,0 +1,50 @@
+package cascading.pipe.assembly;
+
+import java.util.Collections;
+
+import cascading.operation.aggregator.First;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.tuple.Fields;
+
+/**
+ * Class GlobalTopKByCount passes on only the topK groups with the largest count of the whole stream, highest count
+ * first, ties in the ascending order of their grouping fields.
+ * <p/>
+ * Every reduce task first trims its own groups with {@link TopKByCount}, so with R reducers at most R x topK tuples
+ * reach the final single group, which sorts them on the count and keeps the first topK. The output is therefore
+ * bounded and ranked whatever the number of reducers, and lands in a single part file.
+ *
+ * @see TopKByCount
+ */
+public class GlobalTopKByCount extends SubAssembly
+{
+    /**
+     * Constructor GlobalTopKByCount creates a new GlobalTopKByCount instance.
+     *
+     * @param pipe           of type Pipe, the summed groups
+     * @param groupingFields of type Fields, the fields ties are ordered by
+     * @param countField     of type Fields, the field to rank by
+     * @param topK           of type int
+     */
+    public GlobalTopKByCount( Pipe pipe, Fields groupingFields, Fields countField, int topK )
+    {
+        setPrevious( pipe );
+
+        pipe = new Each( pipe, Fields.ALL, new TopKByCount( countField, topK ), Fields.RESULTS );
+
+        // the group is sorted in reverse for the highest count first, reversing the grouping fields once more keeps them ascending
+        Fields sortFields = countField.append( groupingFields );
+
+        for( Comparable field : groupingFields )
+            sortFields.setComparator( field, Collections.reverseOrder() );
+
+        pipe = new GroupBy( pipe, Fields.NONE, sortFields, true );
+        pipe = new Every( pipe, Fields.ALL, new First( topK ), Fields.RESULTS );
+
+        setTails( pipe );
+    }
+}
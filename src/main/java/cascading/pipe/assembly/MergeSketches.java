@@ -0,0 +1,157 @@
+package cascading.pipe.assembly;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.CounterIterator;
+import com.akeera.collections.FrequentItemsSketch;
+import com.akeera.collections.SpaceSavingTopN;
+import com.akeera.hadoop.topn.SpaceSavingTopNWritable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class MergeSketches is the reduce side of a {@link AggregateBySketch.Shuffle#SKETCH} shuffle: it merges the
+ * sketches sent by every map task and emits one (key, count) tuple for each of the topK highest counters of the
+ * merged sketch. The map side sketches may hold more counters than topK, the merge keeps as many as they do.
+ * They may come from any {@link com.akeera.collections.SketchEngine}, as long as every map task used the same one.
+ *
+ * @see CompositeFunction
+ */
+public class MergeSketches extends BaseOperation<MergeSketches.Context> implements Aggregator<MergeSketches.Context>
+{
+    private final int topK;
+    private final boolean ranked;
+
+    public static class Context
+    {
+        FrequentItemsSketch<Tuple> merged;
+    }
+
+    /**
+     * Constructor MergeSketches creates a new MergeSketches instance.
+     *
+     * @param fieldDeclaration of type Fields, the grouping fields followed by the count field
+     * @param topK        of type int, number of counters to emit
+     */
+    public MergeSketches( Fields fieldDeclaration, int topK )
+    {
+        this( fieldDeclaration, topK, false );
+    }
+
+    /**
+     * Constructor MergeSketches creates a new MergeSketches instance.
+     *
+     * @param fieldDeclaration of type Fields, the grouping fields followed by the count field
+     * @param topK        of type int, number of counters to emit
+     * @param ranked           of type boolean, whether to emit the counters highest count first
+     */
+    public MergeSketches( Fields fieldDeclaration, int topK, boolean ranked )
+    {
+        super( 1, fieldDeclaration );
+        this.topK = topK;
+        this.ranked = ranked;
+    }
+
+    @Override
+    public void start( FlowProcess flowProcess, AggregatorCall<Context> aggregatorCall )
+    {
+        if( aggregatorCall.getContext() == null )
+            aggregatorCall.setContext( new Context() );
+
+        aggregatorCall.getContext().merged = null;
+    }
+
+    @Override
+    public void aggregate( FlowProcess flowProcess, AggregatorCall<Context> aggregatorCall )
+    {
+        Context context = aggregatorCall.getContext();
+        FrequentItemsSketch<Tuple> sketch = ( (SpaceSavingTopNWritable) aggregatorCall.getArguments().getObject( 0 ) ).get();
+
+        // every read builds a fresh sketch of topK counters, so the first one can be merged into directly
+        if( context.merged == null )
+            context.merged = sketch;
+        else
+            context.merged.merge( sketch );
+    }
+
+    @Override
+    public void complete( FlowProcess flowProcess, AggregatorCall<Context> aggregatorCall )
+    {
+        final FrequentItemsSketch<Tuple> merged = aggregatorCall.getContext().merged;
+
+        if( merged == null )
+            return;
+
+        TupleEntryCollector collector = aggregatorCall.getOutputCollector();
+
+        if( ( ranked || merged.size() > topK ) && merged instanceof SpaceSavingTopN )
+        {
+            // the buckets are already ordered, the highest count comes first and the walk stops after topK
+            CounterIterator<Tuple> counters = ( (SpaceSavingTopN<Tuple>) merged ).descendingIterator( topK );
+
+            while( counters.hasNext() )
+            {
+                Tuple key = counters.next();
+                collector.add( key.append( new Tuple( counters.count() ) ) );
+            }
+        }
+        else if( ranked || merged.size() > topK )
+        {
+            // the other engines keep their counters unordered, sort them once
+            List<Tuple> keys = new ArrayList<Tuple>( merged.size() );
+
+            for( Tuple key : merged.elements() )
+                keys.add( key );
+
+            Collections.sort( keys, new Comparator<Tuple>()
+            {
+                public int compare( Tuple left, Tuple right )
+                {
+                    long leftCount = merged.getCountByElement( left );
+                    long rightCount = merged.getCountByElement( right );
+
+                    return leftCount > rightCount ? -1 : ( leftCount == rightCount ? 0 : 1 );
+                }
+            } );
+
+            for( Tuple key : keys.subList( 0, Math.min( topK, keys.size() ) ) )
+                collector.add( key.append( new Tuple( merged.getCountByElement( key ) ) ) );
+        }
+        else
+        {
+            for( Tuple key : merged.elements() )
+                collector.add( key.append( new Tuple( merged.getCountByElement( key ) ) ) );
+        }
+
+        aggregatorCall.getContext().merged = null;
+    }
+
+    @Override
+    public boolean equals( Object object )
+    {
+        if( this == object )
+            return true;
+        if( !( object instanceof MergeSketches ) )
+            return false;
+        if( !super.equals( object ) )
+            return false;
+
+        MergeSketches that = (MergeSketches) object;
+
+        return topK == that.topK && ranked == that.ranked;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * ( 31 * super.hashCode() + topK ) + ( ranked ? 1 : 0 );
+    }
+}
@@ -0,0 +1,105 @@
+package cascading.pipe.assembly;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.BoundedTopK;
+
+/**
+ * Class TopKByCount passes on only the topK incoming tuples with the largest count, highest count first.
+ * <p/>
+ * Placed after the reduce side {@link cascading.operation.aggregator.Sum} of a {@link CountBySketch}, it keeps a
+ * bounded min-heap over the summed groups of its reduce task and writes them when the task is flushed, so no
+ * second job is needed to sort and trim the output. Each reduce task emits its own top K: the global top K is
+ * among them, and {@link GlobalTopKByCount} ranks them into it in a final single group.
+ *
+ * @see GlobalTopKByCount
+ */
+public class TopKByCount extends BaseOperation<TopKByCount.Context> implements Function<TopKByCount.Context>
+{
+    private final Fields countField;
+    private final int topK;
+
+    public static class Context
+    {
+        BoundedTopK<Tuple> topK;
+        int countPos;
+    }
+
+    /**
+     * Constructor TopKByCount creates a new TopKByCount instance.
+     *
+     * @param countField of type Fields, the field to rank by
+     * @param topK  of type int
+     */
+    public TopKByCount( Fields countField, int topK )
+    {
+        super( Fields.ARGS );
+        this.countField = countField;
+        this.topK = topK;
+    }
+
+    @Override
+    public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+        Context context = new Context();
+
+        context.topK = new BoundedTopK<Tuple>( topK );
+        context.countPos = operationCall.getArgumentFields().getPos( countField )[ 0 ];
+
+        operationCall.setContext( context );
+    }
+
+    @Override
+    public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+        Context context = functionCall.getContext();
+        TupleEntry arguments = functionCall.getArguments();
+        long count = arguments.getTuple().getLong( context.countPos );
+
+        // the incoming tuple is reused, copy it only when the heap keeps it
+        if( context.topK.accepts( count ) )
+            context.topK.offer( arguments.getTupleCopy(), count );
+    }
+
+    @Override
+    public void flush( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+        TupleEntryCollector collector = ( (FunctionCall) operationCall ).getOutputCollector();
+        BoundedTopK<Tuple> topK = operationCall.getContext().topK;
+
+        topK.sort();
+
+        for( int i = 0; i < topK.size(); i++ )
+            collector.add( topK.element( i ) );
+
+        operationCall.setContext( null );
+    }
+
+    @Override
+    public boolean equals( Object object )
+    {
+        if( this == object )
+            return true;
+        if( !( object instanceof TopKByCount ) )
+            return false;
+        if( !super.equals( object ) )
+            return false;
+
+        TopKByCount that = (TopKByCount) object;
+
+        return topK == that.topK && countField.equals( that.countField );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * ( 31 * super.hashCode() + topK ) + countField.hashCode();
+    }
+}
@@ -0,0 +1,686 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Array backed version of {@link SpaceSavingTopN}.
+ * <p/>
+ * Same Stream-Summary layout (a list of buckets ordered by count, each holding the
+ * elements with that count) but every node and bucket is an index into preallocated
+ * primitive arrays sized from m, and the element index is a preallocated
+ * {@link OpenAddressingIndex}. Once the sketch is constructed add() does not allocate.
+ * <p/>
+ * Elements move between buckets exactly like in {@link SpaceSavingTopN}: they are
+ * linked at the head of a bucket and a new element takes over the counter at the tail
+ * of the minimum bucket, inheriting its count as error.
+ *
+ * @author: pavanachanta
+ */
+public class ArraySpaceSavingTopN<E> implements FrequentItemsSketch<E> {
+
+    private static final int NIL = -1;
+
+    //same layout as SpaceSavingTopN, either engine reads what the other wrote
+    private static final int FORMAT_VERSION = 1;
+
+    //number of counters to maintain
+    private final int m;
+
+    private int size;
+
+    private long streamLength;
+
+    //bound on the count of elements without a counter while counters are still free,
+    //only non zero after a merge
+    private long unmonitoredBound;
+
+    //scratch table of addAll, created on first use
+    private BatchAggregator<E> batch;
+
+    //element slots
+    private final Object[] elements;
+    private final long[] elementError;
+    private final int[] elementBucket;
+    private final int[] elementNext;
+    private final int[] elementPrev;
+
+    //buckets, linked from the lowest count (minBucket) to the highest (maxBucket)
+    private final long[] bucketCount;
+    private final int[] bucketHead;
+    private final int[] bucketTail;
+    private final int[] bucketNext;
+    private final int[] bucketPrev;
+    private int minBucket = NIL;
+    private int maxBucket = NIL;
+    //skip list over the buckets, finds the bucket of a weighted count in O(log #buckets)
+    private final BucketSkipList bucketLevels;
+    private int freeBucket;
+
+    private final OpenAddressingIndex<E> elementIndex;
+
+    public ArraySpaceSavingTopN(int m) {
+        if(m < 1){
+            m = 1;
+        }
+        this.m = m;
+
+        elements      = new Object[m];
+        elementError  = new long[m];
+        elementBucket = new int[m];
+        elementNext   = new int[m];
+        elementPrev   = new int[m];
+
+        //a moving element may need a new bucket before its old one is released
+        int buckets = m + 1;
+        bucketCount = new long[buckets];
+        bucketHead  = new int[buckets];
+        bucketTail  = new int[buckets];
+        bucketNext  = new int[buckets];
+        bucketPrev  = new int[buckets];
+        for(int i = 0; i < buckets; i++){
+            bucketNext[i] = i + 1 < buckets ? i + 1 : NIL;
+        }
+        freeBucket = 0;
+        bucketLevels = new BucketSkipList(buckets);
+
+        elementIndex = new OpenAddressingIndex<E>(m, OpenAddressingIndex.capacityFor(m));
+    }
+
+
+    public long getCountByElement(E e){
+        int slot = elementIndex.get(e);
+        if(slot != NIL)
+            return bucketCount[elementBucket[slot]];
+        else
+            return 0;
+    }
+
+
+    /**
+     * Adds an element to the topN list.
+     *
+     */
+    public boolean add(E e) {
+        return add(e, 1);
+    }
+
+    /**
+     * Adds weight occurrences of an element at once, see {@link SpaceSavingTopN#add(Object, long)}.
+     * The bucket for the new count is searched from both the element's bucket and the
+     * top of the list, so large weights landing near the top stay cheap.
+     */
+    public boolean add(E e, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        streamLength += weight;
+
+        //if we reached the limit of counters m, a new element takes over the counter of the
+        //oldest(last or LRU) element of the minimum bucket
+        int slot = size < m ? size : bucketTail[minBucket];
+
+        int existing = elementIndex.putIfAbsent(e, slot);
+        if(existing != NIL){
+            increment(existing, weight);
+            return true;
+        }
+
+        if(size == m){
+            //the minimum count is inherited as overestimation error
+            elementIndex.remove(elements[slot]);
+            elements[slot] = e;
+            elementError[slot] = bucketCount[elementBucket[slot]];
+            increment(slot, weight);
+            return true;
+        }
+
+        size++;
+        elements[slot] = e;
+        elementError[slot] = unmonitoredBound;
+        linkElementFirst(bucketFor(unmonitoredBound + weight), slot);
+
+        return true;
+    }
+
+    /**
+     * Gives the element, which must not be monitored, a counter with the given count
+     * and error: the next free one, or the one at the tail of the minimum bucket when
+     * all are in use, in which case the count must not be below the minimum. Lets {@link FilteredSpaceSavingTopN} choose the initial count
+     * and a merge or a read rebuild the counters.
+     *
+     * @return the evicted element, null if a free counter was used
+     */
+    @SuppressWarnings("unchecked")
+    E putCounter(E e, long count, long error){
+        if(size < m){
+            int slot = size++;
+            elementIndex.putIfAbsent(e, slot);
+            elements[slot] = e;
+            elementError[slot] = error;
+            linkElementFirst(bucketFor(count), slot);
+            return null;
+        }
+
+        int slot = bucketTail[minBucket];
+        E evicted = (E)elements[slot];
+        elementIndex.remove(evicted);
+        elementIndex.putIfAbsent(e, slot);
+        elements[slot] = e;
+        elementError[slot] = error;
+
+        int bucket = elementBucket[slot];
+        if(count > bucketCount[bucket]){
+            increment(slot, count - bucketCount[bucket]);
+        }else if(bucketHead[bucket] != slot){
+            //same count, moves to the head like any element entering a bucket
+            unlinkElement(slot);
+            linkElementFirst(bucket, slot);
+        }
+        return evicted;
+    }
+
+    /**
+     * Bucket for the count, created if there is none.
+     */
+    private int bucketFor(long count){
+        int bucket = minBucket;
+        if(bucket == NIL || bucketCount[bucket] > count)
+            return newBucket(count, NIL);
+        bucket = bucketLevels.floor(bucketCount, bucketNext, bucket, count);
+        if(bucketCount[bucket] != count)
+            bucket = newBucket(count, bucket);
+        return bucket;
+    }
+
+
+    public long getErrorByElement(E e){
+        int slot = elementIndex.get(e);
+        if(slot != NIL)
+            return elementError[slot];
+        else
+            return 0;
+    }
+
+    public long getLowerBound(E e){
+        int slot = elementIndex.get(e);
+        if(slot != NIL)
+            return bucketCount[elementBucket[slot]] - elementError[slot];
+        else
+            return 0;
+    }
+
+    public long getUpperBound(E e){
+        int slot = elementIndex.get(e);
+        if(slot != NIL)
+            return bucketCount[elementBucket[slot]];
+        else
+            return getMinCount();
+    }
+
+    public long getMinCount(){
+        if(size < m || minBucket == NIL)
+            return unmonitoredBound;
+        return bucketCount[minBucket];
+    }
+
+    /**
+     * Merges another ArraySpaceSavingTopN, see {@link SpaceSavingTopN#merge(SpaceSavingTopN)}.
+     */
+    @SuppressWarnings("unchecked")
+    public ArraySpaceSavingTopN<E> merge(FrequentItemsSketch<E> sketch){
+        if(!(sketch instanceof ArraySpaceSavingTopN))
+            throw new IllegalArgumentException("cannot merge a " + sketch.getClass().getSimpleName() + " into an ArraySpaceSavingTopN");
+        ArraySpaceSavingTopN<E> other = (ArraySpaceSavingTopN<E>)sketch;
+
+        long thisMin = getMinCount();
+        long otherMin = other.getMinCount();
+
+        int total = size + other.size;
+        final Object[] keys = new Object[total];
+        final long[] counts = new long[total];
+        final long[] errs = new long[total];
+        int n = 0;
+
+        for(int slot = 0; slot < size; slot++){
+            int otherSlot = other.elementIndex.get(elements[slot]);
+            keys[n] = elements[slot];
+            counts[n] = bucketCount[elementBucket[slot]];
+            errs[n] = elementError[slot];
+            if(otherSlot != NIL){
+                counts[n] += other.bucketCount[other.elementBucket[otherSlot]];
+                errs[n] += other.elementError[otherSlot];
+            }else{
+                counts[n] += otherMin;
+                errs[n] += otherMin;
+            }
+            n++;
+        }
+        for(int slot = 0; slot < other.size; slot++){
+            if(elementIndex.get(other.elements[slot]) == NIL){
+                keys[n] = other.elements[slot];
+                counts[n] = other.bucketCount[other.elementBucket[slot]] + thisMin;
+                errs[n] = other.elementError[slot] + thisMin;
+                n++;
+            }
+        }
+
+        //ascending by count, then keep the m largest
+        int[] order = SketchQueries.orderByCount(counts, n, false);
+
+        long mergedLength = streamLength + other.streamLength;
+        clear();
+        streamLength = mergedLength;
+        unmonitoredBound = thisMin + otherMin;
+
+        for(int i = Math.max(0, n - m); i < n; i++){
+            int j = order[i];
+            putCounter((E)keys[j], counts[j], errs[j]);
+        }
+
+        return this;
+    }
+
+    /**
+     * Drops every counter, keeping m.
+     */
+    public void clear(){
+        elementIndex.clear();
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        streamLength = 0;
+        unmonitoredBound = 0;
+
+        for(int i = 0; i < bucketNext.length; i++){
+            bucketNext[i] = i + 1 < bucketNext.length ? i + 1 : NIL;
+        }
+        freeBucket = 0;
+        minBucket = NIL;
+        maxBucket = NIL;
+        bucketLevels.clear();
+    }
+
+    /**
+     * Writes the sketch in the format of {@link SpaceSavingTopN#write(DataOutput, KeySerializer)}.
+     */
+    @SuppressWarnings("unchecked")
+    public void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException {
+        int numBuckets = 0;
+        for(int bucket = minBucket; bucket != NIL; bucket = bucketNext[bucket]){
+            numBuckets++;
+        }
+
+        out.writeByte(FORMAT_VERSION);
+        KeySerializers.writeVLong(out, m);
+        KeySerializers.writeVLong(out, size);
+        KeySerializers.writeVLong(out, numBuckets);
+        KeySerializers.writeVLong(out, streamLength);
+        KeySerializers.writeVLong(out, unmonitoredBound);
+
+        long previous = 0;
+        for(int bucket = minBucket; bucket != NIL; bucket = bucketNext[bucket]){
+            int numElements = 0;
+            for(int slot = bucketHead[bucket]; slot != NIL; slot = elementNext[slot]){
+                numElements++;
+            }
+            KeySerializers.writeVLong(out, bucketCount[bucket] - previous);
+            KeySerializers.writeVLong(out, numElements);
+            previous = bucketCount[bucket];
+
+            //read back by linking each element first, so write from the tail
+            for(int slot = bucketTail[bucket]; slot != NIL; slot = elementPrev[slot]){
+                keySerializer.write(out, (E)elements[slot]);
+                KeySerializers.writeVLong(out, elementError[slot]);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch written by either Space-Saving engine.
+     */
+    public static <E> ArraySpaceSavingTopN<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+        int version = in.readByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("unsupported sketch format version: " + version);
+
+        ArraySpaceSavingTopN<E> topN = new ArraySpaceSavingTopN<E>(KeySerializers.readVInt(in));
+        int size = KeySerializers.readVInt(in);
+        int numBuckets = KeySerializers.readVInt(in);
+        long streamLength = KeySerializers.readVLong(in);
+        long unmonitoredBound = KeySerializers.readVLong(in);
+
+        if(size > topN.m)
+            throw new IOException("sketch holds " + size + " counters, more than m = " + topN.m);
+
+        long count = 0;
+        for(int i = 0; i < numBuckets; i++){
+            count += KeySerializers.readVLong(in);
+            int elements = KeySerializers.readVInt(in);
+            for(int j = 0; j < elements; j++){
+                E key = keySerializer.read(in);
+                if(topN.size == size || topN.elementIndex.get(key) != NIL)
+                    throw new IOException("corrupt sketch, unexpected element: " + key);
+                topN.putCounter(key, count, KeySerializers.readVLong(in));
+            }
+        }
+        if(topN.size != size)
+            throw new IOException("corrupt sketch, expected " + size + " counters but read " + topN.size);
+
+        topN.streamLength = streamLength;
+        topN.unmonitoredBound = unmonitoredBound;
+        return topN;
+    }
+
+    public long getStreamLength(){
+        return streamLength;
+    }
+
+    /**
+     * See {@link SpaceSavingTopN#guaranteedTopK(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> guaranteedTopK(int k){
+        List<E> guaranteed = new ArrayList<E>();
+        if(k < 1)
+            return guaranteed;
+
+        long outsideBound = kthCount(k + 1);
+
+        int seen = 0;
+        for(int bucket = maxBucket; bucket != NIL && seen < k; bucket = bucketPrev[bucket]){
+            for(int slot = bucketHead[bucket]; slot != NIL && seen < k; slot = elementNext[slot]){
+                if(bucketCount[bucket] - elementError[slot] >= outsideBound)
+                    guaranteed.add((E)elements[slot]);
+                seen++;
+            }
+        }
+
+        return guaranteed;
+    }
+
+    /**
+     * See {@link SpaceSavingTopN#heavyHitters(double)}.
+     */
+    public List<E> heavyHitters(double phi){
+        return heavyHitters(phi, false);
+    }
+
+    /**
+     * See {@link SpaceSavingTopN#guaranteedHeavyHitters(double)}.
+     */
+    public List<E> guaranteedHeavyHitters(double phi){
+        return heavyHitters(phi, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<E> heavyHitters(double phi, boolean guaranteed){
+        long threshold = SketchQueries.threshold(phi, streamLength);
+        List<E> heavy = new ArrayList<E>();
+        for(int bucket = maxBucket; bucket != NIL && bucketCount[bucket] >= threshold; bucket = bucketPrev[bucket]){
+            for(int slot = bucketHead[bucket]; slot != NIL; slot = elementNext[slot]){
+                if(!guaranteed || bucketCount[bucket] - elementError[slot] >= threshold)
+                    heavy.add((E)elements[slot]);
+            }
+        }
+        return heavy;
+    }
+
+    /**
+     * See {@link SpaceSavingTopN#countersForExactTopK(int)}.
+     */
+    public long countersForExactTopK(int k){
+        if(k < 1 || size == 0)
+            return 0;
+        if(k >= size)
+            return size < m ? size : -1;
+
+        long kthLower = Long.MAX_VALUE;
+        long kthCount = kthCount(k);
+        long nextCount = kthCount(k + 1);
+
+        int seen = 0;
+        for(int bucket = maxBucket; bucket != NIL && seen < k; bucket = bucketPrev[bucket]){
+            for(int slot = bucketHead[bucket]; slot != NIL && seen < k; slot = elementNext[slot]){
+                kthLower = Math.min(kthLower, bucketCount[bucket] - elementError[slot]);
+                seen++;
+            }
+        }
+
+        long counters = -1;
+        long gap = kthLower - nextCount;
+        if(gap <= 0)
+            gap = kthCount - nextCount;
+        if(gap > 0)
+            counters = (2 * streamLength + gap - 1) / gap;
+
+        if(kthLower >= nextCount)
+            counters = counters < 0 ? m : Math.min(counters, m);
+        if(size < m)
+            counters = counters < 0 ? size : Math.min(counters, size);
+
+        return counters;
+    }
+
+    private long kthCount(int i){
+        int seen = 0;
+        for(int bucket = maxBucket; bucket != NIL; bucket = bucketPrev[bucket]){
+            for(int slot = bucketHead[bucket]; slot != NIL; slot = elementNext[slot]){
+                if(++seen >= i)
+                    return bucketCount[bucket];
+            }
+        }
+        return getMinCount();
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Number of counters, m.
+     */
+    int capacity(){
+        return m;
+    }
+
+    public Iterable<E> elements(){
+        return new Iterable<E>() {
+            public Iterator<E> iterator() {
+                return new Iterator<E>() {
+                    int next = 0;
+
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    public E next() {
+                        if(next >= size)
+                            throw new NoSuchElementException();
+                        return (E)elements[next++];
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Counts weight more occurrences of an element that is already monitored. Nothing is
+     * inserted, so the probe only has to be equal to the element and may be a reused view.
+     */
+    public boolean addIfMonitored(Object probe, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        int slot = elementIndex.get(probe);
+        if(slot == NIL)
+            return false;
+
+        streamLength += weight;
+        increment(slot, weight);
+        return true;
+    }
+
+    /**
+     * Adds keys[from, to) as a batch. Duplicates within the batch are collapsed first
+     * and each distinct key is then added once with its number of occurrences, which
+     * saves the index lookups and bucket moves of the repeated keys of skewed streams.
+     */
+    public boolean addAll(E[] keys, int from, int to) {
+        if(batch == null)
+            batch = new BatchAggregator<E>();
+        batch.aggregate(keys, from, to);
+        for(int i = 0; i < batch.distinct(); i++){
+            add(batch.key(i), batch.count(i));
+        }
+        batch.clear();
+        return to > from;
+    }
+
+    /**
+     * Moves the element in slot to the bucket for count + weight.
+     */
+    private void increment(int slot, long weight){
+        int bucket = elementBucket[slot];
+        long count = bucketCount[bucket] + weight;
+        int next = bucketNext[bucket];
+        boolean sole = bucketHead[bucket] == slot && bucketTail[bucket] == slot;
+
+        if(next != NIL && bucketCount[next] == count){
+            unlinkElement(slot);
+            linkElementFirst(next, slot);
+        }else if(next == NIL || bucketCount[next] > count){
+            if(sole){
+                //sole element of its bucket, the bucket can take the new count in place
+                bucketCount[bucket] = count;
+            }else{
+                int newBucket = newBucket(count, bucket);
+                unlinkElement(slot);
+                linkElementFirst(newBucket, slot);
+            }
+        }else{
+            int target = bucketLevels.floor(bucketCount, bucketNext, next, count);
+            if(bucketCount[target] != count)
+                target = newBucket(count, target);
+            unlinkElement(slot);
+            linkElementFirst(target, slot);
+        }
+    }
+
+    private void linkElementFirst(int bucket, int slot){
+        int head = bucketHead[bucket];
+        elementBucket[slot] = bucket;
+        elementPrev[slot] = NIL;
+        elementNext[slot] = head;
+        if(head == NIL)
+            bucketTail[bucket] = slot;
+        else
+            elementPrev[head] = slot;
+        bucketHead[bucket] = slot;
+    }
+
+    /**
+     * Unlinks the element from its bucket, releasing the bucket when it becomes empty.
+     */
+    private void unlinkElement(int slot){
+        int bucket = elementBucket[slot];
+        int prev = elementPrev[slot];
+        int next = elementNext[slot];
+
+        if(prev == NIL)
+            bucketHead[bucket] = next;
+        else
+            elementNext[prev] = next;
+
+        if(next == NIL)
+            bucketTail[bucket] = prev;
+        else
+            elementPrev[next] = prev;
+
+        if(bucketHead[bucket] == NIL)
+            releaseBucket(bucket);
+    }
+
+    /**
+     * Takes a bucket from the free list and links it after the given bucket,
+     * or first when after is NIL.
+     */
+    private int newBucket(long count, int after){
+        int bucket = freeBucket;
+        freeBucket = bucketNext[bucket];
+
+        bucketCount[bucket] = count;
+        bucketHead[bucket] = NIL;
+        bucketTail[bucket] = NIL;
+
+        int next = after == NIL ? minBucket : bucketNext[after];
+        bucketPrev[bucket] = after;
+        bucketNext[bucket] = next;
+        if(after == NIL)
+            minBucket = bucket;
+        else
+            bucketNext[after] = bucket;
+        if(next == NIL)
+            maxBucket = bucket;
+        else
+            bucketPrev[next] = bucket;
+        bucketLevels.link(bucketCount, bucket);
+
+        return bucket;
+    }
+
+    private void releaseBucket(int bucket){
+        bucketLevels.unlink(bucketCount, bucket);
+        int prev = bucketPrev[bucket];
+        int next = bucketNext[bucket];
+
+        if(prev == NIL)
+            minBucket = next;
+        else
+            bucketNext[prev] = next;
+
+        if(next == NIL)
+            maxBucket = prev;
+        else
+            bucketPrev[next] = prev;
+
+        bucketNext[bucket] = freeBucket;
+        freeBucket = bucket;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("ArraySpaceSavingTopN[\n");
+
+        int bucket = minBucket;
+        while(bucket != NIL){
+            sb.append("Bucket(").append(bucketCount[bucket]).append("):[");
+            int slot = bucketHead[bucket];
+            while(slot != NIL){
+                sb.append(elements[slot].toString()).append(",");
+                slot = elementNext[slot];
+            }
+            sb.append("],\n");
+            bucket = bucketNext[bucket];
+        }
+        sb.append("]");
+
+        return sb.toString();
+
+    }
+
+}
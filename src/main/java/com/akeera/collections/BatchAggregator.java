@@ -0,0 +1,85 @@
+package com.akeera.collections;
+
+/**
+ * Scratch table collapsing the duplicates of a batch of elements into
+ * (element, occurrences) pairs, so that a sketch applies a single weighted update
+ * per distinct element. The arrays are reused across batches and only grow.
+ *
+ * @author: pavanachanta
+ */
+class BatchAggregator<E> {
+
+    private Object[] keys = new Object[0];
+    private int[] hashes = new int[0];
+    private long[] counts = new long[0];
+    private int mask;
+
+    //table positions in order of first occurrence
+    private int[] order = new int[0];
+    private int distinct;
+
+    /**
+     * Aggregates batch[from, to), replacing the previous batch.
+     */
+    void aggregate(E[] batch, int from, int to) {
+        clear();
+        ensureCapacity(to - from);
+
+        for(int j = from; j < to; j++){
+            E key = batch[j];
+            int h = OpenAddressingIndex.hash(key);
+            int i = h & mask;
+            Object k;
+            while((k = keys[i]) != null){
+                if(hashes[i] == h && key.equals(k))
+                    break;
+                i = (i + 1) & mask;
+            }
+            if(k == null){
+                keys[i] = key;
+                hashes[i] = h;
+                counts[i] = 0;
+                order[distinct++] = i;
+            }
+            counts[i]++;
+        }
+    }
+
+    int distinct() {
+        return distinct;
+    }
+
+    @SuppressWarnings("unchecked")
+    E key(int i) {
+        return (E)keys[order[i]];
+    }
+
+    long count(int i) {
+        return counts[order[i]];
+    }
+
+    /**
+     * Empties the cells used by the last batch, leaving the rest of the table alone.
+     */
+    void clear() {
+        for(int i = 0; i < distinct; i++){
+            keys[order[i]] = null;
+        }
+        distinct = 0;
+    }
+
+    private void ensureCapacity(int batchSize) {
+        if(order.length >= batchSize)
+            return;
+
+        int capacity = 16;
+        while(capacity < 2 * batchSize){
+            capacity <<= 1;
+        }
+        keys = new Object[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+        order = new int[capacity >> 1];
+    }
+}
@@ -0,0 +1,159 @@
+package com.akeera.collections;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k largest (element, count) pairs of a stream in a min-heap, ties going to
+ * the element offered first. The arrays start small and double up to k, so a large k
+ * only costs what is actually offered.
+ * <p/>
+ * Offer everything, then {@link #sort()} once and read the pairs back with
+ * {@link #element(int)} and {@link #count(int)}, highest count first.
+ *
+ * @author: pavanachanta
+ */
+public class BoundedTopK<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+
+    private Object[] elements;
+    private long[] counts;
+    //arrival order, breaks ties between equal counts
+    private long[] seqs;
+    private int size;
+    private long offered;
+    private boolean sorted;
+
+    public BoundedTopK(int k) {
+        if(k < 1)
+            throw new IllegalArgumentException("k must be positive: " + k);
+        this.k = k;
+        int capacity = Math.min(k, INITIAL_CAPACITY);
+        elements = new Object[capacity];
+        counts = new long[capacity];
+        seqs = new long[capacity];
+    }
+
+    /**
+     * Whether an element with this count would be kept, so callers can skip copying
+     * the ones that would not.
+     */
+    public boolean accepts(long count) {
+        return size < k || count > counts[0];
+    }
+
+    /**
+     * Offers the element, evicting the smallest one when k are already kept.
+     *
+     * @return whether the element was kept
+     */
+    public boolean offer(E e, long count) {
+        if(sorted)
+            throw new IllegalStateException("offer after sort, clear first");
+        if(!accepts(count))
+            return false;
+
+        long seq = offered++;
+        if(size < k){
+            if(size == elements.length){
+                int capacity = (int)Math.min(k, 2L * size);
+                elements = Arrays.copyOf(elements, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                seqs = Arrays.copyOf(seqs, capacity);
+            }
+            siftUp(size++, e, count, seq);
+        }else{
+            siftDown(0, e, count, seq);
+        }
+        return true;
+    }
+
+    /**
+     * Orders the kept pairs by descending count, earliest offered first among equal
+     * counts. Heap sort in place, nothing is allocated.
+     */
+    public void sort() {
+        if(sorted)
+            return;
+        int n = size;
+        while(size > 1){
+            //move the smallest to the end, the heap shrinks in front of it
+            Object e = elements[size - 1];
+            long count = counts[size - 1];
+            long seq = seqs[size - 1];
+            elements[size - 1] = elements[0];
+            counts[size - 1] = counts[0];
+            seqs[size - 1] = seqs[0];
+            size--;
+            siftDown(0, e, count, seq);
+        }
+        size = n;
+        sorted = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E element(int i) {
+        return (E)elements[i];
+    }
+
+    public long count(int i) {
+        return counts[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The k this keeps.
+     */
+    public int capacity() {
+        return k;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        offered = 0;
+        sorted = false;
+    }
+
+    //whether (c1, s1) ranks below (c2, s2)
+    private static boolean less(long c1, long s1, long c2, long s2) {
+        return c1 < c2 || (c1 == c2 && s1 > s2);
+    }
+
+    private void siftUp(int i, Object e, long count, long seq) {
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            if(!less(count, seq, counts[parent], seqs[parent]))
+                break;
+            set(i, elements[parent], counts[parent], seqs[parent]);
+            i = parent;
+        }
+        set(i, e, count, seq);
+    }
+
+    private void siftDown(int i, Object e, long count, long seq) {
+        int half = size >>> 1;
+        while(i < half){
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if(right < size && less(counts[right], seqs[right], counts[child], seqs[child]))
+                child = right;
+            if(!less(counts[child], seqs[child], count, seq))
+                break;
+            set(i, elements[child], counts[child], seqs[child]);
+            i = child;
+        }
+        set(i, e, count, seq);
+    }
+
+    private void set(int i, Object e, long count, long seq) {
+        elements[i] = e;
+        counts[i] = count;
+        seqs[i] = seq;
+    }
+}
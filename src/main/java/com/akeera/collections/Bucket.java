@@ -6,9 +6,12 @@ import com.akeera.collections.Node;
 public class Bucket<E>{
     ClassicLinkedList<E> elements;
 
-    public int count;
+    public long count;
 
-    public Bucket(int count){
+    //forward pointers of the buckets skip list above level 0, null for most buckets
+    Node<Bucket>[] skip;
+
+    public Bucket(long count){
         this.count = count;
         elements = new ClassicLinkedList<E>();
     }
@@ -0,0 +1,143 @@
+package com.akeera.collections;
+
+import java.util.Arrays;
+
+/**
+ * Skip list over the bucket list of the array backed engines, where buckets are indices
+ * into their arrays, level 0 is their bucketNext list and every bucket holds a distinct
+ * count. Finds the bucket for a count in O(log #buckets) expected, like the bucket skip
+ * list of {@link SpaceSavingTopN}.
+ * <p/>
+ * Each bucket index gets a random height once, 1/4 of them reaching each next level, and
+ * keeps it when the bucket is released and reused. The owner calls {@link #link} after
+ * linking a bucket into its list and {@link #unlink} before releasing one, both with the
+ * bucket's count in place. A count may change in place as long as the bucket keeps its
+ * position in the list.
+ *
+ * @author: pavanachanta
+ */
+final class BucketSkipList {
+
+    private static final int NIL = -1;
+
+    private static final int MAX_LEVEL = 16;
+
+    //skip[skipStart[b] + i] is the bucket after b at level i + 1, b reaching
+    //skipStart[b + 1] - skipStart[b] levels above level 0
+    private int[] skipStart = new int[1];
+    private int[] skip = new int[0];
+    private int capacity;
+
+    //heads[i] is the first bucket reaching level i + 1
+    private final int[] heads = new int[MAX_LEVEL - 1];
+    private final int[] update = new int[MAX_LEVEL - 1];
+    private int level = 1;
+    private int seed = 0x2545F491;
+
+    BucketSkipList(int buckets) {
+        grow(buckets);
+        clear();
+    }
+
+    /**
+     * Draws the heights of the bucket indices up to the given number.
+     */
+    void grow(int buckets) {
+        if(buckets <= capacity)
+            return;
+        skipStart = Arrays.copyOf(skipStart, buckets + 1);
+        for(int b = capacity; b < buckets; b++){
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            int height = Math.min(1 + Integer.numberOfTrailingZeros(seed | (1 << 30)) / 2, MAX_LEVEL);
+            skipStart[b + 1] = skipStart[b] + height - 1;
+        }
+        skip = Arrays.copyOf(skip, skipStart[buckets]);
+        capacity = buckets;
+    }
+
+    /**
+     * Forgets every bucket, for an owner that emptied its list.
+     */
+    void clear() {
+        Arrays.fill(heads, NIL);
+        level = 1;
+    }
+
+    /**
+     * Last bucket with a count not above the given one, NIL if there is none.
+     */
+    int floor(long[] counts, int[] next, int first, long count) {
+        int x = NIL;
+        for(int i = level - 2; i >= 0; i--){
+            int n = x == NIL ? heads[i] : skip[skipStart[x] + i];
+            while(n != NIL && counts[n] <= count){
+                x = n;
+                n = skip[skipStart[x] + i];
+            }
+        }
+        int n = x == NIL ? first : next[x];
+        while(n != NIL && counts[n] <= count){
+            x = n;
+            n = next[x];
+        }
+        return x;
+    }
+
+    /**
+     * Links a bucket that was just linked into level 0 into the levels above.
+     */
+    void link(long[] counts, int bucket) {
+        int start = skipStart[bucket];
+        int levels = skipStart[bucket + 1] - start;
+        if(levels == 0)
+            return;
+        level = Math.max(level, levels + 1);
+        findPredecessors(counts, counts[bucket], levels);
+        for(int i = 0; i < levels; i++){
+            int x = update[i];
+            if(x == NIL){
+                skip[start + i] = heads[i];
+                heads[i] = bucket;
+            }else{
+                skip[start + i] = skip[skipStart[x] + i];
+                skip[skipStart[x] + i] = bucket;
+            }
+        }
+    }
+
+    /**
+     * Unlinks a bucket about to be released from the levels above level 0.
+     */
+    void unlink(long[] counts, int bucket) {
+        int start = skipStart[bucket];
+        int levels = skipStart[bucket + 1] - start;
+        if(levels == 0)
+            return;
+        findPredecessors(counts, counts[bucket], levels);
+        for(int i = 0; i < levels; i++){
+            int x = update[i];
+            if(x == NIL)
+                heads[i] = skip[start + i];
+            else
+                skip[skipStart[x] + i] = skip[start + i];
+        }
+    }
+
+    /**
+     * Fills update with the last bucket below the given count at each skip level.
+     */
+    private void findPredecessors(long[] counts, long count, int levels) {
+        int x = NIL;
+        for(int i = level - 2; i >= 0; i--){
+            int n = x == NIL ? heads[i] : skip[skipStart[x] + i];
+            while(n != NIL && counts[n] < count){
+                x = n;
+                n = skip[skipStart[x] + i];
+            }
+            if(i < levels)
+                update[i] = x;
+        }
+    }
+}
@@ -74,6 +74,7 @@ public class ClassicLinkedList<E>
      */
     public void addNodeFirst(Node<E> node) {
         final Node<E> f = first;
+        node.prev = null;
         node.next = f;
         first = node;
         if (f == null)
@@ -84,6 +85,25 @@ public class ClassicLinkedList<E>
         
     }
 
+    /**
+     * Links a node that is in no list after pred, first when pred is null. Lets a
+     * caller reuse its nodes instead of allocating one per insertion.
+     */
+    public void insertNodeAfter(Node<E> pred, Node<E> node) {
+        if (pred == null) {
+            addNodeFirst(node);
+            return;
+        }
+        node.prev = pred;
+        node.next = pred.next;
+        if (pred.next != null)
+            pred.next.prev = node;
+        else
+            last = node;
+        pred.next = node;
+        size++;
+    }
+
     /**
      * Links e as last element.
      */
@@ -303,6 +323,14 @@ public class ClassicLinkedList<E>
         return true;
     }
 
+    /**
+     * Forgets every node at once, leaving them linked to each other.
+     */
+    public void clear() {
+        first = last = null;
+        size = 0;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -0,0 +1,85 @@
+package com.akeera.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the counters of a {@link SpaceSavingTopN} from the highest count down, the most
+ * recently incremented first among equal counts. Nothing is copied: {@link #next()}
+ * steps to the next element node of the bucket list, and {@link #count()} and
+ * {@link #error()} read the counter of the element it returned, so the top k cost O(k)
+ * whatever the number of counters.
+ * <p/>
+ * The sketch must not be modified while iterating.
+ *
+ * @author: pavanachanta
+ */
+public class CounterIterator<E> implements Iterator<E> {
+
+    private final SpaceSavingTopN<E> topN;
+
+    private Node<Bucket> bucketNode;
+    //next element to return, and the one last returned
+    private Node<E> nextNode;
+    private Node<E> current;
+    private int remaining;
+
+    @SuppressWarnings("unchecked")
+    CounterIterator(SpaceSavingTopN<E> topN, int limit) {
+        this.topN = topN;
+        this.remaining = limit;
+        bucketNode = topN.buckets.getLast();
+        nextNode = bucketNode == null ? null : (Node<E>)bucketNode.item.elements.getFirst();
+    }
+
+    public boolean hasNext() {
+        return remaining > 0 && nextNode != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if(!hasNext())
+            throw new NoSuchElementException();
+        current = nextNode;
+        remaining--;
+        nextNode = nextNode.next;
+        if(nextNode == null){
+            //buckets are unlinked once emptied, so the next one down has an element
+            bucketNode = bucketNode.prev;
+            if(bucketNode != null)
+                nextNode = (Node<E>)bucketNode.item.elements.getFirst();
+        }
+        return current.item;
+    }
+
+    /**
+     * Estimated count of the element last returned by {@link #next()}.
+     */
+    public long count() {
+        return ((Bucket)returned().parent.item).count;
+    }
+
+    /**
+     * Overestimation error of the element last returned by {@link #next()}.
+     */
+    public long error() {
+        return topN.errors[returned().slot];
+    }
+
+    /**
+     * Guaranteed count of the element last returned by {@link #next()}.
+     */
+    public long lowerBound() {
+        return count() - error();
+    }
+
+    private Node<E> returned() {
+        if(current == null)
+            throw new IllegalStateException("next() has not been called");
+        return current;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
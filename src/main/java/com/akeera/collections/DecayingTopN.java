@@ -0,0 +1,143 @@
+package com.akeera.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Space-Saving over exponentially decayed counts, for terms that are frequent now rather
+ * than over the whole stream. Uses forward decay (Cormode et al., Forward Decay: A
+ * Practical Time Decay Model for Streaming Systems, 2009): an event at time t is added
+ * with a weight of exp(lambda * (t - L)) relative to a landmark L, so older events keep
+ * their count while newer ones weigh more. Seen from time now, every count is divided by
+ * exp(lambda * (now - L)), which ranks all counters alike, so the bucket order of the
+ * underlying {@link SpaceSavingTopN} is the decayed ranking at any time and memory stays
+ * at m counters.
+ * <p/>
+ * Counts are kept as longs, an event at the landmark being worth 2^20 units. Once a
+ * weight would grow past 2^10 events, the landmark moves to the event's time and every
+ * counter is divided by the growth in one pass over the buckets, see
+ * {@link SpaceSavingTopN#scale}. Times are in any unit, lambda per that unit, lambda =
+ * ln 2 / half-life.
+ *
+ * @author: pavanachanta
+ */
+public class DecayingTopN<E> {
+
+    //units of a count worth one event at the landmark
+    private static final double UNIT = 1 << 20;
+
+    //growth of the weights before the landmark is moved up
+    private static final double MAX_GROWTH = 1 << 10;
+
+    private final SpaceSavingTopN<E> topN;
+
+    private final double lambda;
+
+    private long landmark;
+
+    public DecayingTopN(int m, double lambda, long landmark) {
+        if(!(lambda > 0))
+            throw new IllegalArgumentException("lambda should be positive: " + lambda);
+        this.topN = new SpaceSavingTopN<E>(m);
+        this.lambda = lambda;
+        this.landmark = landmark;
+    }
+
+    /**
+     * Counts one event at the given time.
+     */
+    public boolean add(E e, long time) {
+        return add(e, 1, time);
+    }
+
+    /**
+     * Counts an event of the given weight at the given time. Times may arrive out of
+     * order, an event older than the landmark only weighs less.
+     */
+    public boolean add(E e, double weight, long time) {
+        if(!(weight > 0))
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        double growth = Math.exp(lambda * (time - landmark));
+        if(growth > MAX_GROWTH){
+            rescale(time);
+            growth = 1;
+        }
+        long units = Math.max(1, Math.round(weight * UNIT * growth));
+        if(topN.getStreamLength() > Long.MAX_VALUE - units)
+            throw new IllegalStateException("decayed total overflows, lambda " + lambda + " is too small for the stream");
+        return topN.add(e, units);
+    }
+
+    /**
+     * Moves the landmark to the given time, dividing every count by the weight an event
+     * gained since the current one. Done by {@link #add} when needed; moving it back is
+     * ignored. After a gap of more than about 1075 half-lives that weight no longer fits
+     * in a double, every count then decays to the floor of one unit.
+     */
+    public void rescale(long newLandmark) {
+        if(newLandmark <= landmark)
+            return;
+        topN.scale(Math.max(Double.MIN_VALUE, Math.exp(-lambda * (newLandmark - landmark))));
+        landmark = newLandmark;
+    }
+
+    public long getLandmark() {
+        return landmark;
+    }
+
+    /**
+     * The element's decayed count seen from time now, 0 if it is not monitored.
+     */
+    public double getCount(E e, long now) {
+        return topN.getCountByElement(e) * decay(now);
+    }
+
+    /**
+     * Overestimation error of the element's decayed count seen from time now.
+     */
+    public double getError(E e, long now) {
+        return topN.getErrorByElement(e) * decay(now);
+    }
+
+    /**
+     * Decayed weight of the whole stream seen from time now.
+     */
+    public double getTotal(long now) {
+        return topN.getStreamLength() * decay(now);
+    }
+
+    /**
+     * The k highest decayed counts, highest first. The ranking is the same from any time.
+     */
+    public List<E> topK(int k) {
+        List<E> top = new ArrayList<E>();
+        CounterIterator<E> counters = topN.descendingIterator(k);
+        while(counters.hasNext()){
+            top.add(counters.next());
+        }
+        return top;
+    }
+
+    /**
+     * The elements whose decayed count is at least phi times the decayed total, see
+     * {@link SpaceSavingTopN#heavyHitters(double)}. Both decay alike, so the answer is
+     * the same from any time.
+     */
+    public List<E> heavyHitters(double phi) {
+        return topN.heavyHitters(phi);
+    }
+
+    public int size() {
+        return topN.size();
+    }
+
+    //units of a count to events seen from now
+    private double decay(long now) {
+        return Math.exp(-lambda * (now - landmark)) / UNIT;
+    }
+
+    public String toString() {
+        return "DecayingTopN{lambda=" + lambda + ", landmark=" + landmark + ", size=" + size() + "}";
+    }
+}
@@ -0,0 +1,289 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Filtered Space-Saving (Homem and Carvalho, "Finding top-k elements in data streams",
+ * 2010): Space-Saving behind a filter of hashed counters, for streams with a long tail.
+ * <p/>
+ * Plain Space-Saving lets every new element take over the minimum counter, so on a long
+ * tail the counters churn and errors pile up. Here an element without a counter first
+ * adds its weight to the filter cell it hashes to, and only takes over the minimum
+ * counter once that cell reaches the minimum count. It then starts from the cell's
+ * value, kept as its error. An evicted element leaves its count in its cell.
+ * <p/>
+ * Every cell bounds the true count of the unmonitored elements hashing to it, so the
+ * upper bound of such an element is its cell rather than the minimum count.
+ *
+ * @author: pavanachanta
+ */
+public class FilteredSpaceSavingTopN<E> implements FrequentItemsSketch<E> {
+
+    private static final int FORMAT_VERSION = 1;
+
+    //filter cells per counter
+    private static final int CELLS_PER_COUNTER = 4;
+
+    //number of counters to maintain
+    private final int m;
+
+    private long streamLength;
+
+    private final ArraySpaceSavingTopN<E> monitored;
+
+    private final long[] filter;
+    private final int filterMask;
+    //largest cell, the bound on any unmonitored element
+    private long filterMax;
+
+    //scratch table of addAll, created on first use
+    private BatchAggregator<E> batch;
+
+    public FilteredSpaceSavingTopN(int m) {
+        this(new ArraySpaceSavingTopN<E>(m));
+    }
+
+    private FilteredSpaceSavingTopN(ArraySpaceSavingTopN<E> monitored) {
+        this.monitored = monitored;
+        this.m = monitored.capacity();
+
+        int capacity = 2;
+        while(capacity < (long)m * CELLS_PER_COUNTER && capacity < (1 << 30)){
+            capacity <<= 1;
+        }
+        filter = new long[capacity];
+        filterMask = capacity - 1;
+    }
+
+    /**
+     * Filter cell of the element. Rehashes the index hash so that the cell does not
+     * follow the element's position in the index.
+     */
+    private int cell(Object e){
+        int h = OpenAddressingIndex.hash(e) * 0x9e3779b9;
+        return (h ^ (h >>> 15)) & filterMask;
+    }
+
+    public boolean add(E e) {
+        return add(e, 1);
+    }
+
+    public boolean add(E e, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        if(monitored.addIfMonitored(e, weight)){
+            streamLength += weight;
+            return true;
+        }
+        streamLength += weight;
+
+        int i = cell(e);
+        long estimate = filter[i] + weight;
+        if(monitored.size() < m || estimate >= monitored.getMinCount()){
+            long minCount = monitored.getMinCount();
+            E evicted = monitored.putCounter(e, estimate, filter[i]);
+            if(evicted != null)
+                raiseCell(cell(evicted), minCount);
+        }else{
+            raiseCell(i, estimate);
+        }
+        return true;
+    }
+
+    private void raiseCell(int i, long count){
+        if(count > filter[i]){
+            filter[i] = count;
+            filterMax = Math.max(filterMax, count);
+        }
+    }
+
+    public boolean addIfMonitored(Object probe, long weight) {
+        if(!monitored.addIfMonitored(probe, weight))
+            return false;
+        streamLength += weight;
+        return true;
+    }
+
+    /**
+     * Adds keys[from, to) as a batch, see {@link SpaceSavingTopN#addAll(Object[], int, int)}.
+     */
+    public boolean addAll(E[] keys, int from, int to) {
+        if(batch == null)
+            batch = new BatchAggregator<E>();
+        batch.aggregate(keys, from, to);
+        for(int i = 0; i < batch.distinct(); i++){
+            add(batch.key(i), batch.count(i));
+        }
+        batch.clear();
+        return to > from;
+    }
+
+    public long getCountByElement(E e){
+        return monitored.getCountByElement(e);
+    }
+
+    public long getErrorByElement(E e){
+        return monitored.getErrorByElement(e);
+    }
+
+    public long getLowerBound(E e){
+        return monitored.getLowerBound(e);
+    }
+
+    public long getUpperBound(E e){
+        long count = monitored.getCountByElement(e);
+        return count > 0 ? count : filter[cell(e)];
+    }
+
+    /**
+     * Largest filter cell, which bounds the count of any element without a counter.
+     */
+    public long getMinCount(){
+        return filterMax;
+    }
+
+    public long getStreamLength(){
+        return streamLength;
+    }
+
+    public List<E> guaranteedTopK(int k){
+        return SketchQueries.guaranteedTopK(this, k);
+    }
+
+    public long countersForExactTopK(int k){
+        return SketchQueries.countersForExactTopK(this, k, m, filterMax == 0);
+    }
+
+    public List<E> heavyHitters(double phi){
+        return SketchQueries.heavyHitters(this, phi, false);
+    }
+
+    public List<E> guaranteedHeavyHitters(double phi){
+        return SketchQueries.heavyHitters(this, phi, true);
+    }
+
+    public int size(){
+        return monitored.size();
+    }
+
+    public Iterable<E> elements(){
+        return monitored.elements();
+    }
+
+    /**
+     * Merges another FilteredSpaceSavingTopN of the same m. The filters are added cell
+     * by cell. Each counter is merged as in {@link SpaceSavingTopN#merge(SpaceSavingTopN)},
+     * except that a sketch not monitoring the element contributes its filter cell
+     * rather than its minimum count. The counters that do not make the m largest leave
+     * their count in their cell. The other sketch is left untouched.
+     */
+    @SuppressWarnings("unchecked")
+    public FilteredSpaceSavingTopN<E> merge(FrequentItemsSketch<E> sketch){
+        if(!(sketch instanceof FilteredSpaceSavingTopN))
+            throw new IllegalArgumentException("cannot merge a " + sketch.getClass().getSimpleName() + " into a FilteredSpaceSavingTopN");
+        FilteredSpaceSavingTopN<E> other = (FilteredSpaceSavingTopN<E>)sketch;
+        if(other.m != m)
+            throw new IllegalArgumentException("cannot merge a sketch of " + other.m + " counters into one of " + m);
+
+        int total = size() + other.size();
+        final Object[] keys = new Object[total];
+        final long[] counts = new long[total];
+        final long[] errs = new long[total];
+        int n = 0;
+
+        for(E e : monitored.elements()){
+            keys[n] = e;
+            counts[n] = monitored.getCountByElement(e);
+            errs[n] = monitored.getErrorByElement(e);
+            long otherCount = other.monitored.getCountByElement(e);
+            if(otherCount > 0){
+                counts[n] += otherCount;
+                errs[n] += other.monitored.getErrorByElement(e);
+            }else{
+                long bound = other.filter[cell(e)];
+                counts[n] += bound;
+                errs[n] += bound;
+            }
+            n++;
+        }
+        for(E e : other.monitored.elements()){
+            if(monitored.getCountByElement(e) == 0){
+                long bound = filter[cell(e)];
+                keys[n] = e;
+                counts[n] = other.monitored.getCountByElement(e) + bound;
+                errs[n] = other.monitored.getErrorByElement(e) + bound;
+                n++;
+            }
+        }
+
+        //ascending by count, then keep the m largest
+        int[] order = SketchQueries.orderByCount(counts, n, false);
+
+        long mergedLength = streamLength + other.streamLength;
+        monitored.clear();
+        streamLength = mergedLength;
+
+        filterMax = 0;
+        for(int i = 0; i < filter.length; i++){
+            filter[i] += other.filter[i];
+            filterMax = Math.max(filterMax, filter[i]);
+        }
+
+        for(int i = 0; i < n; i++){
+            int j = order[i];
+            if(i < n - m)
+                raiseCell(cell(keys[j]), counts[j]);
+            else
+                monitored.putCounter((E)keys[j], counts[j], errs[j]);
+        }
+
+        return this;
+    }
+
+    /**
+     * Writes the sketch:
+     * <pre>
+     * byte    format version
+     * varlong stream length
+     * the counters, as {@link ArraySpaceSavingTopN#write(DataOutput, KeySerializer)}
+     * varint  number of filter cells
+     * varlong per cell
+     * </pre>
+     */
+    public void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        KeySerializers.writeVLong(out, streamLength);
+        monitored.write(out, keySerializer);
+        KeySerializers.writeVLong(out, filter.length);
+        for(long cell : filter){
+            KeySerializers.writeVLong(out, cell);
+        }
+    }
+
+    public static <E> FilteredSpaceSavingTopN<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+        int version = in.readByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("unsupported sketch format version: " + version);
+
+        long streamLength = KeySerializers.readVLong(in);
+        FilteredSpaceSavingTopN<E> topN = new FilteredSpaceSavingTopN<E>(ArraySpaceSavingTopN.read(in, keySerializer));
+        int cells = KeySerializers.readVInt(in);
+        if(cells != topN.filter.length)
+            throw new IOException("corrupt sketch, " + cells + " filter cells for m = " + topN.m);
+
+        topN.streamLength = streamLength;
+        for(int i = 0; i < cells; i++){
+            topN.raiseCell(i, KeySerializers.readVLong(in));
+        }
+        return topN;
+    }
+
+    public String toString(){
+        return "FilteredSpaceSavingTopN[filterMax=" + filterMax + ", " + monitored + "]";
+    }
+}
@@ -0,0 +1,124 @@
+package com.akeera.collections;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Common view over the top-N sketches so the Cascading operations can switch
+ * between engines without caring how the counters are stored.
+ * <p/>
+ * The Space-Saving engines overestimate counts while Misra-Gries and Lossy Counting
+ * underestimate them, so callers that need a guarantee should use the bounds rather
+ * than the estimate.
+ *
+ * @author: pavanachanta
+ */
+public interface FrequentItemsSketch<E> {
+
+    /**
+     * Counts one occurrence of the element.
+     */
+    boolean add(E e);
+
+    /**
+     * Counts weight occurrences of the element at once.
+     */
+    boolean add(E e, long weight);
+
+    /**
+     * Counts weight occurrences of the element only if it is already monitored, without
+     * keeping a reference to the probe.
+     *
+     * @return false, counting nothing, if the element is not monitored
+     */
+    boolean addIfMonitored(Object probe, long weight);
+
+    /**
+     * Counts keys[from, to), collapsing duplicates before updating the counters.
+     */
+    boolean addAll(E[] keys, int from, int to);
+
+    /**
+     * Returns the estimated count of the element, 0 if it is not monitored.
+     */
+    long getCountByElement(E e);
+
+    /**
+     * Error carried by the element's counter, the gap between its upper and lower
+     * bounds, 0 if it is not monitored.
+     */
+    long getErrorByElement(E e);
+
+    /**
+     * The element's true count is at least this.
+     */
+    long getLowerBound(E e);
+
+    /**
+     * The element's true count is at most this.
+     */
+    long getUpperBound(E e);
+
+    /**
+     * The true count of any element that is not monitored is at most this.
+     */
+    long getMinCount();
+
+    /**
+     * Number of elements added so far.
+     */
+    long getStreamLength();
+
+    /**
+     * The elements guaranteed to be in the top-k, highest count first.
+     */
+    List<E> guaranteedTopK(int k);
+
+    /**
+     * Smallest number of counters that would have made the top-k exact, -1 if unknown.
+     */
+    long countersForExactTopK(int k);
+
+    /**
+     * The monitored elements whose upper bound is at least phi times the stream length,
+     * highest estimate first. Every element that frequent is among them once
+     * {@link #getMinCount()} is below phi * N.
+     *
+     * @param phi fraction of the stream, in (0, 1]
+     */
+    List<E> heavyHitters(double phi);
+
+    /**
+     * The elements whose lower bound is at least phi times the stream length, highest
+     * estimate first. Each of them is that frequent.
+     *
+     * @param phi fraction of the stream, in (0, 1]
+     */
+    List<E> guaranteedHeavyHitters(double phi);
+
+    /**
+     * Number of elements currently monitored.
+     */
+    int size();
+
+    /**
+     * The monitored elements, in no particular order.
+     */
+    Iterable<E> elements();
+
+    /**
+     * Merges a sketch of the same engine and size into this one, which then summarizes
+     * both streams. The other sketch is left untouched.
+     *
+     * @return this sketch
+     * @throws IllegalArgumentException if the other sketch comes from another engine
+     */
+    FrequentItemsSketch<E> merge(FrequentItemsSketch<E> other);
+
+    /**
+     * Writes the sketch, each key through the given serializer. It is read back with
+     * the {@link SketchEngine#read} of its engine.
+     */
+    void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException;
+}
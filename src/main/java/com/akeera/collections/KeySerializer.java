@@ -0,0 +1,17 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads the elements of a sketch, see {@link SpaceSavingTopN#write(DataOutput, KeySerializer)}.
+ *
+ * @author: pavanachanta
+ */
+public interface KeySerializer<E> {
+
+    void write(DataOutput out, E key) throws IOException;
+
+    E read(DataInput in) throws IOException;
+}
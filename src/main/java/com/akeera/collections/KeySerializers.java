@@ -0,0 +1,85 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Variable length encodings shared by the sketch wire format, and serializers for
+ * the common key types.
+ *
+ * @author: pavanachanta
+ */
+public final class KeySerializers {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Varint length followed by the UTF-8 bytes. */
+    public static final KeySerializer<String> STRING = new KeySerializer<String>() {
+
+        public void write(DataOutput out, String key) throws IOException {
+            writeBytes(out, key.getBytes(UTF8));
+        }
+
+        public String read(DataInput in) throws IOException {
+            return new String(readBytes(in), UTF8);
+        }
+    };
+
+    /** Zig-zag varint. */
+    public static final KeySerializer<Long> LONG = new KeySerializer<Long>() {
+
+        public void write(DataOutput out, Long key) throws IOException {
+            writeVLong(out, (key << 1) ^ (key >> 63));
+        }
+
+        public Long read(DataInput in) throws IOException {
+            long v = readVLong(in);
+            return (v >>> 1) ^ -(v & 1);
+        }
+    };
+
+    private KeySerializers() {
+    }
+
+    /**
+     * Writes a non negative value 7 bits at a time, low bits first.
+     */
+    public static void writeVLong(DataOutput out, long v) throws IOException {
+        while((v & ~0x7FL) != 0){
+            out.writeByte((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int)v);
+    }
+
+    public static long readVLong(DataInput in) throws IOException {
+        long v = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            byte b = in.readByte();
+            v |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return v;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    public static int readVInt(DataInput in) throws IOException {
+        long v = readVLong(in);
+        if(v > Integer.MAX_VALUE)
+            throw new IOException("varint out of int range: " + v);
+        return (int)v;
+    }
+
+    public static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
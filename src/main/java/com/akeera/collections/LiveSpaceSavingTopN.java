@@ -0,0 +1,154 @@
+package com.akeera.collections;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link SpaceSavingTopN} fed by one writer thread while other threads poll its top-k.
+ * <p/>
+ * The writer holds a {@link StampedLock} in write mode for each add, or each batch, which
+ * costs it an uncontended compare-and-set. Readers never take the lock on their first
+ * tries: they walk the top of the bucket list from the highest count down, reading only
+ * the k counters they return, and keep the result only if no add ran meanwhile, as with
+ * a seqlock. A walk that races an add may see a half relinked list, it stops after a
+ * bounded number of steps and is retried. Only a reader that keeps losing the race falls
+ * back to the read lock, holding the writer up for one O(k) walk.
+ *
+ * @author: pavanachanta
+ */
+public class LiveSpaceSavingTopN<E> {
+
+    //optimistic walks before a reader takes the read lock
+    private static final int OPTIMISTIC_TRIES = 8;
+
+    private final SpaceSavingTopN<E> topN;
+
+    private final StampedLock lock = new StampedLock();
+
+    public LiveSpaceSavingTopN(int m) {
+        this.topN = new SpaceSavingTopN<E>(m);
+    }
+
+    /**
+     * Writer side, see {@link SpaceSavingTopN#add(Object)}.
+     */
+    public boolean add(E e) {
+        long stamp = lock.writeLock();
+        try{
+            return topN.add(e, 1);
+        }finally{
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writer side, see {@link SpaceSavingTopN#add(Object, long)}.
+     */
+    public boolean add(E e, long weight) {
+        long stamp = lock.writeLock();
+        try{
+            return topN.add(e, weight);
+        }finally{
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writer side, see {@link SpaceSavingTopN#addAll}. The batch is one write, so readers
+     * see all of it or none.
+     */
+    public boolean addAll(E[] keys, int from, int to) {
+        long stamp = lock.writeLock();
+        try{
+            return topN.addAll(keys, from, to);
+        }finally{
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The k highest counts, see {@link #topK(BoundedTopK)}.
+     */
+    public BoundedTopK<E> topK(int k) {
+        BoundedTopK<E> result = new BoundedTopK<E>(k);
+        topK(result);
+        return result;
+    }
+
+    /**
+     * Fills result with the elements of the k highest counts, k being its capacity, and
+     * sorts it. All of them are read at the same point of the stream.
+     */
+    public void topK(BoundedTopK<E> result) {
+        for(int i = 0; i < OPTIMISTIC_TRIES; i++){
+            long stamp = lock.tryOptimisticRead();
+            if(stamp == 0)
+                continue;
+            result.clear();
+            if(walk(result) && lock.validate(stamp)){
+                result.sort();
+                return;
+            }
+        }
+
+        long stamp = lock.readLock();
+        try{
+            result.clear();
+            walk(result);
+        }finally{
+            lock.unlockRead(stamp);
+        }
+        result.sort();
+    }
+
+    /**
+     * Number of elements added so far, read without blocking the writer.
+     */
+    public long getStreamLength() {
+        long stamp = lock.tryOptimisticRead();
+        long streamLength = topN.getStreamLength();
+        if(lock.validate(stamp))
+            return streamLength;
+
+        stamp = lock.readLock();
+        try{
+            return topN.getStreamLength();
+        }finally{
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Offers the counters from the highest bucket down until result holds as many as it
+     * can keep. A consistent list takes at most one step per element and per bucket, so
+     * a walk that takes more, or runs into a node being relinked, raced an add.
+     *
+     * @return false if the walk was cut short
+     */
+    @SuppressWarnings("unchecked")
+    private boolean walk(BoundedTopK<E> result) {
+        int k = result.capacity();
+        int steps = 2 * k + 2;
+        try{
+            Node<Bucket> bucketNode = topN.buckets.getLast();
+            while(bucketNode != null && result.size() < k){
+                Bucket bucket = bucketNode.item;
+                long count = bucket.count;
+                Node<E> elementNode = (Node<E>)bucket.elements.getFirst();
+                while(elementNode != null && result.size() < k){
+                    E e = elementNode.item;
+                    if(e == null || --steps < 0)
+                        return false;
+                    result.offer(e, count);
+                    elementNode = elementNode.next;
+                }
+                if(--steps < 0)
+                    return false;
+                bucketNode = bucketNode.prev;
+            }
+            return true;
+        }catch(RuntimeException raced){
+            //a null link or a cast of a node that moved lists, only possible during an add
+            return false;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.akeera.collections;
+
+import java.util.Arrays;
+
+/**
+ * Version of {@link ArraySpaceSavingTopN} for primitive long keys such as user or item
+ * ids and IPv4 addresses, so that counting never boxes a key.
+ * <p/>
+ * Keys sit in a long[] by slot and the index is an open addressing table of slot ids,
+ * with the same bucket arrays as {@link Utf8SpaceSavingTopN}. Nothing is allocated per
+ * add once the bucket arrays have grown to the number of distinct counts.
+ *
+ * @author: pavanachanta
+ */
+public class LongSpaceSavingTopN {
+
+    private static final int NIL = -1;
+
+    private static final int INITIAL_BUCKETS = 64;
+
+    //fill ratio of the index, whose cells are 4 bytes only
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //number of counters to maintain
+    private final int m;
+
+    private int size;
+
+    private long streamLength;
+
+    //element slots
+    private final long[] keys;
+    private final long[] elementError;
+    private final int[] elementBucket;
+    private final int[] elementNext;
+    private final int[] elementPrev;
+
+    //buckets, linked from the lowest count (minBucket) up, grown
+    //on demand up to m + 1
+    private long[] bucketCount;
+    private int[] bucketHead;
+    private int[] bucketTail;
+    private int[] bucketNext;
+    private int[] bucketPrev;
+    private int minBucket = NIL;
+    //skip list over the buckets, as in ArraySpaceSavingTopN
+    private final BucketSkipList bucketLevels = new BucketSkipList(0);
+    private int freeBucket;
+
+    //slot + 1 per cell, 0 being empty
+    private final int[] table;
+    private final int mask;
+
+    public LongSpaceSavingTopN(int m) {
+        if(m < 1){
+            m = 1;
+        }
+        this.m = m;
+
+        keys          = new long[m];
+        elementError  = new long[m];
+        elementBucket = new int[m];
+        elementNext   = new int[m];
+        elementPrev   = new int[m];
+
+        bucketCount = new long[0];
+        bucketHead  = new int[0];
+        bucketTail  = new int[0];
+        bucketNext  = new int[0];
+        bucketPrev  = new int[0];
+        freeBucket = NIL;
+        growBuckets();
+
+        int capacity = 2;
+        while(capacity < (m + 1L) / LOAD_FACTOR){
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Murmur3 64 bit finalizer, folded to an int.
+     */
+    public static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+
+    public boolean add(long key) {
+        return add(key, 1);
+    }
+
+    /**
+     * Adds weight occurrences of the key, see {@link SpaceSavingTopN#add(Object, long)}.
+     */
+    public boolean add(long key, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        streamLength += weight;
+
+        int cell = find(key);
+        if(table[cell] != 0){
+            increment(table[cell] - 1, weight);
+            return true;
+        }
+
+        if(size == m){
+            //take over the oldest(last or LRU) counter of the minimum bucket, inheriting
+            //its count as overestimation error
+            int slot = bucketTail[minBucket];
+            removeFromTable(slot);
+            //the removal may have shifted the run the free cell belongs to
+            cell = find(key);
+            keys[slot] = key;
+            table[cell] = slot + 1;
+            elementError[slot] = bucketCount[elementBucket[slot]];
+            increment(slot, weight);
+            return true;
+        }
+
+        int slot = size++;
+        keys[slot] = key;
+        table[cell] = slot + 1;
+        elementError[slot] = 0;
+
+        int bucket = minBucket;
+        if(bucket == NIL || bucketCount[bucket] > weight){
+            bucket = newBucket(weight, NIL);
+        }else{
+            bucket = bucketLevels.floor(bucketCount, bucketNext, bucket, weight);
+            if(bucketCount[bucket] != weight)
+                bucket = newBucket(weight, bucket);
+        }
+        linkElementFirst(bucket, slot);
+
+        return true;
+    }
+
+    /**
+     * Slot monitoring the key, -1 if it is not monitored.
+     */
+    public int slotOf(long key) {
+        return table[find(key)] - 1;
+    }
+
+    public long getCountByKey(long key) {
+        int slot = slotOf(key);
+        return slot == NIL ? 0 : bucketCount[elementBucket[slot]];
+    }
+
+    public long getErrorByKey(long key) {
+        int slot = slotOf(key);
+        return slot == NIL ? 0 : elementError[slot];
+    }
+
+    public long getLowerBound(long key) {
+        int slot = slotOf(key);
+        return slot == NIL ? 0 : bucketCount[elementBucket[slot]] - elementError[slot];
+    }
+
+    public long getUpperBound(long key) {
+        int slot = slotOf(key);
+        return slot == NIL ? getMinCount() : bucketCount[elementBucket[slot]];
+    }
+
+    public long getMinCount() {
+        if(size < m || minBucket == NIL)
+            return 0;
+        return bucketCount[minBucket];
+    }
+
+    public long getStreamLength() {
+        return streamLength;
+    }
+
+    /**
+     * Number of monitored keys, held in slots 0 to size - 1.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long key(int slot) {
+        return keys[slot];
+    }
+
+    public long count(int slot) {
+        return bucketCount[elementBucket[slot]];
+    }
+
+    public long error(int slot) {
+        return elementError[slot];
+    }
+
+    /**
+     * Cell holding the key, or the empty cell ending its probe run.
+     */
+    private int find(long key) {
+        int i = hash(key) & mask;
+        int entry;
+        while((entry = table[i]) != 0){
+            if(keys[entry - 1] == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Empties the cell of slot, moving back every following entry of the run whose
+     * home position does not lie cyclically in (i, j].
+     */
+    private void removeFromTable(int slot) {
+        int i = hash(keys[slot]) & mask;
+        while(table[i] != slot + 1){
+            i = (i + 1) & mask;
+        }
+        int j = i;
+        while(true){
+            j = (j + 1) & mask;
+            if(table[j] == 0)
+                break;
+            int home = hash(keys[table[j] - 1]) & mask;
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if(!stays){
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    /**
+     * Moves the element in slot to the bucket for count + weight.
+     */
+    private void increment(int slot, long weight){
+        int bucket = elementBucket[slot];
+        long count = bucketCount[bucket] + weight;
+        int next = bucketNext[bucket];
+        boolean sole = bucketHead[bucket] == slot && bucketTail[bucket] == slot;
+
+        if(next != NIL && bucketCount[next] == count){
+            unlinkElement(slot);
+            linkElementFirst(next, slot);
+        }else if(next == NIL || bucketCount[next] > count){
+            if(sole){
+                //sole element of its bucket, the bucket can take the new count in place
+                bucketCount[bucket] = count;
+            }else{
+                int newBucket = newBucket(count, bucket);
+                unlinkElement(slot);
+                linkElementFirst(newBucket, slot);
+            }
+        }else{
+            int target = bucketLevels.floor(bucketCount, bucketNext, next, count);
+            if(bucketCount[target] != count)
+                target = newBucket(count, target);
+            unlinkElement(slot);
+            linkElementFirst(target, slot);
+        }
+    }
+
+    private void linkElementFirst(int bucket, int slot){
+        int head = bucketHead[bucket];
+        elementBucket[slot] = bucket;
+        elementPrev[slot] = NIL;
+        elementNext[slot] = head;
+        if(head == NIL)
+            bucketTail[bucket] = slot;
+        else
+            elementPrev[head] = slot;
+        bucketHead[bucket] = slot;
+    }
+
+    private void unlinkElement(int slot){
+        int bucket = elementBucket[slot];
+        int prev = elementPrev[slot];
+        int next = elementNext[slot];
+
+        if(prev == NIL)
+            bucketHead[bucket] = next;
+        else
+            elementNext[prev] = next;
+
+        if(next == NIL)
+            bucketTail[bucket] = prev;
+        else
+            elementPrev[next] = prev;
+
+        if(bucketHead[bucket] == NIL)
+            releaseBucket(bucket);
+    }
+
+    /**
+     * Doubles the bucket arrays, up to the m + 1 buckets a moving element may need
+     * before its old bucket is released, and links the new ones into the free list.
+     */
+    private void growBuckets(){
+        int from = bucketCount.length;
+        int to = (int)Math.min(m + 1L, Math.max(INITIAL_BUCKETS, 2L * from));
+        bucketCount = Arrays.copyOf(bucketCount, to);
+        bucketHead  = Arrays.copyOf(bucketHead, to);
+        bucketTail  = Arrays.copyOf(bucketTail, to);
+        bucketNext  = Arrays.copyOf(bucketNext, to);
+        bucketPrev  = Arrays.copyOf(bucketPrev, to);
+        bucketLevels.grow(to);
+        for(int i = from; i < to; i++){
+            bucketNext[i] = i + 1 < to ? i + 1 : freeBucket;
+        }
+        freeBucket = from < to ? from : freeBucket;
+    }
+
+    private int newBucket(long count, int after){
+        if(freeBucket == NIL)
+            growBuckets();
+        int bucket = freeBucket;
+        freeBucket = bucketNext[bucket];
+
+        bucketCount[bucket] = count;
+        bucketHead[bucket] = NIL;
+        bucketTail[bucket] = NIL;
+
+        int next = after == NIL ? minBucket : bucketNext[after];
+        bucketPrev[bucket] = after;
+        bucketNext[bucket] = next;
+        if(after == NIL)
+            minBucket = bucket;
+        else
+            bucketNext[after] = bucket;
+        if(next != NIL)
+            bucketPrev[next] = bucket;
+        bucketLevels.link(bucketCount, bucket);
+
+        return bucket;
+    }
+
+    private void releaseBucket(int bucket){
+        bucketLevels.unlink(bucketCount, bucket);
+        int prev = bucketPrev[bucket];
+        int next = bucketNext[bucket];
+
+        if(prev == NIL)
+            minBucket = next;
+        else
+            bucketNext[prev] = next;
+
+        if(next != NIL)
+            bucketPrev[next] = prev;
+
+        bucketNext[bucket] = freeBucket;
+        freeBucket = bucket;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("LongSpaceSavingTopN[\n");
+
+        int bucket = minBucket;
+        while(bucket != NIL){
+            sb.append("Bucket(").append(bucketCount[bucket]).append("):[");
+            int slot = bucketHead[bucket];
+            while(slot != NIL){
+                sb.append(keys[slot]).append(",");
+                slot = elementNext[slot];
+            }
+            sb.append("],\n");
+            bucket = bucketNext[bucket];
+        }
+        sb.append("]");
+
+        return sb.toString();
+
+    }
+
+}
@@ -0,0 +1,359 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lossy Counting (Manku and Motwani, "Approximate Frequency Counts over Data Streams",
+ * 2002) with error N / m, i.e. epsilon = 1 / m.
+ * <p/>
+ * The stream is cut into windows of m occurrences. Every element gets an entry when it
+ * is first seen, holding its count since then and the most it may have occurred before
+ * (delta). At the end of each window the entries whose count plus delta does not exceed
+ * the number of windows so far are dropped. Answers frequency threshold queries
+ * directly: every element occurring more than phi * N times is monitored, with a count
+ * at least (phi - 1 / m) * N.
+ * <p/>
+ * Unlike the other engines the number of entries is not capped at m, it is
+ * O(m log(N / m)) in the worst case and close to m on skewed streams.
+ *
+ * @author: pavanachanta
+ */
+public class LossyCountingTopN<E> implements FrequentItemsSketch<E> {
+
+    private static final int NIL = -1;
+
+    private static final int FORMAT_VERSION = 1;
+
+    //the index grows with the entries, well past m if the stream asks for it
+    private static final int MAX_ENTRIES = 1 << 28;
+
+    //window width, 1 / epsilon
+    private final int m;
+
+    private int size;
+
+    private long streamLength;
+
+    //windows pruned so far, the most an element without an entry can have occurred
+    private long pruned;
+
+    private long nextPrune;
+
+    //scratch table of addAll, created on first use
+    private BatchAggregator<E> batch;
+
+    //entries in slots 0 to size - 1, growing on demand
+    private Object[] elements;
+    private long[] counts;
+    private long[] deltas;
+
+    private final OpenAddressingIndex<E> elementIndex;
+
+    public LossyCountingTopN(int m) {
+        if(m < 1){
+            m = 1;
+        }
+        this.m = m;
+        nextPrune = m;
+
+        int capacity = Math.min(m, 16);
+        elements = new Object[capacity];
+        counts = new long[capacity];
+        deltas = new long[capacity];
+        elementIndex = new OpenAddressingIndex<E>(MAX_ENTRIES);
+    }
+
+    public boolean add(E e) {
+        return add(e, 1);
+    }
+
+    public boolean add(E e, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        streamLength += weight;
+
+        int slot = elementIndex.putIfAbsent(e, size);
+        if(slot != NIL){
+            counts[slot] += weight;
+        }else{
+            if(size == elements.length){
+                int capacity = 2 * size;
+                elements = Arrays.copyOf(elements, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                deltas = Arrays.copyOf(deltas, capacity);
+            }
+            elements[size] = e;
+            counts[size] = weight;
+            deltas[size] = pruned;
+            size++;
+        }
+
+        if(streamLength >= nextPrune)
+            prune(Math.max(pruned, streamLength / m));
+        return true;
+    }
+
+    /**
+     * Drops the entries whose count plus delta is not above the threshold.
+     */
+    private void prune(long threshold){
+        pruned = threshold;
+        nextPrune = (streamLength / m + 1) * m;
+
+        int kept = 0;
+        for(int slot = 0; slot < size; slot++){
+            if(counts[slot] + deltas[slot] > threshold){
+                elements[kept] = elements[slot];
+                counts[kept] = counts[slot];
+                deltas[kept] = deltas[slot];
+                kept++;
+            }
+        }
+        if(kept == size)
+            return;
+
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        reindex();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reindex(){
+        elementIndex.clear();
+        for(int slot = 0; slot < size; slot++){
+            elementIndex.putIfAbsent((E)elements[slot], slot);
+        }
+    }
+
+    /**
+     * Counts weight more occurrences of an element that already has an entry, closing
+     * the windows it completes like {@link #add(Object, long)} does.
+     */
+    public boolean addIfMonitored(Object probe, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        int slot = elementIndex.get(probe);
+        if(slot == NIL)
+            return false;
+
+        streamLength += weight;
+        counts[slot] += weight;
+
+        if(streamLength >= nextPrune)
+            prune(Math.max(pruned, streamLength / m));
+        return true;
+    }
+
+    /**
+     * Adds keys[from, to) as a batch, see {@link SpaceSavingTopN#addAll(Object[], int, int)}.
+     */
+    public boolean addAll(E[] keys, int from, int to) {
+        if(batch == null)
+            batch = new BatchAggregator<E>();
+        batch.aggregate(keys, from, to);
+        for(int i = 0; i < batch.distinct(); i++){
+            add(batch.key(i), batch.count(i));
+        }
+        batch.clear();
+        return to > from;
+    }
+
+    /**
+     * Occurrences counted since the element got its entry, a lower bound.
+     */
+    public long getCountByElement(E e){
+        int slot = elementIndex.get(e);
+        return slot == NIL ? 0 : counts[slot];
+    }
+
+    public long getErrorByElement(E e){
+        int slot = elementIndex.get(e);
+        return slot == NIL ? 0 : deltas[slot];
+    }
+
+    public long getLowerBound(E e){
+        return getCountByElement(e);
+    }
+
+    public long getUpperBound(E e){
+        int slot = elementIndex.get(e);
+        return slot == NIL ? pruned : counts[slot] + deltas[slot];
+    }
+
+    /**
+     * Number of windows pruned, which bounds the count of any element without an entry.
+     */
+    public long getMinCount(){
+        return pruned;
+    }
+
+    public long getStreamLength(){
+        return streamLength;
+    }
+
+    public List<E> guaranteedTopK(int k){
+        return SketchQueries.guaranteedTopK(this, k);
+    }
+
+    public long countersForExactTopK(int k){
+        return SketchQueries.countersForExactTopK(this, k, m, pruned == 0);
+    }
+
+    public List<E> heavyHitters(double phi){
+        return SketchQueries.heavyHitters(this, phi, false);
+    }
+
+    public List<E> guaranteedHeavyHitters(double phi){
+        return SketchQueries.heavyHitters(this, phi, true);
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public Iterable<E> elements(){
+        return new Iterable<E>() {
+            public Iterator<E> iterator() {
+                return new Iterator<E>() {
+                    int next = 0;
+
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    public E next() {
+                        if(next >= size)
+                            throw new NoSuchElementException();
+                        return (E)elements[next++];
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Merges another LossyCountingTopN. Counts and deltas are summed, a sketch without
+     * an entry for the element adding its pruned windows to the delta, and the entries
+     * that the summed windows would have pruned are dropped. The other sketch is left
+     * untouched.
+     */
+    @SuppressWarnings("unchecked")
+    public LossyCountingTopN<E> merge(FrequentItemsSketch<E> sketch){
+        if(!(sketch instanceof LossyCountingTopN))
+            throw new IllegalArgumentException("cannot merge a " + sketch.getClass().getSimpleName() + " into a LossyCountingTopN");
+        LossyCountingTopN<E> other = (LossyCountingTopN<E>)sketch;
+
+        for(int slot = 0; slot < size; slot++){
+            int otherSlot = other.elementIndex.get(elements[slot]);
+            if(otherSlot != NIL){
+                counts[slot] += other.counts[otherSlot];
+                deltas[slot] += other.deltas[otherSlot];
+            }else{
+                deltas[slot] += other.pruned;
+            }
+        }
+        int mine = size;
+        for(int slot = 0; slot < other.size; slot++){
+            if(elementIndex.get(other.elements[slot]) != NIL)
+                continue;
+            if(size == elements.length){
+                int capacity = Math.max(2 * size, mine + other.size);
+                elements = Arrays.copyOf(elements, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                deltas = Arrays.copyOf(deltas, capacity);
+            }
+            elements[size] = other.elements[slot];
+            counts[size] = other.counts[slot];
+            deltas[size] = other.deltas[slot] + pruned;
+            elementIndex.putIfAbsent((E)elements[size], size);
+            size++;
+        }
+
+        streamLength += other.streamLength;
+        prune(pruned + other.pruned);
+
+        return this;
+    }
+
+    /**
+     * Writes the sketch:
+     * <pre>
+     * byte    format version
+     * varint  m, size
+     * varlong stream length, pruned windows
+     * per entry: key, varlong count, varlong delta
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        KeySerializers.writeVLong(out, m);
+        KeySerializers.writeVLong(out, size);
+        KeySerializers.writeVLong(out, streamLength);
+        KeySerializers.writeVLong(out, pruned);
+
+        for(int slot = 0; slot < size; slot++){
+            keySerializer.write(out, (E)elements[slot]);
+            KeySerializers.writeVLong(out, counts[slot]);
+            KeySerializers.writeVLong(out, deltas[slot]);
+        }
+    }
+
+    public static <E> LossyCountingTopN<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+        int version = in.readByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("unsupported sketch format version: " + version);
+
+        LossyCountingTopN<E> topN = new LossyCountingTopN<E>(KeySerializers.readVInt(in));
+        int size = KeySerializers.readVInt(in);
+        topN.streamLength = KeySerializers.readVLong(in);
+        topN.pruned = KeySerializers.readVLong(in);
+        topN.nextPrune = (topN.streamLength / topN.m + 1) * topN.m;
+
+        topN.elements = new Object[Math.max(1, size)];
+        topN.counts = new long[topN.elements.length];
+        topN.deltas = new long[topN.elements.length];
+        topN.elementIndex.ensureCapacity(size + 1);
+
+        for(int slot = 0; slot < size; slot++){
+            E key = keySerializer.read(in);
+            if(topN.elementIndex.putIfAbsent(key, slot) != NIL)
+                throw new IOException("corrupt sketch, unexpected element: " + key);
+            topN.elements[slot] = key;
+            topN.counts[slot] = KeySerializers.readVLong(in);
+            topN.deltas[slot] = KeySerializers.readVLong(in);
+        }
+        topN.size = size;
+        return topN;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("LossyCountingTopN[pruned=").append(pruned).append("\n");
+        for(int slot = 0; slot < size; slot++){
+            sb.append(elements[slot].toString()).append("=").append(counts[slot])
+                    .append("+").append(deltas[slot]).append(",\n");
+        }
+        sb.append("]");
+
+        return sb.toString();
+
+    }
+}
@@ -0,0 +1,351 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Misra-Gries frequent items: m counters and nothing else, the smallest of the
+ * engines.
+ * <p/>
+ * A monitored element is counted in its counter. When all counters are in use a new
+ * element is instead cancelled against them: every counter and the element's weight
+ * are decreased by the same amount, the smallest count or the weight, dropping the
+ * counters that reach 0, and whatever weight is left gets a freed counter. Each
+ * decrease takes O(m) but removes at least m + 1 units from the counted total, so
+ * adds stay O(1) amortized.
+ * <p/>
+ * Counts are underestimates: an element's true count lies between its count and its
+ * count plus the total decrease, which is at most N / (m + 1).
+ *
+ * @author: pavanachanta
+ */
+public class MisraGriesTopN<E> implements FrequentItemsSketch<E> {
+
+    private static final int NIL = -1;
+
+    private static final int FORMAT_VERSION = 1;
+
+    //number of counters to maintain
+    private final int m;
+
+    private int size;
+
+    private long streamLength;
+
+    //total taken off every counter, the most any count falls short by
+    private long decremented;
+
+    //scratch table of addAll, created on first use
+    private BatchAggregator<E> batch;
+
+    //counters in slots 0 to size - 1
+    private final Object[] elements;
+    private final long[] counts;
+
+    private final OpenAddressingIndex<E> elementIndex;
+
+    public MisraGriesTopN(int m) {
+        if(m < 1){
+            m = 1;
+        }
+        this.m = m;
+
+        elements = new Object[m];
+        counts = new long[m];
+        elementIndex = new OpenAddressingIndex<E>(m);
+    }
+
+    public boolean add(E e) {
+        return add(e, 1);
+    }
+
+    public boolean add(E e, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        streamLength += weight;
+
+        int slot = size < m ? elementIndex.putIfAbsent(e, size) : elementIndex.get(e);
+        if(slot != NIL){
+            counts[slot] += weight;
+            return true;
+        }
+
+        if(size < m){
+            elements[size] = e;
+            counts[size] = weight;
+            size++;
+            return true;
+        }
+
+        //cancel the element against every counter, freeing at least one of them unless
+        //its weight runs out first
+        long min = counts[0];
+        for(int i = 1; i < size; i++){
+            min = Math.min(min, counts[i]);
+        }
+        long decrement = Math.min(min, weight);
+        decrement(decrement);
+
+        if(weight > decrement){
+            elementIndex.putIfAbsent(e, size);
+            elements[size] = e;
+            counts[size] = weight - decrement;
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Takes the amount off every counter and drops the ones that reach 0.
+     */
+    private void decrement(long amount){
+        decremented += amount;
+
+        int kept = 0;
+        for(int slot = 0; slot < size; slot++){
+            long count = counts[slot] - amount;
+            if(count > 0){
+                elements[kept] = elements[slot];
+                counts[kept] = count;
+                kept++;
+            }
+        }
+        if(kept == size)
+            return;
+
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        reindex();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reindex(){
+        elementIndex.clear();
+        for(int slot = 0; slot < size; slot++){
+            elementIndex.putIfAbsent((E)elements[slot], slot);
+        }
+    }
+
+    public boolean addIfMonitored(Object probe, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        int slot = elementIndex.get(probe);
+        if(slot == NIL)
+            return false;
+
+        streamLength += weight;
+        counts[slot] += weight;
+        return true;
+    }
+
+    /**
+     * Adds keys[from, to) as a batch, see {@link SpaceSavingTopN#addAll(Object[], int, int)}.
+     */
+    public boolean addAll(E[] keys, int from, int to) {
+        if(batch == null)
+            batch = new BatchAggregator<E>();
+        batch.aggregate(keys, from, to);
+        for(int i = 0; i < batch.distinct(); i++){
+            add(batch.key(i), batch.count(i));
+        }
+        batch.clear();
+        return to > from;
+    }
+
+    /**
+     * The counted part of the element's occurrences, a lower bound.
+     */
+    public long getCountByElement(E e){
+        int slot = elementIndex.get(e);
+        return slot == NIL ? 0 : counts[slot];
+    }
+
+    public long getErrorByElement(E e){
+        return elementIndex.get(e) == NIL ? 0 : decremented;
+    }
+
+    public long getLowerBound(E e){
+        return getCountByElement(e);
+    }
+
+    public long getUpperBound(E e){
+        return getCountByElement(e) + decremented;
+    }
+
+    /**
+     * Total decrease so far, which bounds the count of any element without a counter.
+     */
+    public long getMinCount(){
+        return decremented;
+    }
+
+    public long getStreamLength(){
+        return streamLength;
+    }
+
+    public List<E> guaranteedTopK(int k){
+        return SketchQueries.guaranteedTopK(this, k);
+    }
+
+    public long countersForExactTopK(int k){
+        return SketchQueries.countersForExactTopK(this, k, m, decremented == 0);
+    }
+
+    public List<E> heavyHitters(double phi){
+        return SketchQueries.heavyHitters(this, phi, false);
+    }
+
+    public List<E> guaranteedHeavyHitters(double phi){
+        return SketchQueries.heavyHitters(this, phi, true);
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public Iterable<E> elements(){
+        return new Iterable<E>() {
+            public Iterator<E> iterator() {
+                return new Iterator<E>() {
+                    int next = 0;
+
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    public E next() {
+                        if(next >= size)
+                            throw new NoSuchElementException();
+                        return (E)elements[next++];
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Merges another MisraGriesTopN (Agarwal et al., "Mergeable Summaries", 2012): the
+     * counters are summed and, if more than m remain, the (m+1)-th largest count is
+     * taken off all of them, which leaves at most m positive ones. The other sketch is
+     * left untouched.
+     */
+    @SuppressWarnings("unchecked")
+    public MisraGriesTopN<E> merge(FrequentItemsSketch<E> sketch){
+        if(!(sketch instanceof MisraGriesTopN))
+            throw new IllegalArgumentException("cannot merge a " + sketch.getClass().getSimpleName() + " into a MisraGriesTopN");
+        MisraGriesTopN<E> other = (MisraGriesTopN<E>)sketch;
+
+        int total = size + other.size;
+        Object[] keys = Arrays.copyOf(elements, total);
+        long[] sums = Arrays.copyOf(counts, total);
+        int n = size;
+        for(int slot = 0; slot < other.size; slot++){
+            int mine = elementIndex.get(other.elements[slot]);
+            if(mine != NIL){
+                sums[mine] += other.counts[slot];
+            }else{
+                keys[n] = other.elements[slot];
+                sums[n] = other.counts[slot];
+                n++;
+            }
+        }
+
+        long cut = 0;
+        if(n > m){
+            long[] sorted = Arrays.copyOf(sums, n);
+            Arrays.sort(sorted);
+            cut = sorted[n - m - 1];
+        }
+
+        streamLength += other.streamLength;
+        decremented += other.decremented + cut;
+
+        size = 0;
+        for(int i = 0; i < n; i++){
+            if(sums[i] > cut){
+                elements[size] = keys[i];
+                counts[size] = sums[i] - cut;
+                size++;
+            }
+        }
+        Arrays.fill(elements, size, m, null);
+        reindex();
+
+        return this;
+    }
+
+    /**
+     * Writes the sketch:
+     * <pre>
+     * byte    format version
+     * varint  m, size
+     * varlong stream length, total decrease
+     * per counter: key, varlong count
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        KeySerializers.writeVLong(out, m);
+        KeySerializers.writeVLong(out, size);
+        KeySerializers.writeVLong(out, streamLength);
+        KeySerializers.writeVLong(out, decremented);
+
+        for(int slot = 0; slot < size; slot++){
+            keySerializer.write(out, (E)elements[slot]);
+            KeySerializers.writeVLong(out, counts[slot]);
+        }
+    }
+
+    public static <E> MisraGriesTopN<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+        int version = in.readByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("unsupported sketch format version: " + version);
+
+        MisraGriesTopN<E> topN = new MisraGriesTopN<E>(KeySerializers.readVInt(in));
+        int size = KeySerializers.readVInt(in);
+        topN.streamLength = KeySerializers.readVLong(in);
+        topN.decremented = KeySerializers.readVLong(in);
+
+        if(size > topN.m)
+            throw new IOException("sketch holds " + size + " counters, more than m = " + topN.m);
+
+        for(int slot = 0; slot < size; slot++){
+            E key = keySerializer.read(in);
+            if(topN.elementIndex.putIfAbsent(key, slot) != NIL)
+                throw new IOException("corrupt sketch, unexpected element: " + key);
+            topN.elements[slot] = key;
+            topN.counts[slot] = KeySerializers.readVLong(in);
+        }
+        topN.size = size;
+        return topN;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("MisraGriesTopN[decremented=").append(decremented).append("\n");
+        for(int slot = 0; slot < size; slot++){
+            sb.append(elements[slot].toString()).append("=").append(counts[slot]).append(",\n");
+        }
+        sb.append("]");
+
+        return sb.toString();
+
+    }
+}
@@ -6,6 +6,8 @@ public class Node<E> {
     public Node<E> next;
     public Node<E> prev;
     public Node parent;
+    //position of the element's counter, see SpaceSavingTopN
+    public int slot;
 
     public Node(Node<E> prev, E element, Node<E> next) {
         this.item = element;
@@ -0,0 +1,208 @@
+package com.akeera.collections;
+
+/**
+ * Linear probing hash index from element to slot id, the slot being the position of
+ * the element's counter in the owning sketch.
+ * <p/>
+ * A sketch never monitors more than m elements, so the table never needs more than
+ * {@link #capacityFor(int)} cells: it starts small and doubles until it reaches that
+ * size, after which it never rehashes again. Removal shifts back the following
+ * entries of the probe run instead of leaving tombstones, so lookups stay short
+ * under the constant churn of evictions.
+ * <p/>
+ * Not synchronized, each sketch is owned by a single thread.
+ *
+ * @author: pavanachanta
+ */
+public class OpenAddressingIndex<E> {
+
+    /** Largest fill ratio of the table. */
+    public static final float LOAD_FACTOR = 0.5f;
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private Object[] keys;
+    //hash at 2i, slot at 2i + 1, so a probe touches one cache line besides the key
+    private int[] cells;
+    private int mask;
+    private int threshold;
+    private int size;
+
+    private final int maxCapacity;
+
+    /**
+     * Index holding at most maxSize + 1 keys, allocated lazily.
+     */
+    public OpenAddressingIndex(int maxSize) {
+        this(maxSize, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Index holding at most maxSize + 1 keys, starting with initialCapacity cells.
+     * Passing {@link #capacityFor(int)} preallocates the whole table.
+     */
+    public OpenAddressingIndex(int maxSize, int initialCapacity) {
+        maxCapacity = capacityFor(maxSize);
+        int capacity = DEFAULT_INITIAL_CAPACITY;
+        while(capacity < initialCapacity && capacity < maxCapacity){
+            capacity <<= 1;
+        }
+        allocate(Math.min(capacity, maxCapacity));
+    }
+
+    /**
+     * Number of cells needed to hold maxSize + 1 keys (the extra one covers an
+     * insertion that happens before the evicted key is removed) within the load factor.
+     */
+    public static int capacityFor(int maxSize) {
+        long needed = (long)Math.ceil((maxSize + 1L) / LOAD_FACTOR);
+        int capacity = 2;
+        while(capacity < needed && capacity < MAXIMUM_CAPACITY){
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    public static int hash(Object key) {
+        //murmur3 finalizer, spreads tuple and string hashes over the low bits
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Returns the slot of the key, -1 if it is not indexed.
+     */
+    public int get(Object key) {
+        int h = hash(key);
+        int i = h & mask;
+        Object k;
+        while((k = keys[i]) != null){
+            if(cells[i << 1] == h && key.equals(k))
+                return cells[(i << 1) + 1];
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Looks the key up and, when absent, indexes it under the given slot in the same probe.
+     *
+     * @return the slot the key already had, -1 if it was inserted
+     */
+    public int putIfAbsent(E key, int slot) {
+        if(size >= threshold && keys.length < maxCapacity){
+            allocate(keys.length << 1);
+        }
+        int h = hash(key);
+        int i = h & mask;
+        Object k;
+        while((k = keys[i]) != null){
+            if(cells[i << 1] == h && key.equals(k))
+                return cells[(i << 1) + 1];
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        cells[i << 1] = h;
+        cells[(i << 1) + 1] = slot;
+        size++;
+        return -1;
+    }
+
+    /**
+     * Removes the key.
+     *
+     * @return the slot it was indexed under, -1 if it was not indexed
+     */
+    public int remove(Object key) {
+        int h = hash(key);
+        int i = h & mask;
+        Object k;
+        while((k = keys[i]) != null){
+            if(cells[i << 1] == h && key.equals(k)){
+                int slot = cells[(i << 1) + 1];
+                deleteCell(i);
+                return slot;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Grows the table up front so that size keys can be inserted without rehashing.
+     */
+    public void ensureCapacity(int size) {
+        int capacity = keys.length;
+        while(capacity < maxCapacity && size > capacity * LOAD_FACTOR){
+            capacity <<= 1;
+        }
+        if(capacity > keys.length){
+            allocate(capacity);
+        }
+    }
+
+    public void clear() {
+        for(int i = 0; i < keys.length; i++){
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Empties cell i, moving back every following entry of the run whose home
+     * position does not lie cyclically in (i, j].
+     */
+    private void deleteCell(int i) {
+        int j = i;
+        while(true){
+            j = (j + 1) & mask;
+            if(keys[j] == null)
+                break;
+            int home = cells[j << 1] & mask;
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if(!stays){
+                keys[i] = keys[j];
+                cells[i << 1] = cells[j << 1];
+                cells[(i << 1) + 1] = cells[(j << 1) + 1];
+                i = j;
+            }
+        }
+        keys[i] = null;
+        size--;
+    }
+
+    private void allocate(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldCells = cells;
+
+        keys = new Object[capacity];
+        cells = new int[capacity << 1];
+        mask = capacity - 1;
+        threshold = capacity == maxCapacity ? Integer.MAX_VALUE : (int)(capacity * LOAD_FACTOR);
+
+        if(oldKeys != null){
+            for(int j = 0; j < oldKeys.length; j++){
+                if(oldKeys[j] != null){
+                    int i = oldCells[j << 1] & mask;
+                    while(keys[i] != null){
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    cells[i << 1] = oldCells[j << 1];
+                    cells[(i << 1) + 1] = oldCells[(j << 1) + 1];
+                }
+            }
+        }
+    }
+}
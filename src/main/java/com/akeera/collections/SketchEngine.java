@@ -0,0 +1,119 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * Selects the implementation behind a {@link FrequentItemsSketch}.
+ * <p/>
+ * The Cascading operations read {@link #PROPERTY} from the flow properties, e.g.
+ * {@code properties.setProperty(SketchEngine.PROPERTY, "array")}.
+ *
+ * @author: pavanachanta
+ */
+public enum SketchEngine {
+
+    /** Object graph of buckets and nodes, see {@link SpaceSavingTopN}. */
+    LINKED {
+        public <E> FrequentItemsSketch<E> create(int m) {
+            return new SpaceSavingTopN<E>(m);
+        }
+
+        public <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+            return SpaceSavingTopN.read(in, keySerializer);
+        }
+    },
+
+    /** Preallocated primitive arrays, see {@link ArraySpaceSavingTopN}. */
+    ARRAY {
+        public <E> FrequentItemsSketch<E> create(int m) {
+            return new ArraySpaceSavingTopN<E>(m);
+        }
+
+        public <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+            return ArraySpaceSavingTopN.read(in, keySerializer);
+        }
+    },
+
+    /** m counters and nothing else, counts are underestimates, see {@link MisraGriesTopN}. */
+    MISRA_GRIES {
+        public <E> FrequentItemsSketch<E> create(int m) {
+            return new MisraGriesTopN<E>(m);
+        }
+
+        public <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+            return MisraGriesTopN.read(in, keySerializer);
+        }
+    },
+
+    /** Error N / m with a number of entries that may exceed m, see {@link LossyCountingTopN}. */
+    LOSSY_COUNTING {
+        public <E> FrequentItemsSketch<E> create(int m) {
+            return new LossyCountingTopN<E>(m);
+        }
+
+        public <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+            return LossyCountingTopN.read(in, keySerializer);
+        }
+    },
+
+    /** Space-Saving behind a filter of hashed counters, see {@link FilteredSpaceSavingTopN}. */
+    FILTERED {
+        public <E> FrequentItemsSketch<E> create(int m) {
+            return new FilteredSpaceSavingTopN<E>(m);
+        }
+
+        public <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+            return FilteredSpaceSavingTopN.read(in, keySerializer);
+        }
+    },
+
+    /** Space-Saving split into hash stripes with a lock each, see {@link StripedSpaceSavingTopN}. */
+    STRIPED {
+        public <E> FrequentItemsSketch<E> create(int m) {
+            return new StripedSpaceSavingTopN<E>(m);
+        }
+
+        public <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+            return StripedSpaceSavingTopN.read(in, keySerializer);
+        }
+    };
+
+    public static final String PROPERTY = "topn.sketch.engine";
+
+    public abstract <E> FrequentItemsSketch<E> create(int m);
+
+    /**
+     * Reads a sketch of this engine written by {@link FrequentItemsSketch#write}.
+     */
+    public abstract <E> FrequentItemsSketch<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException;
+
+    /**
+     * The engine the given sketch was created by.
+     */
+    public static SketchEngine of(FrequentItemsSketch<?> sketch) {
+        if(sketch instanceof SpaceSavingTopN)
+            return LINKED;
+        if(sketch instanceof ArraySpaceSavingTopN)
+            return ARRAY;
+        if(sketch instanceof MisraGriesTopN)
+            return MISRA_GRIES;
+        if(sketch instanceof LossyCountingTopN)
+            return LOSSY_COUNTING;
+        if(sketch instanceof FilteredSpaceSavingTopN)
+            return FILTERED;
+        if(sketch instanceof StripedSpaceSavingTopN)
+            return STRIPED;
+        throw new IllegalArgumentException("no engine creates " + sketch.getClass().getName());
+    }
+
+    /**
+     * Resolves the engine from a property value such as "array" or "misra-gries",
+     * defaulting to {@link #LINKED}.
+     */
+    public static SketchEngine fromProperty(Object value) {
+        if(value == null || value.toString().trim().isEmpty())
+            return LINKED;
+        return valueOf(value.toString().trim().toUpperCase().replace('-', '_'));
+    }
+}
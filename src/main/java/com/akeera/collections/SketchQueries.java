@@ -0,0 +1,197 @@
+package com.akeera.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Top-k queries answered from the bounds of a {@link FrequentItemsSketch} alone, for
+ * the engines whose counters are not kept sorted. Each call sorts the monitored
+ * elements, O(m log m). Also the counter order the merges share.
+ *
+ * @author: pavanachanta
+ */
+final class SketchQueries {
+
+    //length of the insertion sorted runs of orderByCount
+    private static final int RUN = 32;
+
+    private SketchQueries() {
+    }
+
+    /**
+     * See {@link SpaceSavingTopN#guaranteedTopK(int)}: those of the k highest estimates
+     * whose lower bound is not below the (k+1)-th highest upper bound, unmonitored
+     * elements included.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> List<E> guaranteedTopK(FrequentItemsSketch<E> sketch, int k){
+        List<E> guaranteed = new ArrayList<E>();
+        if(k < 1)
+            return guaranteed;
+
+        Counters counters = new Counters(sketch);
+
+        long[] uppers = Arrays.copyOf(counters.upper, counters.n);
+        Arrays.sort(uppers);
+        long outsideBound = sketch.getMinCount();
+        if(counters.n > k)
+            outsideBound = Math.max(outsideBound, uppers[counters.n - k - 1]);
+
+        for(int i = 0; i < Math.min(k, counters.n); i++){
+            int j = counters.order[i];
+            if(counters.lower[j] >= outsideBound)
+                guaranteed.add((E)counters.keys[j]);
+        }
+        return guaranteed;
+    }
+
+    /**
+     * See {@link SpaceSavingTopN#countersForExactTopK(int)}. exact tells that nothing
+     * was dropped yet, every count being the true one.
+     */
+    static <E> long countersForExactTopK(FrequentItemsSketch<E> sketch, int k, int m, boolean exact){
+        int size = sketch.size();
+        if(k < 1 || size == 0)
+            return 0;
+        if(k >= size)
+            return exact ? size : -1;
+
+        Counters counters = new Counters(sketch);
+
+        long kthLower = Long.MAX_VALUE;
+        for(int i = 0; i < k; i++){
+            kthLower = Math.min(kthLower, counters.lower[counters.order[i]]);
+        }
+        long kthCount = counters.estimate[counters.order[k - 1]];
+        long nextCount = counters.estimate[counters.order[k]];
+        long nextUpper = Math.max(counters.upper[counters.order[k]], sketch.getMinCount());
+
+        long result = -1;
+        long gap = kthLower - nextUpper;
+        if(gap <= 0)
+            gap = kthCount - nextCount;
+        if(gap > 0)
+            result = (2 * sketch.getStreamLength() + gap - 1) / gap;
+
+        if(kthLower >= nextUpper)
+            result = result < 0 ? m : Math.min(result, m);
+        if(exact)
+            result = result < 0 ? size : Math.min(result, size);
+
+        return result;
+    }
+
+    /**
+     * Smallest count reaching phi times the stream length.
+     */
+    static long threshold(double phi, long streamLength){
+        if(!(phi > 0 && phi <= 1))
+            throw new IllegalArgumentException("phi should be in (0, 1]: " + phi);
+        double threshold = phi * streamLength;
+        //phi * N rounded just above a whole count still means that count
+        return (long)Math.ceil(threshold - threshold * 1e-12);
+    }
+
+    /**
+     * See {@link FrequentItemsSketch#heavyHitters(double)}: the monitored elements whose
+     * lower bound, if guaranteed, else upper bound reaches phi * N.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> List<E> heavyHitters(FrequentItemsSketch<E> sketch, double phi, boolean guaranteed){
+        long threshold = threshold(phi, sketch.getStreamLength());
+        List<E> heavy = new ArrayList<E>();
+        Counters counters = new Counters(sketch);
+        for(int i = 0; i < counters.n; i++){
+            int j = counters.order[i];
+            if((guaranteed ? counters.lower[j] : counters.upper[j]) >= threshold)
+                heavy.add((E)counters.keys[j]);
+        }
+        return heavy;
+    }
+
+    /**
+     * The indices 0..n-1 ordered by their counts, ascending or descending, equal counts
+     * keeping their index order like a stable sort of boxed indices would. A merge sort
+     * of primitive ints, so nothing is boxed and no comparator is called.
+     */
+    static int[] orderByCount(long[] counts, int n, boolean descending){
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++){
+            order[i] = i;
+        }
+
+        //insertion sorted runs, merged bottom up
+        for(int from = 0; from < n; from += RUN){
+            int to = Math.min(from + RUN, n);
+            for(int i = from + 1; i < to; i++){
+                int j = order[i];
+                int k = i - 1;
+                while(k >= from && before(counts, j, order[k], descending)){
+                    order[k + 1] = order[k];
+                    k--;
+                }
+                order[k + 1] = j;
+            }
+        }
+
+        int[] buffer = new int[n];
+        for(int width = RUN; width < n; width <<= 1){
+            for(int from = 0; from < n; from += 2 * width){
+                int mid = Math.min(from + width, n);
+                int to = Math.min(from + 2 * width, n);
+                int a = from, b = mid, out = from;
+                while(a < mid && b < to){
+                    buffer[out++] = before(counts, order[b], order[a], descending) ? order[b++] : order[a++];
+                }
+                while(a < mid){
+                    buffer[out++] = order[a++];
+                }
+                while(b < to){
+                    buffer[out++] = order[b++];
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    //strictly before, so that equal counts keep their order
+    private static boolean before(long[] counts, int a, int b, boolean descending){
+        return descending ? counts[a] > counts[b] : counts[a] < counts[b];
+    }
+
+    /**
+     * Estimates and bounds of the monitored elements, order listing them by estimate
+     * from the highest down.
+     */
+    private static final class Counters {
+        final Object[] keys;
+        final long[] estimate;
+        final long[] lower;
+        final long[] upper;
+        final int[] order;
+        final int n;
+
+        <E> Counters(FrequentItemsSketch<E> sketch) {
+            n = sketch.size();
+            keys = new Object[n];
+            estimate = new long[n];
+            lower = new long[n];
+            upper = new long[n];
+
+            int i = 0;
+            for(E e : sketch.elements()){
+                keys[i] = e;
+                estimate[i] = sketch.getCountByElement(e);
+                lower[i] = sketch.getLowerBound(e);
+                upper[i] = sketch.getUpperBound(e);
+                i++;
+            }
+
+            order = orderByCount(estimate, n, true);
+        }
+    }
+}
@@ -1,34 +1,83 @@
 package com.akeera.collections;
 
-import java.util.Hashtable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * @author: pavanachanta
  */
-public class SpaceSavingTopN<E>{
+public class SpaceSavingTopN<E> implements FrequentItemsSketch<E>{
 
 
     ClassicLinkedList<Bucket> buckets;
 
-    Hashtable<E,Node<E>> elementIndex;
+    //element -> slot, the slot indexes the element's node in nodes
+    OpenAddressingIndex<E> elementIndex;
+
+    Node<E>[] nodes;
+
+    //overestimation error of each slot's count
+    long[] errors;
+
+    private int size;
+
+    private long streamLength;
+
+    //bound on the count of elements without a counter while counters are still free,
+    //only non zero after a merge
+    private long unmonitoredBound;
+
+    //scratch table of addAll, created on first use
+    private BatchAggregator<E> batch;
+
+    //emptied bucket nodes, chained through next, reused with their Bucket, element list
+    //and skip array so that moving elements around allocates nothing once warmed up
+    private Node<Bucket> freeBuckets;
 
     //number of counters to maintain
     private int m;
 
+    //skip list over the bucket list, level 0 being the list itself. bucketHeads[i] is the
+    //first bucket reaching level i + 1, each bucket links onwards through Bucket.skip
+    private static final int MAX_LEVEL = 16;
+
+    private static final int FORMAT_VERSION = 1;
+    private final Node<Bucket>[] bucketHeads;
+    private final Node<Bucket>[] update;
+    private int level = 1;
+    private int seed = 0x2545F491;
+
+    @SuppressWarnings("unchecked")
     public SpaceSavingTopN(int m) {
         buckets = new ClassicLinkedList<Bucket>();
-        elementIndex = new  Hashtable<E,Node<E>>();
         if(m < 1){
             m = 1;
         }
         this.m = m;
+        elementIndex = new OpenAddressingIndex<E>(m);
+        nodes = (Node<E>[])new Node[Math.min(m, 16)];
+        errors = new long[nodes.length];
+        bucketHeads = (Node<Bucket>[])new Node[MAX_LEVEL - 1];
+        update = (Node<Bucket>[])new Node[MAX_LEVEL - 1];
     }
 
 
-    public int getCountByElement(E e){
-        if(elementIndex.containsKey(e))
-            return ((Bucket)elementIndex.get(e).parent.item).count;
+    public long getCountByElement(E e){
+        int slot = elementIndex.get(e);
+        if(slot >= 0)
+            return ((Bucket)nodes[slot].parent.item).count;
         else
             return 0;
     }
@@ -40,85 +89,754 @@ public class SpaceSavingTopN<E>{
      *
      */
     public boolean add(E e) {
+        return add(e, 1);
+    }
+
+    /**
+     * Adds weight occurrences of an element at once. The element jumps straight to the
+     * bucket for its new count, found through the bucket skip list when it is not the
+     * adjacent one.
+     */
+    public boolean add(E e, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        streamLength += weight;
+
+        //a new element takes the next free slot, or the counter of the element it evicts
+        int slot = size < m ? size : buckets.getFirst().item.elements.getLast().slot;
+
+        int existing = elementIndex.putIfAbsent(e, slot);
+
+        if(existing >= 0){
+
+            increment(nodes[existing], weight);
+
+        }else if(size == m){
+
+            //we reached the limit of counters m, so the element takes over the counter with the
+            //minimum count, the oldest(last or LRU) one if the bucket has several. It inherits
+            //that count, which becomes its overestimation error.
+            Node<E> elementNode = nodes[slot];
+            elementIndex.remove(elementNode.item);
+            elementNode.item = e;
+            errors[slot] = ((Bucket)elementNode.parent.item).count;
+            increment(elementNode, weight);
+
+        }else{
+
+            if(size == nodes.length){
+                int capacity = (int)Math.min(m, 2L * size);
+                nodes = Arrays.copyOf(nodes, capacity);
+                errors = Arrays.copyOf(errors, capacity);
+            }
+            size++;
+
+            //0 unless the sketch was merged, in which case the element may already have been
+            //counted and dropped by the merge
+            long count = unmonitoredBound + weight;
+            errors[slot] = unmonitoredBound;
+
+            //if there is a bucket for the count then use it.
+            //else create one.
+            Node<Bucket> bucketNode = count == 1 ? null : findFloor(count);
+            if(bucketNode == null && !buckets.isEmpty() && buckets.getFirst().item.count == count)
+                bucketNode = buckets.getFirst();
+            if(bucketNode == null || bucketNode.item.count != count)
+                bucketNode = linkBucketAfter(bucketNode, count);
 
-        if(elementIndex.containsKey(e)){
+            linkElement(bucketNode, e, slot);
 
-            Node<E> elementNode =  elementIndex.get(e);
-            Node<Bucket> bucketNode = elementNode.parent;
-            int count = bucketNode.item.count;
-            count++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts weight more occurrences of an element that is already monitored. Nothing is
+     * inserted, so the probe only has to be equal to the element and may be a reused view.
+     */
+    public boolean addIfMonitored(Object probe, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        int slot = elementIndex.get(probe);
+        if(slot < 0)
+            return false;
+
+        streamLength += weight;
+        increment(nodes[slot], weight);
+        return true;
+    }
+
+    /**
+     * Adds keys[from, to) as a batch. Duplicates within the batch are collapsed first
+     * and each distinct key is then added once with its number of occurrences, which
+     * saves the index lookups and bucket moves of the repeated keys of skewed streams.
+     */
+    public boolean addAll(E[] keys, int from, int to) {
+        if(batch == null)
+            batch = new BatchAggregator<E>();
+        batch.aggregate(keys, from, to);
+        for(int i = 0; i < batch.distinct(); i++){
+            add(batch.key(i), batch.count(i));
+        }
+        batch.clear();
+        return to > from;
+    }
+
+    /**
+     * Moves the element to the bucket for its count + weight.
+     */
+    @SuppressWarnings("unchecked")
+    private void increment(Node<E> elementNode, long weight){
+
+        Node<Bucket> bucketNode = elementNode.parent;
+        long count = bucketNode.item.count + weight;
+
+        //If the next higher frequency node count matches that of freq of current item to be inserted
+        Node<Bucket> target = bucketNode.next;
+        if((target == null || target.item.count > count) && bucketNode.item.elements.size() == 1){
+            //alone in its bucket and no bucket in between, the bucket can take the new count as is
+            bucketNode.item.count = count;
+            return;
+        }
+        if(target == null || target.item.count != count){
+            //the new count falls before the next bucket or, for larger weights, further up
+            Node<Bucket> pred = target == null || target.item.count > count ? bucketNode : findFloor(count);
+            if(pred.item.count == count)
+                target = pred;
+            else
+                target = linkBucketAfter(pred, count);
+        }
 
-            //If the next higher frequency node count matches that of freq of current item to be inserted
-            if(bucketNode.next != null){
+        //take the element out of current bucket
+        bucketNode.item.elements.unlink(elementNode);
+        target.item.elements.addNodeFirst(elementNode);
+        elementNode.parent = target;
 
-                //take the element out of current bucket
-                bucketNode.item.elements.unlink(elementNode);
+        if(bucketNode.item.elements.size() == 0){
+            unlinkBucket(bucketNode);
+        }
+    }
 
-                if(bucketNode.next.item.count == count){
-                    bucketNode.next.item.elements.addNodeFirst(elementNode);
-                    elementNode.parent = bucketNode.next;
+    /**
+     * Last bucket with a count not above the given one, null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<Bucket> findFloor(long count){
+        Node<Bucket> x = null;
+        for(int i = level - 2; i >= 0; i--){
+            Node<Bucket> next = x == null ? bucketHeads[i] : x.item.skip[i];
+            while(next != null && next.item.count <= count){
+                x = next;
+                next = x.item.skip[i];
+            }
+        }
+        Node<Bucket> next = x == null ? buckets.getFirst() : x.next;
+        while(next != null && next.item.count <= count){
+            x = next;
+            next = x.next;
+        }
+        return x;
+    }
+
+    /**
+     * Fills update with the last bucket below the given count at each skip level.
+     */
+    @SuppressWarnings("unchecked")
+    private void findPredecessors(long count, int levels){
+        Node<Bucket> x = null;
+        for(int i = level - 2; i >= 0; i--){
+            Node<Bucket> next = x == null ? bucketHeads[i] : x.item.skip[i];
+            while(next != null && next.item.count < count){
+                x = next;
+                next = x.item.skip[i];
+            }
+            if(i < levels)
+                update[i] = x;
+        }
+    }
+
+    /**
+     * Links a bucket for count after pred (first when pred is null), reusing an emptied
+     * one if any. A new bucket gets a random height in the skip list, 1/4 of the buckets
+     * reaching each next level. A reused one keeps its height, which was drawn
+     * independently of any count, so the heights stay distributed the same.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<Bucket> linkBucketAfter(Node<Bucket> pred, long count){
+        Node<Bucket> bucketNode = freeBuckets;
+        Bucket b;
+        if(bucketNode != null){
+            freeBuckets = bucketNode.next;
+            b = bucketNode.item;
+            b.count = count;
+        }else{
+            b = new Bucket<E>(count);
+            bucketNode = new Node<Bucket>(null, b, null);
+
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            int height = Math.min(1 + Integer.numberOfTrailingZeros(seed | (1 << 30)) / 2, MAX_LEVEL);
+            if(height > 1)
+                b.skip = new Node[height - 1];
+        }
+        buckets.insertNodeAfter(pred, bucketNode);
+
+        if(b.skip != null){
+            int height = b.skip.length + 1;
+            level = Math.max(level, height);
+            findPredecessors(b.count, height - 1);
+            for(int i = 0; i < height - 1; i++){
+                Node<Bucket> x = update[i];
+                if(x == null){
+                    b.skip[i] = bucketHeads[i];
+                    bucketHeads[i] = bucketNode;
                 }else{
-                    Bucket<E> b = new Bucket<E>(count);
-                    b.elements.addNodeFirst(elementNode);
-                    Node<Bucket> newBucketNode = buckets.insertElementAfterNode(bucketNode,b);
-                    elementNode.parent = newBucketNode;
+                    b.skip[i] = x.item.skip[i];
+                    x.item.skip[i] = bucketNode;
                 }
+            }
+        }
+        return bucketNode;
+    }
 
-                if(bucketNode.item.elements.size() == 0){
-                    buckets.unlink(bucketNode);
-                }
-            }else{
-                bucketNode.item.elements.unlink(elementNode);
-
-                Bucket<E> b = new Bucket<E>(count);
-                b.elements.addNodeFirst(elementNode);
-                Node<Bucket> newBucketNode = buckets.insertElementAfterNode(bucketNode,b);
-                elementNode.parent = newBucketNode;
-                if(bucketNode.item.elements.size() == 0){
-                    buckets.unlink(bucketNode);
-                }
+    @SuppressWarnings("unchecked")
+    private void unlinkBucket(Node<Bucket> bucketNode){
+        Bucket b = bucketNode.item;
+        if(b.skip != null){
+            findPredecessors(b.count, b.skip.length);
+            for(int i = 0; i < b.skip.length; i++){
+                Node<Bucket> x = update[i];
+                if(x == null)
+                    bucketHeads[i] = b.skip[i];
+                else
+                    x.item.skip[i] = b.skip[i];
             }
+        }
+        buckets.unlink(bucketNode);
+        bucketNode.next = freeBuckets;
+        freeBuckets = bucketNode;
+    }
 
+    /**
+     * Links the element first in the bucket, through the node of its slot when a
+     * {@link #clear()} left one there.
+     */
+    private void linkElement(Node<Bucket> bucketNode, E e, int slot){
+        Node<E> elementNode = nodes[slot];
+        if(elementNode == null){
+            elementNode = new Node<E>(null, e, null);
+            nodes[slot] = elementNode;
         }else{
+            elementNode.item = e;
+        }
+        bucketNode.item.elements.addNodeFirst(elementNode);
+        elementNode.parent = bucketNode;
+        elementNode.slot = slot;
+    }
 
-            //if we reached the limit of counters m, then replace the element with minimum count
-            if(size() == m){
-                //if there are multiple elements in the bucket then remove the oldest(last or LRU)
-                Object element = buckets.getFirst().item.elements.removeLast();
-                elementIndex.remove(element);
 
-                if(buckets.getFirst().item.elements.size() == 0){
-                    buckets.removeFirst();
-                }
-            }
+    /**
+     * Overestimation error of the element's count: the minimum count at the time it
+     * took over its counter, 0 if it is not monitored.
+     */
+    public long getErrorByElement(E e){
+        int slot = elementIndex.get(e);
+        if(slot >= 0)
+            return errors[slot];
+        else
+            return 0;
+    }
 
-            //if there is a bucket for count "1" then use it.
-            //else create one.
-            if(!buckets.isEmpty() && buckets.getFirst().item.count == 1){
-                Node<E> elementNode =   buckets.getFirst().item.elements.addAndGetFirst(e);
-                elementNode.parent  =   buckets.getFirst();
-                elementIndex.put(e,elementNode);
+    /**
+     * Guaranteed count of the element, its true count is at least this.
+     */
+    public long getLowerBound(E e){
+        int slot = elementIndex.get(e);
+        if(slot >= 0)
+            return ((Bucket)nodes[slot].parent.item).count - errors[slot];
+        else
+            return 0;
+    }
 
+    /**
+     * Its true count is at most this. An element that is not monitored may have been
+     * evicted, so it is bounded by the minimum count once all counters are in use.
+     */
+    public long getUpperBound(E e){
+        int slot = elementIndex.get(e);
+        if(slot >= 0)
+            return ((Bucket)nodes[slot].parent.item).count;
+        else
+            return getMinCount();
+    }
+
+    /**
+     * Count of the minimum bucket once all m counters are in use. Before that nothing
+     * has been evicted, so it is 0 unless the sketch is the result of a merge.
+     */
+    public long getMinCount(){
+        if(size < m || buckets.isEmpty())
+            return unmonitoredBound;
+        return buckets.getFirst().item.count;
+    }
+
+    /**
+     * Merges the other sketch into this one, following the mergeable summaries
+     * construction for Space-Saving (Agarwal et al., "Mergeable Summaries", 2012).
+     * <p/>
+     * Every element monitored by either sketch gets the sum of its counts and errors,
+     * a sketch that does not monitor it contributing its minimum count to both since
+     * that bounds anything it may have evicted. The m largest counters are kept. Each
+     * count still overestimates the true count of the combined streams by at most its
+     * error, the error stays within (N1 + N2) / m and anything dropped is bounded by
+     * the new minimum count. Runs in O(m log m). The other sketch is left untouched.
+     *
+     * @return this sketch
+     */
+    public SpaceSavingTopN<E> merge(SpaceSavingTopN<E> other){
+
+        long thisMin = getMinCount();
+        long otherMin = other.getMinCount();
+
+        int total = size + other.size;
+        final Object[] keys = new Object[total];
+        final long[] counts = new long[total];
+        final long[] errs = new long[total];
+        int n = 0;
+
+        for(int slot = 0; slot < size; slot++){
+            Node<E> elementNode = nodes[slot];
+            int otherSlot = other.elementIndex.get(elementNode.item);
+            keys[n] = elementNode.item;
+            counts[n] = ((Bucket)elementNode.parent.item).count;
+            errs[n] = errors[slot];
+            if(otherSlot >= 0){
+                counts[n] += ((Bucket)other.nodes[otherSlot].parent.item).count;
+                errs[n] += other.errors[otherSlot];
             }else{
-                Bucket<E> b = new Bucket<E>(1);
-                Node<E> elementNode = b.elements.addAndGetFirst(e);
-                Node<Bucket> bucketNode = buckets.addAndGetFirst(b);
-                elementNode.parent = bucketNode;
-                elementIndex.put(e,elementNode);
+                counts[n] += otherMin;
+                errs[n] += otherMin;
+            }
+            n++;
+        }
+        for(int slot = 0; slot < other.size; slot++){
+            Node<E> elementNode = other.nodes[slot];
+            if(elementIndex.get(elementNode.item) < 0){
+                keys[n] = elementNode.item;
+                counts[n] = ((Bucket)elementNode.parent.item).count + thisMin;
+                errs[n] = other.errors[slot] + thisMin;
+                n++;
             }
+        }
+
+        //ascending by count, then keep the m largest
+        int[] order = SketchQueries.orderByCount(counts, n, false);
+
+        long mergedLength = streamLength + other.streamLength;
+        clear();
+        streamLength = mergedLength;
+        unmonitoredBound = thisMin + otherMin;
 
+        for(int i = Math.max(0, n - m); i < n; i++){
+            int j = order[i];
+            @SuppressWarnings("unchecked")
+            E e = (E)keys[j];
+            appendCounter(e, counts[j], errs[j]);
         }
 
+        return this;
+    }
+
+    /**
+     * See {@link #merge(SpaceSavingTopN)}, the other sketch must be a SpaceSavingTopN.
+     */
+    public SpaceSavingTopN<E> merge(FrequentItemsSketch<E> other){
+        if(!(other instanceof SpaceSavingTopN))
+            throw new IllegalArgumentException("cannot merge a " + other.getClass().getSimpleName() + " into a SpaceSavingTopN");
+        return merge((SpaceSavingTopN<E>)other);
+    }
+
+    /**
+     * Merges the sketches pairwise as a balanced tree on the given pool. The result is
+     * one of the sketches, which the others are merged into; they all use its m.
+     */
+    public static <E> SpaceSavingTopN<E> mergeAll(List<SpaceSavingTopN<E>> sketches, ForkJoinPool pool){
+        if(sketches.isEmpty())
+            throw new IllegalArgumentException("no sketches to merge");
+        return pool.invoke(new MergeTask<E>(sketches, 0, sketches.size()));
+    }
+
+    private static class MergeTask<E> extends RecursiveTask<SpaceSavingTopN<E>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<SpaceSavingTopN<E>> sketches;
+        private final int from;
+        private final int to;
+
+        MergeTask(List<SpaceSavingTopN<E>> sketches, int from, int to) {
+            this.sketches = sketches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SpaceSavingTopN<E> compute() {
+            if(to - from == 1)
+                return sketches.get(from);
+
+            int mid = (from + to) >>> 1;
+            MergeTask<E> left = new MergeTask<E>(sketches, from, mid);
+            MergeTask<E> right = new MergeTask<E>(sketches, mid, to);
+            right.fork();
+            SpaceSavingTopN<E> merged = left.compute();
+            return merged.merge(right.join());
+        }
+    }
+
+    /**
+     * Drops every counter, keeping m. The buckets and element nodes are kept for reuse.
+     */
+    @SuppressWarnings("unchecked")
+    public void clear(){
+        Node<Bucket> bucketNode = buckets.getFirst();
+        while(bucketNode != null){
+            Node<Bucket> next = bucketNode.next;
+            bucketNode.item.elements.clear();
+            bucketNode.next = freeBuckets;
+            freeBuckets = bucketNode;
+            bucketNode = next;
+        }
+        buckets.clear();
+        Arrays.fill(bucketHeads, null);
+        level = 1;
+        elementIndex.clear();
+        for(int slot = 0; slot < size; slot++){
+            Node<E> elementNode = nodes[slot];
+            elementNode.item = null;
+            elementNode.parent = null;
+            elementNode.next = null;
+        }
+        size = 0;
+        streamLength = 0;
+        unmonitoredBound = 0;
+    }
+
+    /**
+     * Adds a counter above every existing one, in O(1) besides the skip list. Used to
+     * rebuild a sketch from counters sorted by count; the element must not be
+     * monitored yet and there must be a free counter.
+     */
+    boolean appendCounter(E e, long count, long error){
+        int slot = size;
+        if(elementIndex.putIfAbsent(e, slot) >= 0)
+            return false;
+        if(size == nodes.length){
+            ensureCapacity((int)Math.min(m, 2L * size));
+        }
+        size++;
+        errors[slot] = error;
+
+        Node<Bucket> bucketNode = buckets.getLast();
+        if(bucketNode == null || bucketNode.item.count != count)
+            bucketNode = linkBucketAfter(bucketNode, count);
+
+        linkElement(bucketNode, e, slot);
         return true;
     }
 
+    /**
+     * Multiplies every count and error, the stream length and the bound on unmonitored
+     * elements by factor, in (0, 1]. Rounding keeps the counts in order but may make
+     * neighbouring ones equal, so the counters are read in one pass from the lowest
+     * bucket and appended back in the same order, which merges the buckets that became
+     * equal and rebuilds the skip list. O(m), the oldest element of each bucket stays last.
+     */
+    @SuppressWarnings("unchecked")
+    void scale(double factor){
+        if(!(factor > 0 && factor <= 1))
+            throw new IllegalArgumentException("factor should be in (0, 1]: " + factor);
+
+        int n = size;
+        Object[] keys = new Object[n];
+        long[] counts = new long[n];
+        long[] errs = new long[n];
+        int i = 0;
+        Node<Bucket> bucketNode = buckets.getFirst();
+        while(bucketNode != null){
+            //a counter never drops to 0, it would look unused
+            long count = Math.max(1, Math.round(bucketNode.item.count * factor));
+            Node<E> elementNode = bucketNode.item.elements.getLast();
+            while(elementNode != null){
+                keys[i] = elementNode.item;
+                counts[i] = count;
+                //rounded up, the lower bound stays a lower bound
+                errs[i] = Math.min(count, (long)Math.ceil(errors[elementNode.slot] * factor));
+                i++;
+                elementNode = elementNode.prev;
+            }
+            bucketNode = bucketNode.next;
+        }
+
+        long scaledLength = Math.round(streamLength * factor);
+        long scaledBound = (long)Math.ceil(unmonitoredBound * factor);
+        clear();
+        for(i = 0; i < n; i++){
+            appendCounter((E)keys[i], counts[i], errs[i]);
+        }
+        streamLength = scaledLength;
+        unmonitoredBound = scaledBound;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > nodes.length){
+            nodes = Arrays.copyOf(nodes, capacity);
+            errors = Arrays.copyOf(errors, capacity);
+        }
+        elementIndex.ensureCapacity(capacity + 1);
+    }
+
+    /**
+     * Writes the sketch in a compact binary form:
+     * <pre>
+     * byte    format version
+     * varint  m, size, number of buckets
+     * varlong stream length, bound on unmonitored elements
+     * per bucket, lowest count first:
+     *   varlong count minus the previous bucket's count
+     *   varint  number of elements
+     *   per element, oldest first: key, varlong error
+     * </pre>
+     * Each key is written once, through the given serializer.
+     */
+    public void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        KeySerializers.writeVLong(out, m);
+        KeySerializers.writeVLong(out, size);
+        KeySerializers.writeVLong(out, buckets.size());
+        KeySerializers.writeVLong(out, streamLength);
+        KeySerializers.writeVLong(out, unmonitoredBound);
+
+        long previous = 0;
+        Node<Bucket> bucketNode = buckets.getFirst();
+        while(bucketNode != null){
+            Bucket b = bucketNode.item;
+            KeySerializers.writeVLong(out, b.count - previous);
+            KeySerializers.writeVLong(out, b.size());
+            previous = b.count;
+
+            //read back by linking each element first, so write from the tail
+            @SuppressWarnings("unchecked")
+            Node<E> elementNode = b.elements.getLast();
+            while(elementNode != null){
+                keySerializer.write(out, elementNode.item);
+                KeySerializers.writeVLong(out, errors[elementNode.slot]);
+                elementNode = elementNode.prev;
+            }
+            bucketNode = bucketNode.next;
+        }
+    }
+
+    /**
+     * Reads a sketch written by {@link #write(DataOutput, KeySerializer)}. The bucket
+     * list is rebuilt in one pass in the written order and the index is sized up front,
+     * so loading never moves an element twice nor rehashes the table.
+     */
+    public static <E> SpaceSavingTopN<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+        int version = in.readByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("unsupported sketch format version: " + version);
+
+        SpaceSavingTopN<E> topN = new SpaceSavingTopN<E>(KeySerializers.readVInt(in));
+        int size = KeySerializers.readVInt(in);
+        int numBuckets = KeySerializers.readVInt(in);
+        long streamLength = KeySerializers.readVLong(in);
+        long unmonitoredBound = KeySerializers.readVLong(in);
+
+        if(size > topN.m)
+            throw new IOException("sketch holds " + size + " counters, more than m = " + topN.m);
+        topN.ensureCapacity(size);
+
+        long count = 0;
+        for(int i = 0; i < numBuckets; i++){
+            count += KeySerializers.readVLong(in);
+            int elements = KeySerializers.readVInt(in);
+            for(int j = 0; j < elements; j++){
+                E key = keySerializer.read(in);
+                if(topN.size == size || !topN.appendCounter(key, count, KeySerializers.readVLong(in)))
+                    throw new IOException("corrupt sketch, unexpected element: " + key);
+            }
+        }
+        if(topN.size != size)
+            throw new IOException("corrupt sketch, expected " + size + " counters but read " + topN.size);
+
+        topN.streamLength = streamLength;
+        topN.unmonitoredBound = unmonitoredBound;
+        return topN;
+    }
+
+    /**
+     * Number of elements added so far (N).
+     */
+    public long getStreamLength(){
+        return streamLength;
+    }
+
+    /**
+     * Returns the elements that are guaranteed to be in the top-k, from the highest
+     * count down: those of the k highest counters whose lower bound is not below the
+     * count of the (k+1)-th counter, which bounds every other element.
+     */
+    public List<E> guaranteedTopK(int k){
+        List<E> guaranteed = new ArrayList<E>();
+        if(k < 1)
+            return guaranteed;
+
+        long outsideBound = kthCount(k + 1);
+
+        int seen = 0;
+        Node<Bucket> bucketNode = buckets.getLast();
+        while(bucketNode != null && seen < k){
+            Node<E> elementNode = bucketNode.item.elements.getFirst();
+            while(elementNode != null && seen < k){
+                if(bucketNode.item.count - errors[elementNode.slot] >= outsideBound)
+                    guaranteed.add(elementNode.item);
+                seen++;
+                elementNode = elementNode.next;
+            }
+            bucketNode = bucketNode.prev;
+        }
+
+        return guaranteed;
+    }
+
+    /**
+     * Smallest number of counters that would have made the top-k exact on this stream.
+     * <p/>
+     * Space-Saving overestimates any count by at most N/m, so m counters separate the
+     * k-th and (k+1)-th elements once 2N/m is below the gap between their true counts.
+     * The gap is estimated conservatively from the current bounds, falling back to the
+     * estimated counts when those overlap. The result never exceeds the current m when
+     * the answer is already guaranteed, nor the number of distinct elements while no
+     * element has been evicted. Returns -1 when it cannot be estimated: the k-th and
+     * (k+1)-th counts are tied, or k is not smaller than a full sketch.
+     */
+    public long countersForExactTopK(int k){
+        if(k < 1 || size == 0)
+            return 0;
+        if(k >= size)
+            return size < m ? size : -1;
+
+        long kthLower = Long.MAX_VALUE;
+        long kthCount = kthCount(k);
+        long nextCount = kthCount(k + 1);
+
+        int seen = 0;
+        Node<Bucket> bucketNode = buckets.getLast();
+        while(bucketNode != null && seen < k){
+            Node<E> elementNode = bucketNode.item.elements.getFirst();
+            while(elementNode != null && seen < k){
+                kthLower = Math.min(kthLower, bucketNode.item.count - errors[elementNode.slot]);
+                seen++;
+                elementNode = elementNode.next;
+            }
+            bucketNode = bucketNode.prev;
+        }
+
+        long counters = -1;
+        long gap = kthLower - nextCount;
+        if(gap <= 0)
+            gap = kthCount - nextCount;
+        if(gap > 0)
+            counters = (2 * streamLength + gap - 1) / gap;
+
+        if(kthLower >= nextCount)
+            counters = counters < 0 ? m : Math.min(counters, m);
+        if(size < m)
+            counters = counters < 0 ? size : Math.min(counters, size);
+
+        return counters;
+    }
+
+    /**
+     * The elements whose count is at least phi * N, highest first. Walks down from the
+     * highest bucket and stops at the first below phi * N. The counts add up to N, so at
+     * most 1/phi elements qualify and the walk costs O(1/phi) whatever m is. Once
+     * N/m drops below phi * N no element that frequent can be missing, its count only
+     * overestimates.
+     */
+    public List<E> heavyHitters(double phi){
+        return heavyHitters(SketchQueries.threshold(phi, streamLength), false, new ArrayList<E>());
+    }
+
+    /**
+     * The elements whose lower bound, count minus error, is at least phi * N: each of them
+     * is that frequent. Same walk as {@link #heavyHitters(double)}.
+     */
+    public List<E> guaranteedHeavyHitters(double phi){
+        return heavyHitters(SketchQueries.threshold(phi, streamLength), true, new ArrayList<E>());
+    }
+
+    /**
+     * Adds the elements whose count, or lower bound if guaranteed, reaches threshold to
+     * heavy, highest count first.
+     */
+    List<E> heavyHitters(long threshold, boolean guaranteed, List<E> heavy){
+        CounterIterator<E> counters = descendingIterator();
+        while(counters.hasNext()){
+            E e = counters.next();
+            if(counters.count() < threshold)
+                break;
+            if(!guaranteed || counters.lowerBound() >= threshold)
+                heavy.add(e);
+        }
+        return heavy;
+    }
+
+    /**
+     * Count of the i-th highest counter, or the bound on unmonitored elements when
+     * fewer than i counters are in use.
+     */
+    private long kthCount(int i){
+        int seen = 0;
+        Node<Bucket> bucketNode = buckets.getLast();
+        while(bucketNode != null){
+            seen += bucketNode.item.size();
+            if(seen >= i)
+                return bucketNode.item.count;
+            bucketNode = bucketNode.prev;
+        }
+        return getMinCount();
+    }
+
 
     public int size(){
-        return elementIndex.size();
+        return size;
     }
 
-    public Iterator<E> iterator(E e){
-        return null;
+    public Iterable<E> elements(){
+        return getElementIndex().keySet();
+    }
+
+    /**
+     * Every counter, highest count first, see {@link CounterIterator}.
+     */
+    public CounterIterator<E> descendingIterator(){
+        return new CounterIterator<E>(this, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The k highest counters, highest count first. Stops after k elements, so draining
+     * it costs O(k) however many counters the sketch holds.
+     */
+    public CounterIterator<E> descendingIterator(int k){
+        return new CounterIterator<E>(this, Math.max(0, k));
     }
 
     private void removeNode(Node n){
@@ -144,8 +862,61 @@ public class SpaceSavingTopN<E>{
 
     }
 
-    public Hashtable<E, Node<E>> getElementIndex() {
-        return elementIndex;
+    /**
+     * Read only map view of the monitored elements and their nodes.
+     */
+    public Map<E, Node<E>> getElementIndex() {
+        return new AbstractMap<E, Node<E>>() {
+
+            @Override
+            public Node<E> get(Object key) {
+                int slot = elementIndex.get(key);
+                return slot >= 0 ? nodes[slot] : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return elementIndex.get(key) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Entry<E, Node<E>>> entrySet() {
+                return new AbstractSet<Entry<E, Node<E>>>() {
+
+                    @Override
+                    public Iterator<Entry<E, Node<E>>> iterator() {
+                        return new Iterator<Entry<E, Node<E>>>() {
+                            int next = 0;
+
+                            public boolean hasNext() {
+                                return next < size;
+                            }
+
+                            public Entry<E, Node<E>> next() {
+                                if(next >= size)
+                                    throw new NoSuchElementException();
+                                Node<E> node = nodes[next++];
+                                return new SimpleImmutableEntry<E, Node<E>>(node.item, node);
+                            }
+
+                            public void remove() {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
     }
 
 
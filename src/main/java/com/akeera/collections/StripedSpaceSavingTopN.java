@@ -0,0 +1,345 @@
+package com.akeera.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Space-Saving for many threads adding into one sketch. The key space is split into S
+ * hash stripes, each a {@link SpaceSavingTopN} of ceil(m / S) counters behind its own
+ * monitor, so writers only contend when their keys fall into the same stripe.
+ * <p/>
+ * Every key is counted by exactly one stripe, so a key's estimate, error and bounds are
+ * those of its stripe: it is overestimated by at most N_s / ceil(m / S), N_s being the
+ * number of elements that went to its stripe. With keys spread evenly N_s is about N / S
+ * and the error about N / m, as for a single sketch; a stripe receiving more than its
+ * share of the stream errs more. {@link #getMinCount()} is the largest minimum count of
+ * any stripe.
+ * <p/>
+ * Point queries lock one stripe. Queries over all counters work on a {@link #snapshot()},
+ * which copies the stripes one after the other: each stripe is consistent, the stripes
+ * need not be from the same instant.
+ *
+ * @author: pavanachanta
+ */
+public class StripedSpaceSavingTopN<E> implements FrequentItemsSketch<E> {
+
+    private static final int FORMAT_VERSION = 1;
+
+    //fewest counters a stripe is given by default
+    private static final int MIN_STRIPE_COUNTERS = 64;
+
+    private final int m;
+    private final int stripeCounters;
+    private final int stripeShift;
+    private final SpaceSavingTopN<E>[] stripes;
+
+    /**
+     * Stripes for four times the number of cores, fewer when that would leave a stripe
+     * less than 64 counters.
+     */
+    public StripedSpaceSavingTopN(int m) {
+        this(m, defaultStripes(m));
+    }
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public StripedSpaceSavingTopN(int m, int stripes) {
+        if(m < 1)
+            m = 1;
+        if(stripes < 1 || stripes > (1 << 16))
+            throw new IllegalArgumentException("stripes should be between 1 and 65536: " + stripes);
+
+        int bits = 0;
+        while((1 << bits) < stripes){
+            bits++;
+        }
+        this.m = m;
+        this.stripes = (SpaceSavingTopN<E>[])new SpaceSavingTopN[1 << bits];
+        this.stripeCounters = (m + this.stripes.length - 1) / this.stripes.length;
+        //the top bits of the hash pick the stripe, the low ones the slot in its index
+        this.stripeShift = 32 - bits;
+        for(int i = 0; i < this.stripes.length; i++){
+            this.stripes[i] = new SpaceSavingTopN<E>(stripeCounters);
+        }
+    }
+
+    private static int defaultStripes(int m) {
+        int stripes = 1;
+        while(stripes < 4 * Runtime.getRuntime().availableProcessors() && (long)m / (2 * stripes) >= MIN_STRIPE_COUNTERS){
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private SpaceSavingTopN<E> stripe(Object e) {
+        //an int shifted by 32 stays unchanged, so one stripe takes index 0 explicitly
+        return stripeShift == 32 ? stripes[0] : stripes[OpenAddressingIndex.hash(e) >>> stripeShift];
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    public boolean add(E e) {
+        return add(e, 1);
+    }
+
+    public boolean add(E e, long weight) {
+        SpaceSavingTopN<E> stripe = stripe(e);
+        synchronized(stripe){
+            return stripe.add(e, weight);
+        }
+    }
+
+    public boolean addIfMonitored(Object probe, long weight) {
+        SpaceSavingTopN<E> stripe = stripe(probe);
+        synchronized(stripe){
+            return stripe.addIfMonitored(probe, weight);
+        }
+    }
+
+    /**
+     * Sorts the keys by stripe, then adds each stripe's run under one lock, where the
+     * stripe collapses the duplicates.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean addAll(E[] keys, int from, int to) {
+        int n = to - from;
+        if(n <= 0)
+            return false;
+        if(stripes.length == 1){
+            synchronized(stripes[0]){
+                return stripes[0].addAll(keys, from, to);
+            }
+        }
+
+        int[] stripeOf = new int[n];
+        int[] start = new int[stripes.length + 1];
+        for(int i = 0; i < n; i++){
+            int s = OpenAddressingIndex.hash(keys[from + i]) >>> stripeShift;
+            stripeOf[i] = s;
+            start[s + 1]++;
+        }
+        for(int s = 0; s < stripes.length; s++){
+            start[s + 1] += start[s];
+        }
+        Object[] sorted = new Object[n];
+        int[] next = start.clone();
+        for(int i = 0; i < n; i++){
+            sorted[next[stripeOf[i]]++] = keys[from + i];
+        }
+
+        boolean added = false;
+        for(int s = 0; s < stripes.length; s++){
+            if(start[s] < start[s + 1]){
+                synchronized(stripes[s]){
+                    added |= stripes[s].addAll((E[])sorted, start[s], start[s + 1]);
+                }
+            }
+        }
+        return added;
+    }
+
+    public long getCountByElement(E e) {
+        SpaceSavingTopN<E> stripe = stripe(e);
+        synchronized(stripe){
+            return stripe.getCountByElement(e);
+        }
+    }
+
+    public long getErrorByElement(E e) {
+        SpaceSavingTopN<E> stripe = stripe(e);
+        synchronized(stripe){
+            return stripe.getErrorByElement(e);
+        }
+    }
+
+    public long getLowerBound(E e) {
+        SpaceSavingTopN<E> stripe = stripe(e);
+        synchronized(stripe){
+            return stripe.getLowerBound(e);
+        }
+    }
+
+    public long getUpperBound(E e) {
+        SpaceSavingTopN<E> stripe = stripe(e);
+        synchronized(stripe){
+            return stripe.getUpperBound(e);
+        }
+    }
+
+    /**
+     * The largest minimum count of the stripes, bounding any unmonitored element.
+     */
+    public long getMinCount() {
+        long min = 0;
+        for(SpaceSavingTopN<E> stripe : stripes){
+            synchronized(stripe){
+                min = Math.max(min, stripe.getMinCount());
+            }
+        }
+        return min;
+    }
+
+    public long getStreamLength() {
+        long streamLength = 0;
+        for(SpaceSavingTopN<E> stripe : stripes){
+            synchronized(stripe){
+                streamLength += stripe.getStreamLength();
+            }
+        }
+        return streamLength;
+    }
+
+    public List<E> guaranteedTopK(int k) {
+        return SketchQueries.guaranteedTopK(snapshot(), k);
+    }
+
+    public long countersForExactTopK(int k) {
+        StripedSpaceSavingTopN<E> snapshot = snapshot();
+        //no stripe ever ran out of counters, so nothing was evicted
+        boolean exact = true;
+        for(SpaceSavingTopN<E> stripe : snapshot.stripes){
+            exact &= stripe.size() < stripeCounters && stripe.getMinCount() == 0;
+        }
+        return SketchQueries.countersForExactTopK(snapshot, k, m, exact);
+    }
+
+    public List<E> heavyHitters(double phi) {
+        return heavyHitters(phi, false);
+    }
+
+    public List<E> guaranteedHeavyHitters(double phi) {
+        return heavyHitters(phi, true);
+    }
+
+    /**
+     * Walks the top of each stripe against phi times the length of the whole stream,
+     * then orders what the stripes found by count.
+     */
+    private List<E> heavyHitters(double phi, boolean guaranteed) {
+        long threshold = SketchQueries.threshold(phi, getStreamLength());
+        List<E> heavy = new ArrayList<E>();
+        List<Long> counts = new ArrayList<Long>();
+        for(SpaceSavingTopN<E> stripe : stripes){
+            synchronized(stripe){
+                int from = heavy.size();
+                stripe.heavyHitters(threshold, guaranteed, heavy);
+                for(int i = from; i < heavy.size(); i++){
+                    counts.add(stripe.getCountByElement(heavy.get(i)));
+                }
+            }
+        }
+
+        BoundedTopK<E> ordered = new BoundedTopK<E>(Math.max(1, heavy.size()));
+        for(int i = 0; i < heavy.size(); i++){
+            ordered.offer(heavy.get(i), counts.get(i));
+        }
+        ordered.sort();
+        heavy.clear();
+        for(int i = 0; i < ordered.size(); i++){
+            heavy.add(ordered.element(i));
+        }
+        return heavy;
+    }
+
+    public int size() {
+        int size = 0;
+        for(SpaceSavingTopN<E> stripe : stripes){
+            synchronized(stripe){
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The monitored elements, collected stripe by stripe when called.
+     */
+    public Iterable<E> elements() {
+        List<E> elements = new ArrayList<E>();
+        for(SpaceSavingTopN<E> stripe : stripes){
+            synchronized(stripe){
+                for(E e : stripe.elements()){
+                    elements.add(e);
+                }
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Copy of every stripe, each taken under its lock. The copy is not shared, queries
+     * on it see no later adds.
+     */
+    public StripedSpaceSavingTopN<E> snapshot() {
+        StripedSpaceSavingTopN<E> snapshot = new StripedSpaceSavingTopN<E>(m, stripes.length);
+        for(int s = 0; s < stripes.length; s++){
+            synchronized(stripes[s]){
+                //merging into an empty sketch copies the counters as they are
+                snapshot.stripes[s].merge(stripes[s]);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Merges the other sketch stripe by stripe, see {@link SpaceSavingTopN#merge}. Both
+     * need the same m and number of stripes, so that a key falls into the same stripe.
+     */
+    public StripedSpaceSavingTopN<E> merge(FrequentItemsSketch<E> sketch) {
+        if(!(sketch instanceof StripedSpaceSavingTopN))
+            throw new IllegalArgumentException("cannot merge a " + sketch.getClass().getSimpleName() + " into a StripedSpaceSavingTopN");
+        StripedSpaceSavingTopN<E> other = (StripedSpaceSavingTopN<E>)sketch;
+        if(other.m != m || other.stripes.length != stripes.length)
+            throw new IllegalArgumentException("cannot merge " + other.stripes.length + " stripes of " + other.m
+                    + " counters into " + stripes.length + " stripes of " + m);
+
+        StripedSpaceSavingTopN<E> copy = other.snapshot();
+        for(int s = 0; s < stripes.length; s++){
+            synchronized(stripes[s]){
+                stripes[s].merge(copy.stripes[s]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes m, the number of stripes and every stripe in the format of
+     * {@link SpaceSavingTopN#write}.
+     */
+    public void write(DataOutput out, KeySerializer<? super E> keySerializer) throws IOException {
+        StripedSpaceSavingTopN<E> snapshot = snapshot();
+        out.writeByte(FORMAT_VERSION);
+        KeySerializers.writeVLong(out, m);
+        KeySerializers.writeVLong(out, stripes.length);
+        for(SpaceSavingTopN<E> stripe : snapshot.stripes){
+            stripe.write(out, keySerializer);
+        }
+    }
+
+    public static <E> StripedSpaceSavingTopN<E> read(DataInput in, KeySerializer<E> keySerializer) throws IOException {
+        int version = in.readByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("unsupported sketch format version " + version);
+
+        int m = (int)KeySerializers.readVLong(in);
+        int stripes = (int)KeySerializers.readVLong(in);
+        StripedSpaceSavingTopN<E> topN = new StripedSpaceSavingTopN<E>(m, stripes);
+        if(topN.stripes.length != stripes)
+            throw new IOException("corrupt sketch, " + stripes + " stripes is not a power of two");
+        for(int s = 0; s < stripes; s++){
+            topN.stripes[s] = SpaceSavingTopN.read(in, keySerializer);
+        }
+        return topN;
+    }
+
+    public String toString(){
+        return "StripedSpaceSavingTopN{m=" + m + ", stripes=" + stripes.length + ", size=" + size() + ", streamLength=" + getStreamLength() + "}";
+    }
+}
@@ -0,0 +1,518 @@
+package com.akeera.collections;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Version of {@link ArraySpaceSavingTopN} keyed on byte slices, typically UTF-8 words
+ * cut straight out of an input buffer, so that no String or Tuple is ever built for a
+ * key.
+ * <p/>
+ * The bytes of all monitored keys live in one arena, each slot keeping the offset and
+ * length of its key. The index is an open addressing table of slot ids only, the hash
+ * of each key being kept per slot. A key is copied into the arena only when it becomes
+ * monitored, lookups and increments work on the caller's (byte[], offset, length).
+ * <p/>
+ * An evicted key's bytes are reused by the next key when it fits, otherwise they are
+ * left as garbage in the arena which is compacted, and grown if needed, once it fills up.
+ *
+ * @author: pavanachanta
+ */
+public class Utf8SpaceSavingTopN {
+
+    private static final int NIL = -1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //bytes reserved per counter for the keys up front
+    private static final int INITIAL_KEY_BYTES = 4;
+
+    private static final int INITIAL_BUCKETS = 64;
+
+    //fill ratio of the index, whose cells are 4 bytes only
+    private static final float LOAD_FACTOR = 0.75f;
+
+    //number of counters to maintain
+    private final int m;
+
+    private int size;
+
+    private long streamLength;
+
+    //keys
+    private byte[] arena;
+    private int arenaEnd;
+    private long garbage;
+    private final int[] keyOffset;
+    private final int[] keyLength;
+    private final int[] keyHash;
+
+    //element slots
+    private final long[] elementError;
+    private final int[] elementBucket;
+    private final int[] elementNext;
+    private final int[] elementPrev;
+
+    //buckets, linked from the lowest count (minBucket) up. There
+    //are only as many as distinct counts, far fewer than m on skewed streams, so the
+    //arrays grow on demand up to m + 1
+    private long[] bucketCount;
+    private int[] bucketHead;
+    private int[] bucketTail;
+    private int[] bucketNext;
+    private int[] bucketPrev;
+    private int minBucket = NIL;
+    //skip list over the buckets, as in ArraySpaceSavingTopN
+    private final BucketSkipList bucketLevels = new BucketSkipList(0);
+    private int freeBucket;
+
+    //slot + 1 per cell, 0 being empty
+    private final int[] table;
+    private final int mask;
+
+    public Utf8SpaceSavingTopN(int m) {
+        if(m < 1){
+            m = 1;
+        }
+        this.m = m;
+
+        arena     = new byte[(int)Math.min(Integer.MAX_VALUE - 8, (long)m * INITIAL_KEY_BYTES)];
+        keyOffset = new int[m];
+        keyLength = new int[m];
+        keyHash   = new int[m];
+
+        elementError  = new long[m];
+        elementBucket = new int[m];
+        elementNext   = new int[m];
+        elementPrev   = new int[m];
+
+        bucketCount = new long[0];
+        bucketHead  = new int[0];
+        bucketTail  = new int[0];
+        bucketNext  = new int[0];
+        bucketPrev  = new int[0];
+        freeBucket = NIL;
+        growBuckets();
+
+        int capacity = 2;
+        while(capacity < (m + 1L) / LOAD_FACTOR){
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Murmur3 (x86, 32 bit) of key[offset, offset + length), read 4 bytes at a time.
+     */
+    @SuppressWarnings("fallthrough")
+    public static int hash(byte[] key, int offset, int length) {
+        int h = 0x9747b28c;
+        int end = offset + (length & ~3);
+        for(int i = offset; i < end; i += 4){
+            int k = (key[i] & 0xff) | (key[i + 1] & 0xff) << 8 | (key[i + 2] & 0xff) << 16 | key[i + 3] << 24;
+            k *= 0xcc9e2d51;
+            k = Integer.rotateLeft(k, 15);
+            k *= 0x1b873593;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        switch(length & 3){
+            case 3:
+                k = (key[end + 2] & 0xff) << 16;
+                //fall through
+            case 2:
+                k |= (key[end + 1] & 0xff) << 8;
+                //fall through
+            case 1:
+                k |= key[end] & 0xff;
+                k *= 0xcc9e2d51;
+                k = Integer.rotateLeft(k, 15);
+                k *= 0x1b873593;
+                h ^= k;
+        }
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public boolean add(byte[] key, int offset, int length) {
+        return add(key, offset, length, 1);
+    }
+
+    /**
+     * Adds weight occurrences of key[offset, offset + length). The bytes are copied only
+     * if the key becomes monitored.
+     */
+    public boolean add(byte[] key, int offset, int length, long weight) {
+
+        if(weight < 1)
+            throw new IllegalArgumentException("weight should be positive: " + weight);
+
+        streamLength += weight;
+
+        int h = hash(key, offset, length);
+        int cell = find(key, offset, length, h);
+        if(table[cell] != 0){
+            increment(table[cell] - 1, weight);
+            return true;
+        }
+
+        if(size == m){
+            //take over the oldest(last or LRU) counter of the minimum bucket, inheriting
+            //its count as overestimation error
+            int slot = bucketTail[minBucket];
+            removeFromTable(slot);
+            //the removal may have shifted the run the free cell belongs to
+            cell = find(key, offset, length, h);
+            storeKey(slot, key, offset, length, h);
+            table[cell] = slot + 1;
+            elementError[slot] = bucketCount[elementBucket[slot]];
+            increment(slot, weight);
+            return true;
+        }
+
+        int slot = size++;
+        keyOffset[slot] = arenaEnd;
+        keyLength[slot] = 0;
+        storeKey(slot, key, offset, length, h);
+        table[cell] = slot + 1;
+        elementError[slot] = 0;
+
+        int bucket = minBucket;
+        if(bucket == NIL || bucketCount[bucket] > weight){
+            bucket = newBucket(weight, NIL);
+        }else{
+            bucket = bucketLevels.floor(bucketCount, bucketNext, bucket, weight);
+            if(bucketCount[bucket] != weight)
+                bucket = newBucket(weight, bucket);
+        }
+        linkElementFirst(bucket, slot);
+
+        return true;
+    }
+
+    /**
+     * Slot monitoring the key, -1 if it is not monitored.
+     */
+    public int slotOf(byte[] key, int offset, int length) {
+        int cell = find(key, offset, length, hash(key, offset, length));
+        return table[cell] - 1;
+    }
+
+    public long getCountByKey(byte[] key, int offset, int length) {
+        int slot = slotOf(key, offset, length);
+        return slot == NIL ? 0 : bucketCount[elementBucket[slot]];
+    }
+
+    public long getErrorByKey(byte[] key, int offset, int length) {
+        int slot = slotOf(key, offset, length);
+        return slot == NIL ? 0 : elementError[slot];
+    }
+
+    public long getLowerBound(byte[] key, int offset, int length) {
+        int slot = slotOf(key, offset, length);
+        return slot == NIL ? 0 : bucketCount[elementBucket[slot]] - elementError[slot];
+    }
+
+    public long getUpperBound(byte[] key, int offset, int length) {
+        int slot = slotOf(key, offset, length);
+        return slot == NIL ? getMinCount() : bucketCount[elementBucket[slot]];
+    }
+
+    public long getMinCount() {
+        if(size < m || minBucket == NIL)
+            return 0;
+        return bucketCount[minBucket];
+    }
+
+    public long getStreamLength() {
+        return streamLength;
+    }
+
+    /**
+     * Number of monitored keys, held in slots 0 to size - 1.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long count(int slot) {
+        return bucketCount[elementBucket[slot]];
+    }
+
+    public long error(int slot) {
+        return elementError[slot];
+    }
+
+    /**
+     * The arena holding the key of slot at {@link #keyOffset(int)}. Replaced when the
+     * arena is compacted or grown, so fetch it again after any add.
+     */
+    public byte[] keyBytes() {
+        return arena;
+    }
+
+    public int keyOffset(int slot) {
+        return keyOffset[slot];
+    }
+
+    public int keyLength(int slot) {
+        return keyLength[slot];
+    }
+
+    /**
+     * Decodes the key of slot, for output.
+     */
+    public String keyAsString(int slot) {
+        return new String(arena, keyOffset[slot], keyLength[slot], UTF8);
+    }
+
+    /**
+     * Bytes held by the arrays of the sketch, arena included.
+     */
+    public long memoryBytes() {
+        return arena.length
+                + 4L * (keyOffset.length + keyLength.length + keyHash.length)
+                + 8L * elementError.length + 4L * (elementBucket.length + elementNext.length + elementPrev.length)
+                + 8L * bucketCount.length + 4L * (bucketHead.length + bucketTail.length + bucketNext.length + bucketPrev.length)
+                + 4L * table.length;
+    }
+
+    /**
+     * Cell holding the key, or the empty cell ending its probe run.
+     */
+    private int find(byte[] key, int offset, int length, int h) {
+        int i = h & mask;
+        int entry;
+        while((entry = table[i]) != 0){
+            int slot = entry - 1;
+            if(keyHash[slot] == h && keyLength[slot] == length && equalBytes(arena, keyOffset[slot], key, offset, length))
+                return i;
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static boolean equalBytes(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for(int i = 0; i < length; i++){
+            if(a[aOffset + i] != b[bOffset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Empties the cell of slot, moving back every following entry of the run whose
+     * home position does not lie cyclically in (i, j].
+     */
+    private void removeFromTable(int slot) {
+        int i = keyHash[slot] & mask;
+        while(table[i] != slot + 1){
+            i = (i + 1) & mask;
+        }
+        int j = i;
+        while(true){
+            j = (j + 1) & mask;
+            if(table[j] == 0)
+                break;
+            int home = keyHash[table[j] - 1] & mask;
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if(!stays){
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    /**
+     * Copies the key into the arena for slot, over its previous key when it fits.
+     */
+    private void storeKey(int slot, byte[] key, int offset, int length, int h) {
+        int previous = keyLength[slot];
+        if(length > previous){
+            if(arena.length - arenaEnd < length)
+                compactArena(length);
+            keyOffset[slot] = arenaEnd;
+            arenaEnd += length;
+        }
+        garbage += previous - (length > previous ? 0 : length);
+        System.arraycopy(key, offset, arena, keyOffset[slot], length);
+        keyLength[slot] = length;
+        keyHash[slot] = h;
+    }
+
+    /**
+     * Copies the live keys into a fresh arena with room for at least free more bytes,
+     * at least half of it being left free.
+     */
+    private void compactArena(int free) {
+        long live = arenaEnd - garbage;
+        long capacity = Math.max(16, arena.length);
+        while(capacity < 2 * (live + free)){
+            capacity <<= 1;
+        }
+        byte[] compacted = new byte[(int)Math.min(Integer.MAX_VALUE - 8, capacity)];
+        int end = 0;
+        for(int slot = 0; slot < size; slot++){
+            System.arraycopy(arena, keyOffset[slot], compacted, end, keyLength[slot]);
+            keyOffset[slot] = end;
+            end += keyLength[slot];
+        }
+        arena = compacted;
+        arenaEnd = end;
+        garbage = 0;
+    }
+
+    /**
+     * Moves the element in slot to the bucket for count + weight.
+     */
+    private void increment(int slot, long weight){
+        int bucket = elementBucket[slot];
+        long count = bucketCount[bucket] + weight;
+        int next = bucketNext[bucket];
+        boolean sole = bucketHead[bucket] == slot && bucketTail[bucket] == slot;
+
+        if(next != NIL && bucketCount[next] == count){
+            unlinkElement(slot);
+            linkElementFirst(next, slot);
+        }else if(next == NIL || bucketCount[next] > count){
+            if(sole){
+                //sole element of its bucket, the bucket can take the new count in place
+                bucketCount[bucket] = count;
+            }else{
+                int newBucket = newBucket(count, bucket);
+                unlinkElement(slot);
+                linkElementFirst(newBucket, slot);
+            }
+        }else{
+            int target = bucketLevels.floor(bucketCount, bucketNext, next, count);
+            if(bucketCount[target] != count)
+                target = newBucket(count, target);
+            unlinkElement(slot);
+            linkElementFirst(target, slot);
+        }
+    }
+
+    private void linkElementFirst(int bucket, int slot){
+        int head = bucketHead[bucket];
+        elementBucket[slot] = bucket;
+        elementPrev[slot] = NIL;
+        elementNext[slot] = head;
+        if(head == NIL)
+            bucketTail[bucket] = slot;
+        else
+            elementPrev[head] = slot;
+        bucketHead[bucket] = slot;
+    }
+
+    private void unlinkElement(int slot){
+        int bucket = elementBucket[slot];
+        int prev = elementPrev[slot];
+        int next = elementNext[slot];
+
+        if(prev == NIL)
+            bucketHead[bucket] = next;
+        else
+            elementNext[prev] = next;
+
+        if(next == NIL)
+            bucketTail[bucket] = prev;
+        else
+            elementPrev[next] = prev;
+
+        if(bucketHead[bucket] == NIL)
+            releaseBucket(bucket);
+    }
+
+    /**
+     * Doubles the bucket arrays, up to the m + 1 buckets a moving element may need
+     * before its old bucket is released, and links the new ones into the free list.
+     */
+    private void growBuckets(){
+        int from = bucketCount.length;
+        int to = (int)Math.min(m + 1L, Math.max(INITIAL_BUCKETS, 2L * from));
+        bucketCount = Arrays.copyOf(bucketCount, to);
+        bucketHead  = Arrays.copyOf(bucketHead, to);
+        bucketTail  = Arrays.copyOf(bucketTail, to);
+        bucketNext  = Arrays.copyOf(bucketNext, to);
+        bucketPrev  = Arrays.copyOf(bucketPrev, to);
+        bucketLevels.grow(to);
+        for(int i = from; i < to; i++){
+            bucketNext[i] = i + 1 < to ? i + 1 : freeBucket;
+        }
+        freeBucket = from < to ? from : freeBucket;
+    }
+
+    private int newBucket(long count, int after){
+        if(freeBucket == NIL)
+            growBuckets();
+        int bucket = freeBucket;
+        freeBucket = bucketNext[bucket];
+
+        bucketCount[bucket] = count;
+        bucketHead[bucket] = NIL;
+        bucketTail[bucket] = NIL;
+
+        int next = after == NIL ? minBucket : bucketNext[after];
+        bucketPrev[bucket] = after;
+        bucketNext[bucket] = next;
+        if(after == NIL)
+            minBucket = bucket;
+        else
+            bucketNext[after] = bucket;
+        if(next != NIL)
+            bucketPrev[next] = bucket;
+        bucketLevels.link(bucketCount, bucket);
+
+        return bucket;
+    }
+
+    private void releaseBucket(int bucket){
+        bucketLevels.unlink(bucketCount, bucket);
+        int prev = bucketPrev[bucket];
+        int next = bucketNext[bucket];
+
+        if(prev == NIL)
+            minBucket = next;
+        else
+            bucketNext[prev] = next;
+
+        if(next != NIL)
+            bucketPrev[next] = prev;
+
+        bucketNext[bucket] = freeBucket;
+        freeBucket = bucket;
+    }
+
+    public String toString(){
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Utf8SpaceSavingTopN[\n");
+
+        int bucket = minBucket;
+        while(bucket != NIL){
+            sb.append("Bucket(").append(bucketCount[bucket]).append("):[");
+            int slot = bucketHead[bucket];
+            while(slot != NIL){
+                sb.append(keyAsString(slot)).append(",");
+                slot = elementNext[slot];
+            }
+            sb.append("],\n");
+            bucket = bucketNext[bucket];
+        }
+        sb.append("]");
+
+        return sb.toString();
+
+    }
+
+}
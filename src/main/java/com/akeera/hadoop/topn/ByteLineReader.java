@@ -0,0 +1,260 @@
+package com.akeera.hadoop.topn;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+
+/**
+ * Reads the records of files, lines by default, as slices of a direct buffer filled by
+ * positional reads on a {@link FileChannel}. No record is decoded or copied, the slice of
+ * the current record stays valid until the next call to {@link #next()}.
+ * <p/>
+ * Files, or splits of them, are read in the order they are added. A split owns the
+ * records that start in it, the same rule as Hadoop text splits: a split other than the
+ * first of a file skips the record under way at its start and the last record is read
+ * to its end past the split. A trailing "\r" is dropped from lines.
+ *
+ * @author: pavanachanta
+ */
+public class ByteLineReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 4 << 20;
+
+    //records longer than this fail rather than grow the buffer any further
+    private static final int MAX_BUFFER_SIZE = 1 << 30;
+
+    private final byte delimiter;
+
+    private final ArrayDeque<Split> splits = new ArrayDeque<Split>();
+
+    private ByteBuffer buffer;
+
+    //view of the current record
+    private ByteBuffer record;
+
+    private Split split;
+    private FileChannel channel;
+
+    //file offset of buffer index 0
+    private long base;
+    //buffer indexes: start of the next record, end of the bytes read, where to look for the delimiter
+    private int start;
+    private int limit;
+    private int scan;
+    private boolean eof;
+    private boolean skipping;
+    private boolean lastRecord;
+
+    private long recordOffset;
+
+    public ByteLineReader() {
+        this(DEFAULT_BUFFER_SIZE, (byte)'\n');
+    }
+
+    public ByteLineReader(int bufferSize, byte delimiter) {
+        if(bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        this.delimiter = delimiter;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.record = buffer.duplicate();
+    }
+
+    /**
+     * Queues the whole file.
+     */
+    public ByteLineReader add(File file) {
+        return add(file, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Queues the records of the file that start in [from, to).
+     */
+    public ByteLineReader add(File file, long from, long to) {
+        if(from < 0 || to < from)
+            throw new IllegalArgumentException("Invalid split [" + from + ", " + to + ") of " + file);
+        splits.add(new Split(file, from, to));
+        return this;
+    }
+
+    /**
+     * Advances to the next record, opening the next queued file when one is done.
+     *
+     * @return false once every queued record has been read
+     */
+    public boolean next() throws IOException {
+        while(true){
+            if(split == null && !open())
+                return false;
+            if(lastRecord){
+                closeSplit();
+                continue;
+            }
+
+            int end = indexOfDelimiter();
+            if(end < 0){
+                if(!eof){
+                    fill();
+                    continue;
+                }
+                //a last record without a delimiter
+                if(start < limit && !skipping){
+                    setRecord(start, limit);
+                    lastRecord = true;
+                    return true;
+                }
+                closeSplit();
+                continue;
+            }
+
+            int recordStart = start;
+            start = end + 1;
+            scan = start;
+            //no later record of the split starts before its end
+            boolean ends = base + end >= split.to - 1;
+            if(skipping){
+                skipping = false;
+                if(ends)
+                    lastRecord = true;
+                continue;
+            }
+
+            int recordEnd = end;
+            if(delimiter == '\n' && recordEnd > recordStart && buffer.get(recordEnd - 1) == '\r')
+                recordEnd--;
+            setRecord(recordStart, recordEnd);
+            lastRecord = ends;
+            return true;
+        }
+    }
+
+    /**
+     * The current record, from its position to its limit. Only valid until the next call
+     * to {@link #next()}, the view and its bytes are reused.
+     */
+    public ByteBuffer record() {
+        return record;
+    }
+
+    /**
+     * Offset of the current record in its file.
+     */
+    public long recordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * The file of the current record.
+     */
+    public File file() {
+        return split == null ? null : split.file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        splits.clear();
+        closeSplit();
+    }
+
+    private void setRecord(int from, int to) {
+        record.clear();
+        record.position(from);
+        record.limit(to);
+        recordOffset = base + from;
+    }
+
+    private int indexOfDelimiter() {
+        ByteBuffer buffer = this.buffer;
+        byte delimiter = this.delimiter;
+        int i = scan;
+        //eight bytes at a time: the lowest set high bit of found marks the first byte
+        //equal to the delimiter, bits above it may be false positives
+        long pattern = (delimiter & 0xFFL) * 0x0101010101010101L;
+        for(; i + 8 <= limit; i += 8){
+            long word = buffer.getLong(i) ^ pattern;
+            long found = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if(found != 0)
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        for(; i < limit; i++){
+            if(buffer.get(i) == delimiter)
+                return i;
+        }
+        scan = limit;
+        return -1;
+    }
+
+    private boolean open() throws IOException {
+        split = splits.poll();
+        if(split == null)
+            return false;
+
+        channel = new FileInputStream(split.file).getChannel();
+        //a split other than the first starts by looking for the end of the record under way
+        skipping = split.from > 0;
+        base = skipping ? split.from - 1 : 0;
+        start = 0;
+        limit = 0;
+        scan = 0;
+        eof = false;
+        lastRecord = split.from >= channel.size();
+        return true;
+    }
+
+    private void closeSplit() throws IOException {
+        FileChannel current = channel;
+        split = null;
+        channel = null;
+        if(current != null)
+            current.close();
+    }
+
+    /**
+     * Moves the bytes of the record under way to the front of the buffer, doubling it when
+     * the record fills it, and reads behind them.
+     */
+    private void fill() throws IOException {
+        if(start > 0){
+            buffer.limit(limit);
+            buffer.position(start);
+            buffer.compact();
+            base += start;
+            limit -= start;
+            scan -= start;
+            start = 0;
+        }else if(limit == buffer.capacity()){
+            if(buffer.capacity() >= MAX_BUFFER_SIZE)
+                throw new IOException("Record longer than " + MAX_BUFFER_SIZE + " bytes at offset " + base + " of " + split.file);
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.min(MAX_BUFFER_SIZE, 2 * buffer.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(limit);
+            buffer.position(0);
+            larger.put(buffer);
+            buffer = larger;
+            record = buffer.duplicate();
+        }
+
+        buffer.limit(buffer.capacity());
+        buffer.position(limit);
+        int read = channel.read(buffer, base + limit);
+        if(read < 0)
+            eof = true;
+        else
+            limit += read;
+    }
+
+    private static class Split {
+        final File file;
+        final long from;
+        final long to;
+
+        Split(File file, long from, long to) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.akeera.hadoop.topn;
+
+import com.akeera.collections.CounterIterator;
+import com.akeera.collections.SpaceSavingTopN;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Top-N word count over local files without Hadoop. The files are cut into splits on
+ * line boundaries, the splits are counted on a fork-join pool into one
+ * {@link SpaceSavingTopN} per worker thread and the sketches are merged at the end. Run
+ * with {@code LocalTopN <topK> <file or directory>...}, it prints the same
+ * {@code word\tcount} lines as the Cascading flows, highest count first.
+ * <p/>
+ * The number of workers defaults to the number of cores, {@code -Dtopn.threads=N}
+ * overrides it.
+ *
+ * @author: pavanachanta
+ */
+public class LocalTopN {
+
+    public static final String THREADS_PROPERTY = "topn.threads";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BATCH_SIZE = 256;
+
+    //splits per worker, so that a worker finishing early can take over
+    private static final int SPLITS_PER_THREAD = 4;
+
+    private static final long MIN_SPLIT_SIZE = 1 << 20;
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("usage: LocalTopN <topK> <file or directory>...");
+            System.exit(1);
+        }
+
+        int topK = Integer.parseInt(args[0]);
+        List<File> files = new ArrayList<File>();
+        for(int i = 1; i < args.length; i++){
+            listFiles(new File(args[i]), files);
+        }
+        int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+
+        SpaceSavingTopN<String> topN = count(files, topK, threads, splitSize(files, threads));
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, UTF8), 1 << 16);
+        for(String word : ranked(topN)){
+            out.write(word);
+            out.write('\t');
+            out.write(Long.toString(topN.getCountByElement(word)));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Adds the files, or the files in a directory skipping hidden and _SUCCESS like ones.
+     */
+    private static void listFiles(File file, List<File> files) throws IOException {
+        if(file.isDirectory()){
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for(File child : children){
+                if(!child.getName().startsWith(".") && !child.getName().startsWith("_"))
+                    listFiles(child, files);
+            }
+        }else if(file.isFile()){
+            files.add(file);
+        }else{
+            throw new IOException("No such file " + file);
+        }
+    }
+
+    private static long splitSize(List<File> files, int threads) {
+        long total = 0;
+        for(File file : files){
+            total += file.length();
+        }
+        return Math.max(MIN_SPLIT_SIZE, total / ((long)threads * SPLITS_PER_THREAD) + 1);
+    }
+
+    /**
+     * Counts the words of the files in splits of about splitSize bytes on threads workers
+     * with a sketch of topK counters each, and returns the merged sketch.
+     */
+    static SpaceSavingTopN<String> count(List<File> files, final int topK, int threads, long splitSize) throws IOException {
+        final List<Worker> workers = new CopyOnWriteArrayList<Worker>();
+        final ThreadLocal<Worker> worker = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                Worker w = new Worker(topK);
+                workers.add(w);
+                return w;
+            }
+        };
+
+        List<Callable<Void>> splits = new ArrayList<Callable<Void>>();
+        for(final File file : files){
+            long length = file.length();
+            for(long start = 0; start < length; start += splitSize){
+                final long from = start;
+                final long to = Math.min(length, start + splitSize);
+                splits.add(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        worker.get().count(file, from, to);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{
+            for(Future<Void> split : pool.invokeAll(splits)){
+                split.get();
+            }
+
+            List<SpaceSavingTopN<String>> sketches = new ArrayList<SpaceSavingTopN<String>>();
+            for(Worker w : workers){
+                w.flush();
+                sketches.add(w.topN);
+            }
+            if(sketches.isEmpty())
+                return new SpaceSavingTopN<String>(topK);
+            return SpaceSavingTopN.mergeAll(sketches, pool);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted counting", e);
+        }catch(ExecutionException e){
+            if(e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException("Failed counting", e.getCause());
+        }finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The words of the sketch, highest count first and ties in word order. The sketch
+     * yields them by count already, only the runs of equal counts are sorted.
+     */
+    static List<String> ranked(SpaceSavingTopN<String> topN) {
+        List<String> words = new ArrayList<String>(topN.size());
+        CounterIterator<String> counters = topN.descendingIterator();
+        long runCount = -1;
+        int runStart = 0;
+        while(counters.hasNext()){
+            String word = counters.next();
+            if(counters.count() != runCount){
+                Collections.sort(words.subList(runStart, words.size()));
+                runStart = words.size();
+                runCount = counters.count();
+            }
+            words.add(word);
+        }
+        Collections.sort(words.subList(runStart, words.size()));
+        return words;
+    }
+
+    /**
+     * State of one worker thread: its sketch, reader and batch of words.
+     */
+    private static class Worker {
+
+        final SpaceSavingTopN<String> topN;
+        final ByteLineReader reader = new ByteLineReader();
+        final String[] pending = new String[BATCH_SIZE];
+        int numPending;
+        byte[] word = new byte[64];
+
+        Worker(int topK) {
+            topN = new SpaceSavingTopN<String>(topK);
+        }
+
+        /**
+         * Counts the words of the lines that start in [from, to).
+         */
+        void count(File file, long from, long to) throws IOException {
+            reader.add(file, from, to);
+            boolean done = false;
+            try{
+                while(reader.next()){
+                    ByteBuffer line = reader.record();
+                    int end = line.limit();
+                    int i = line.position();
+                    while(i < end){
+                        while(i < end && isWhitespace(line.get(i)))
+                            i++;
+                        int wordStart = i;
+                        while(i < end && !isWhitespace(line.get(i)))
+                            i++;
+                        if(i > wordStart)
+                            addWord(line, wordStart, i - wordStart);
+                    }
+                }
+                done = true;
+            }finally{
+                //the reader closes a split it finishes, not one it fails in
+                if(!done)
+                    reader.close();
+            }
+        }
+
+        private void addWord(ByteBuffer line, int offset, int length) {
+            if(length > word.length)
+                word = new byte[Math.max(length, 2 * word.length)];
+            line.position(offset);
+            line.get(word, 0, length);
+            pending[numPending++] = new String(word, 0, length, UTF8);
+            if(numPending == pending.length)
+                flush();
+        }
+
+        void flush() {
+            topN.addAll(pending, 0, numPending);
+            numPending = 0;
+        }
+    }
+
+    //the \s class of java.util.regex
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+}
@@ -0,0 +1,87 @@
+package com.akeera.hadoop.topn;
+
+import cascading.tuple.hadoop.SerializationToken;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.Serialization;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.io.serializer.WritableSerialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Hadoop serialization for {@link SpaceSavingTopNWritable}, tokenized so that Cascading
+ * writes a short token rather than the class name in front of every sketch in a tuple.
+ * Add it to a flow with {@link #register(Map)}.
+ *
+ * @author: pavanachanta
+ */
+@SerializationToken(tokens = {222}, classNames = {"com.akeera.hadoop.topn.SpaceSavingTopNWritable"})
+public class SpaceSavingTopNSerialization extends Configured implements Serialization<SpaceSavingTopNWritable> {
+
+    public static final String SERIALIZATIONS_PROPERTY = "io.serializations";
+
+    /**
+     * Appends this serialization to the io.serializations of the given flow properties.
+     */
+    public static void register(Map<Object, Object> properties) {
+        String name = SpaceSavingTopNSerialization.class.getName();
+        Object current = properties.get(SERIALIZATIONS_PROPERTY);
+        if(current == null || current.toString().isEmpty()){
+            //keep the hadoop default, which setting the property would otherwise drop
+            properties.put(SERIALIZATIONS_PROPERTY, WritableSerialization.class.getName() + "," + name);
+        }else if(!current.toString().contains(name)){
+            properties.put(SERIALIZATIONS_PROPERTY, current + "," + name);
+        }
+    }
+
+    public boolean accept(Class<?> c) {
+        return SpaceSavingTopNWritable.class.isAssignableFrom(c);
+    }
+
+    public Serializer<SpaceSavingTopNWritable> getSerializer(Class<SpaceSavingTopNWritable> c) {
+        return new Serializer<SpaceSavingTopNWritable>() {
+
+            private DataOutputStream out;
+
+            public void open(OutputStream out) {
+                this.out = out instanceof DataOutputStream ? (DataOutputStream)out : new DataOutputStream(out);
+            }
+
+            public void serialize(SpaceSavingTopNWritable writable) throws IOException {
+                writable.write(out);
+            }
+
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    public Deserializer<SpaceSavingTopNWritable> getDeserializer(Class<SpaceSavingTopNWritable> c) {
+        return new Deserializer<SpaceSavingTopNWritable>() {
+
+            private DataInputStream in;
+
+            public void open(InputStream in) {
+                this.in = in instanceof DataInputStream ? (DataInputStream)in : new DataInputStream(in);
+            }
+
+            public SpaceSavingTopNWritable deserialize(SpaceSavingTopNWritable writable) throws IOException {
+                if(writable == null)
+                    writable = new SpaceSavingTopNWritable();
+                writable.readFields(in);
+                return writable;
+            }
+
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+}
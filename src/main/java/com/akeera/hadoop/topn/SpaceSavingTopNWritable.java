@@ -0,0 +1,51 @@
+package com.akeera.hadoop.topn;
+
+import cascading.tuple.Tuple;
+import com.akeera.collections.FrequentItemsSketch;
+import com.akeera.collections.SketchEngine;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Ships a whole sketch keyed by tuples between map and reduce in the compact
+ * format of {@link FrequentItemsSketch#write}, instead of one tuple per counter.
+ * The name of its {@link SketchEngine} goes first, so any engine can be read back.
+ *
+ * @author: pavanachanta
+ */
+public class SpaceSavingTopNWritable implements Writable {
+
+    private FrequentItemsSketch<Tuple> topN;
+
+    public SpaceSavingTopNWritable() {
+    }
+
+    public SpaceSavingTopNWritable(FrequentItemsSketch<Tuple> topN) {
+        this.topN = topN;
+    }
+
+    public FrequentItemsSketch<Tuple> get() {
+        return topN;
+    }
+
+    public void set(FrequentItemsSketch<Tuple> topN) {
+        this.topN = topN;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(SketchEngine.of(topN).name());
+        topN.write(out, TupleKeySerializer.INSTANCE);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        topN = SketchEngine.valueOf(in.readUTF()).read(in, TupleKeySerializer.INSTANCE);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(topN);
+    }
+}
@@ -0,0 +1,91 @@
+package com.akeera.hadoop.topn;
+
+import cascading.tuple.Tuple;
+import com.akeera.collections.KeySerializer;
+import com.akeera.collections.KeySerializers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes the grouping tuples of a sketch as a varint arity followed by one tagged
+ * value per field. Only the plain types a grouping key is made of are supported.
+ *
+ * @author: pavanachanta
+ */
+public class TupleKeySerializer implements KeySerializer<Tuple> {
+
+    public static final TupleKeySerializer INSTANCE = new TupleKeySerializer();
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int FLOAT = 5;
+    private static final int BOOLEAN = 6;
+
+    public void write(DataOutput out, Tuple key) throws IOException {
+        KeySerializers.writeVLong(out, key.size());
+        for(int i = 0; i < key.size(); i++){
+            Object value = key.getObject(i);
+            if(value == null){
+                out.writeByte(NULL);
+            }else if(value instanceof String){
+                out.writeByte(STRING);
+                KeySerializers.STRING.write(out, (String)value);
+            }else if(value instanceof Integer){
+                out.writeByte(INTEGER);
+                KeySerializers.LONG.write(out, ((Integer)value).longValue());
+            }else if(value instanceof Long){
+                out.writeByte(LONG);
+                KeySerializers.LONG.write(out, (Long)value);
+            }else if(value instanceof Double){
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double)value);
+            }else if(value instanceof Float){
+                out.writeByte(FLOAT);
+                out.writeFloat((Float)value);
+            }else if(value instanceof Boolean){
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean)value);
+            }else{
+                throw new IOException("unsupported key type: " + value.getClass().getName());
+            }
+        }
+    }
+
+    public Tuple read(DataInput in) throws IOException {
+        int size = KeySerializers.readVInt(in);
+        Tuple key = Tuple.size(size);
+        for(int i = 0; i < size; i++){
+            int type = in.readByte();
+            switch(type){
+                case NULL:
+                    break;
+                case STRING:
+                    key.set(i, KeySerializers.STRING.read(in));
+                    break;
+                case INTEGER:
+                    key.set(i, KeySerializers.LONG.read(in).intValue());
+                    break;
+                case LONG:
+                    key.set(i, KeySerializers.LONG.read(in));
+                    break;
+                case DOUBLE:
+                    key.set(i, in.readDouble());
+                    break;
+                case FLOAT:
+                    key.set(i, in.readFloat());
+                    break;
+                case BOOLEAN:
+                    key.set(i, in.readBoolean());
+                    break;
+                default:
+                    throw new IOException("unknown key type tag: " + type);
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,328 @@
+package com.akeera.hadoop.topn;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes key streams for benchmarking the sketch and the flows. Run with
+ * {@code WorkloadGenerator <output> [--rows=N] [--distribution=zipf] [--keys=word]
+ * [--cardinality=N] [--skew=S] [--perLine=N] [--period=N] [--parts=N] [--threads=N] [--seed=N]}.
+ * <p/>
+ * The rows are generated in chunks on all cores and written in order through a file
+ * channel, one file or parts many part-NNNNN files in the output directory. Every chunk
+ * draws from its own generator seeded with the seed and its first row, so the output
+ * depends on the seed alone, not on the number of threads or parts.
+ *
+ * @author: pavanachanta
+ */
+public class WorkloadGenerator {
+
+    public enum Distribution {
+        /** Every key equally likely. */
+        UNIFORM,
+        /** Key of rank r drawn with a weight of 1 / r^skew. */
+        ZIPF,
+        /** Zipf, with the ranking rotated every period rows, the heavy hitters of one period are tail keys in the next. */
+        DRIFTING,
+        /** Zipf, with half the rows of the first tenth of every period going to one tail key. */
+        BURSTY,
+        /** Cycles through the keys in order, a sketch with fewer counters than keys evicts on every add. */
+        ADVERSARIAL
+    }
+
+    public enum Keys {
+        /** Decimal ids. */
+        NUMERIC,
+        /** "w" and the id in base 36. */
+        WORD
+    }
+
+    static final int CHUNK_ROWS = 1 << 18;
+
+    //bytes of the longest key: "w" and 6 base 36 digits, or 10 decimal digits, and a separator
+    private static final int MAX_ROW_BYTES = 11;
+
+    private final Distribution distribution;
+    private final Keys keys;
+    private final int cardinality;
+    private final double skew;
+    private final long seed;
+    private int perLine = 1;
+    private long period = 1000000;
+
+    public WorkloadGenerator(Distribution distribution, Keys keys, int cardinality, double skew, long seed) {
+        if(cardinality < 1)
+            throw new IllegalArgumentException("cardinality must be positive: " + cardinality);
+        if(skew <= 0 && distribution != Distribution.UNIFORM && distribution != Distribution.ADVERSARIAL)
+            throw new IllegalArgumentException("skew must be positive: " + skew);
+        this.distribution = distribution;
+        this.keys = keys;
+        this.cardinality = cardinality;
+        this.skew = skew;
+        this.seed = seed;
+    }
+
+    /**
+     * Number of keys on a line, separated by a space.
+     */
+    public WorkloadGenerator setPerLine(int perLine) {
+        if(perLine < 1)
+            throw new IllegalArgumentException("perLine must be positive: " + perLine);
+        this.perLine = perLine;
+        return this;
+    }
+
+    /**
+     * Rows between the shifts of the drifting and bursty distributions.
+     */
+    public WorkloadGenerator setPeriod(long period) {
+        if(period < 1)
+            throw new IllegalArgumentException("period must be positive: " + period);
+        this.period = period;
+        return this;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1){
+            System.err.println("usage: WorkloadGenerator <output> [--rows=N] [--distribution=uniform|zipf|drifting|bursty|adversarial]"
+                    + " [--keys=numeric|word] [--cardinality=N] [--skew=S] [--perLine=N] [--period=N] [--parts=N] [--threads=N] [--seed=N]");
+            System.exit(1);
+        }
+
+        Map<String, String> options = new HashMap<String, String>();
+        for(int i = 1; i < args.length; i++){
+            int eq = args[i].indexOf('=');
+            if(!args[i].startsWith("--") || eq < 0)
+                throw new IllegalArgumentException("Expected --name=value, got " + args[i]);
+            options.put(args[i].substring(2, eq), args[i].substring(eq + 1));
+        }
+
+        WorkloadGenerator generator = new WorkloadGenerator(
+                Distribution.valueOf(option(options, "distribution", "zipf").toUpperCase()),
+                Keys.valueOf(option(options, "keys", "word").toUpperCase()),
+                Integer.parseInt(option(options, "cardinality", "1000000")),
+                Double.parseDouble(option(options, "skew", "1.0")),
+                Long.parseLong(option(options, "seed", "1")));
+        generator.setPerLine(Integer.parseInt(option(options, "perLine", "1")));
+        generator.setPeriod(Long.parseLong(option(options, "period", "1000000")));
+
+        long rows   = Long.parseLong(option(options, "rows", "1000000"));
+        int parts   = Integer.parseInt(option(options, "parts", "1"));
+        int threads = Integer.parseInt(option(options, "threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        if(!options.isEmpty())
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+
+        long start = System.nanoTime();
+        long bytes = generator.write(new File(args[0]), rows, parts, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d rows, %d MB in %.1f s, %.0f MB/s%n", rows, bytes >> 20, seconds, bytes / 1048576.0 / seconds);
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Writes rows keys to output, a file when parts is 1, else a directory of part files
+     * with a whole number of chunks each. Returns the number of bytes written.
+     */
+    public long write(File output, final long rows, int parts, int threads) throws IOException {
+        if(rows < 0 || parts < 1 || threads < 1)
+            throw new IllegalArgumentException("rows " + rows + ", parts " + parts + ", threads " + threads);
+
+        long chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        long chunksPerPart = Math.max(1, (chunks + parts - 1) / parts);
+        if(parts > 1 && !output.isDirectory() && !output.mkdirs())
+            throw new IOException("Cannot create " + output);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        //chunks in flight, bounding the memory held by generated but unwritten chunks
+        ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<Future<ByteBuffer>>();
+        FileChannel channel = null;
+        long bytes = 0;
+        try{
+            long submitted = 0;
+            for(long chunk = 0; chunk < chunks; chunk++){
+                while(submitted < chunks && pending.size() < 2 * threads){
+                    final long first = submitted * CHUNK_ROWS;
+                    final int count = (int)Math.min(CHUNK_ROWS, rows - first);
+                    pending.add(pool.submit(new Callable<ByteBuffer>() {
+                        public ByteBuffer call() {
+                            return chunk(first, count, first + count == rows);
+                        }
+                    }));
+                    submitted++;
+                }
+
+                if(chunk % chunksPerPart == 0){
+                    if(channel != null)
+                        channel.close();
+                    File file = parts > 1 ? new File(output, String.format("part-%05d", chunk / chunksPerPart)) : output;
+                    channel = new FileOutputStream(file).getChannel();
+                }
+
+                ByteBuffer buffer = pending.remove().get();
+                while(buffer.hasRemaining()){
+                    bytes += channel.write(buffer);
+                }
+            }
+            if(channel == null && parts == 1)
+                new FileOutputStream(output).close();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing " + output, e);
+        }catch(ExecutionException e){
+            throw new IOException("Failed generating " + output, e.getCause());
+        }finally{
+            pool.shutdownNow();
+            if(channel != null)
+                channel.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Generates the rows [first, first + count) as the bytes of their lines, ending the
+     * last line when the chunk is the last. The chunk's generator is seeded with its first
+     * row, so the same rows always get the same keys.
+     */
+    ByteBuffer chunk(long first, int count, boolean last) {
+        Random rn = new Random(seed ^ (first * 0x9E3779B97F4A7C15L));
+        ZipfSampler zipf = distribution == Distribution.UNIFORM || distribution == Distribution.ADVERSARIAL
+                ? null : new ZipfSampler(cardinality, skew);
+
+        byte[] bytes = new byte[count * MAX_ROW_BYTES];
+        int length = 0;
+        for(long row = first; row < first + count; row++){
+            length = appendKey(bytes, length, key(row, rn, zipf));
+            bytes[length++] = (byte)((row + 1) % perLine == 0 ? '\n' : ' ');
+        }
+        //a partial last line still ends with a newline
+        if(last && length > 0 && bytes[length - 1] == ' ')
+            bytes[length - 1] = '\n';
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    long key(long row, Random rn, ZipfSampler zipf) {
+        switch(distribution){
+            case UNIFORM:
+                return rn.nextInt(cardinality);
+            case ADVERSARIAL:
+                return row % cardinality;
+            case DRIFTING:
+                long shift = (row / period) * Math.max(1, cardinality / 64);
+                return (zipf.sample(rn) - 1 + shift) % cardinality;
+            case BURSTY:
+                long phase = row % period;
+                if(phase < Math.max(1, period / 10) && rn.nextBoolean()){
+                    //a tail key picked by the period, the same in every chunk of the period
+                    long burst = (row / period + 1) * 0x9E3779B97F4A7C15L;
+                    return (cardinality / 2) + ((burst >>> 33) % ((cardinality + 1) / 2));
+                }
+                return zipf.sample(rn) - 1;
+            default:
+                return zipf.sample(rn) - 1;
+        }
+    }
+
+    private int appendKey(byte[] bytes, int offset, long key) {
+        int radix = 10;
+        if(keys == Keys.WORD){
+            bytes[offset++] = 'w';
+            radix = 36;
+        }
+        //digits are written backwards from the end of the key
+        int end = offset;
+        long rest = key;
+        do{
+            end++;
+            rest /= radix;
+        }while(rest > 0);
+
+        int i = end;
+        do{
+            bytes[--i] = (byte)Character.forDigit((int)(key % radix), radix);
+            key /= radix;
+        }while(key > 0);
+        return end;
+    }
+
+    /**
+     * Draws ranks 1 to n with a weight of 1 / rank^exponent in constant time and space, by
+     * rejection-inversion (Hormann and Derflinger, Rejection-inversion to generate variates
+     * from monotone discrete distributions, 1996).
+     */
+    static class ZipfSampler {
+
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double threshold;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1.0;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.threshold = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        int sample(Random rn) {
+            while(true){
+                double u = hIntegralN + rn.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int)(x + 0.5);
+                if(k < 1)
+                    k = 1;
+                else if(k > n)
+                    k = n;
+                if(k - x <= threshold || u >= hIntegral(k + 0.5) - h(k))
+                    return k;
+            }
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1.0 - exponent) * logX) * logX;
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = x * (1.0 - exponent);
+            if(t < -1.0)
+                t = -1.0;
+            return Math.exp(helper1(t) * x);
+        }
+
+        //log(1 + x) / x, accurate for x near 0
+        private static double helper1(double x) {
+            if(Math.abs(x) > 1e-8)
+                return Math.log1p(x) / x;
+            return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+        }
+
+        //(exp(x) - 1) / x, accurate for x near 0
+        private static double helper2(double x) {
+            if(Math.abs(x) > 1e-8)
+                return Math.expm1(x) / x;
+            return 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + 0.25 * x));
+        }
+    }
+}
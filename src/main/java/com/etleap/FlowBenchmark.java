@@ -0,0 +1,204 @@
+/**
+ */
+package com.etleap;
+
+import cascading.flow.Flow;
+import cascading.stats.FlowStats;
+import com.akeera.hadoop.topn.WorkloadGenerator;
+import com.etleap.cascading.topn.ExactCountCascading;
+import com.etleap.cascading.topn.TopNCascading;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the word count flows in Hadoop local mode on a Zipf distributed {@link WorkloadGenerator} dataset
+ * and appends one JSON line per flow to a report file: wall time, map output records and
+ * bytes, spilled records and the recall of the exact top k. Run with
+ * {@code FlowBenchmark <workDir> <report> [words] [cardinality] [skew] [counters] [k] [label] [seed]}.
+ * <p/>
+ * The exact flow runs first, its output is the answer the others are scored against. The
+ * counters are summed over the steps of a flow, the exact flow has two.
+ *
+ * @author: pavanachanta
+ */
+public class FlowBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String TASK_COUNTERS = "org.apache.hadoop.mapred.Task$Counter";
+
+    private static final String[] COUNTERS = {"MAP_OUTPUT_RECORDS", "MAP_OUTPUT_BYTES", "SPILLED_RECORDS"};
+
+    private static final int WORDS_PER_LINE = 16;
+
+    private static final long DEFAULT_SEED = 1;
+
+    // the flows under test, by name, the arguments after input and output
+    private static final String[][] FLOWS = {
+            {"topn"},
+            {"spacesaving", "counts"},
+            {"spacesaving", "sketch"},
+            {"spacesaving", "utf8"},
+    };
+
+    public static void main(String[] args) throws IOException {
+
+        File workDir     = new File(args[0]);
+        File report      = new File(args[1]);
+        long words       = args.length > 2 ? Long.parseLong(args[2]) : 10000000;
+        int cardinality  = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+        double skew      = args.length > 4 ? Double.parseDouble(args[4]) : 1.0;
+        int counters     = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+        int k            = args.length > 6 ? Integer.parseInt(args[6]) : 100;
+        String label     = args.length > 7 ? args[7] : "";
+        long seed        = args.length > 8 ? Long.parseLong(args[8]) : DEFAULT_SEED;
+
+        if(k > counters)
+            throw new IllegalArgumentException("k " + k + " exceeds the " + counters + " counters");
+
+        workDir.mkdirs();
+        File input = new File(workDir, "input.txt");
+        new WorkloadGenerator(WorkloadGenerator.Distribution.ZIPF, WorkloadGenerator.Keys.WORD, cardinality, skew, seed)
+                .setPerLine(WORDS_PER_LINE)
+                .write(input, words, 1, Runtime.getRuntime().availableProcessors());
+
+        String dataset = String.format("\"words\":%d,\"cardinality\":%d,\"skew\":%s,\"seed\":%d,\"counters\":%d,\"k\":%d",
+                words, cardinality, skew, seed, counters, k);
+
+        File exactOutput = new File(workDir, "exact");
+        Map<String, Object> exactRun = run("exact", ExactCountCascading.connect(new String[]{input.getPath(), exactOutput.getPath()}));
+        Map<String, Long> exact = readCounts(exactOutput);
+        exactRun.put("recall", 1.0);
+        append(report, label, dataset, exactRun);
+
+        for(String[] flow : FLOWS){
+            String name = flow.length > 1 ? flow[0] + "-" + flow[1] : flow[0];
+            File output = new File(workDir, name);
+
+            String[] flowArgs = {input.getPath(), output.getPath(), Integer.toString(counters)};
+            Flow f;
+            if(flow[0].equals("topn")){
+                f = TopNCascading.connect(flowArgs);
+            }else{
+                flowArgs = Arrays.copyOf(flowArgs, 4);
+                flowArgs[3] = flow[1];
+                f = SpaceSavingTopNCascading.connect(flowArgs);
+            }
+
+            Map<String, Object> result = run(name, f);
+            result.put("recall", recall(readCounts(output), exact, k));
+            append(report, label, dataset, result);
+        }
+    }
+
+    private static Map<String, Object> run(String name, Flow flow) {
+        long start = System.nanoTime();
+        flow.complete();
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("flow", name);
+        result.put("wallMillis", millis);
+        FlowStats stats = flow.getFlowStats();
+        for(String counter : COUNTERS){
+            result.put(counter, stats.getCounterValue(TASK_COUNTERS, counter));
+        }
+        System.out.println(name + " " + result);
+        return result;
+    }
+
+    /**
+     * Share of the k highest reported words whose exact count reaches the k-th highest
+     * exact count, so that ties at the k-th place do not count against a flow.
+     */
+    static double recall(Map<String, Long> reported, Map<String, Long> exact, int k) {
+        List<Long> exactCounts = new ArrayList<Long>(exact.values());
+        Collections.sort(exactCounts, Collections.reverseOrder());
+        if(exactCounts.size() < k)
+            k = exactCounts.size();
+        if(k == 0)
+            return 1.0;
+        long kth = exactCounts.get(k - 1);
+
+        List<Map.Entry<String, Long>> ranked = new ArrayList<Map.Entry<String, Long>>(reported.entrySet());
+        Collections.sort(ranked, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+
+        int hits = 0;
+        for(Map.Entry<String, Long> entry : ranked.subList(0, Math.min(k, ranked.size()))){
+            Long count = exact.get(entry.getKey());
+            if(count != null && count >= kth)
+                hits++;
+        }
+        return (double)hits / k;
+    }
+
+    /**
+     * Reads the word and count lines of every part file in a flow's output directory. Every
+     * flow writes plain {@code word\tcount} lines, the words never contain whitespace.
+     */
+    private static Map<String, Long> readCounts(File outputDir) throws IOException {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        File[] parts = outputDir.listFiles();
+        if(parts == null)
+            throw new IOException("No output in " + outputDir);
+
+        for(File part : parts){
+            if(!part.getName().startsWith("part-"))
+                continue;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(part), UTF8));
+            try{
+                String line;
+                while((line = reader.readLine()) != null){
+                    int tab = line.lastIndexOf('\t');
+                    if(tab < 0)
+                        throw new IOException("Malformed line in " + part + ": " + line);
+                    counts.put(line.substring(0, tab), Long.parseLong(line.substring(tab + 1)));
+                }
+            }finally{
+                reader.close();
+            }
+        }
+        return counts;
+    }
+
+    private static void append(File report, String label, String dataset, Map<String, Object> result) throws IOException {
+        StringBuilder line = new StringBuilder("{\"label\":\"");
+        line.append(label.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",");
+        line.append("\"time\":").append(System.currentTimeMillis()).append(',');
+        line.append(dataset);
+        for(Map.Entry<String, Object> entry : result.entrySet()){
+            line.append(",\"").append(entry.getKey()).append("\":");
+            if(entry.getValue() instanceof String)
+                line.append('"').append(entry.getValue()).append('"');
+            else
+                line.append(entry.getValue());
+        }
+        line.append("}\n");
+
+        Writer writer = new FileWriter(report, true);
+        try{
+            writer.write(line.toString());
+        }finally{
+            writer.close();
+        }
+    }
+}
@@ -8,8 +8,11 @@ import cascading.flow.Flow;
 import cascading.flow.FlowDef;
 import cascading.flow.hadoop.HadoopFlowConnector;
 import cascading.operation.Function;
-import cascading.operation.regex.RegexSplitGenerator;
+import cascading.operation.aggregator.Sum;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
 import cascading.pipe.assembly.CountBySketch;
+import cascading.pipe.assembly.GlobalTopKByCount;
 import cascading.pipe.Each;
 import cascading.pipe.Pipe;
 import cascading.property.AppProps;
@@ -19,23 +22,50 @@ import cascading.tap.hadoop.Hfs;
 import cascading.tap.SinkMode;
 import cascading.tap.Tap;
 import cascading.tuple.Fields;
+import com.akeera.collections.SketchEngine;
+import com.akeera.hadoop.topn.SpaceSavingTopNSerialization;
+import com.etleap.cascading.topn.RawTextLine;
+import com.etleap.cascading.topn.Utf8TopNFunction;
+import com.etleap.cascading.topn.WhitespaceTokenizer;
 
 /**
  * Code for SpaceSavingTopN
  */
 public class SpaceSavingTopNCascading {
 
-    @SuppressWarnings("rawtypes")
     public final static void main(String[] args) {
 
+        // execute the flow, block until complete
+        connect(args).complete();
+    }
+
+    /**
+     * Plans the flow for the command line arguments without running it.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Flow connect(String[] args) {
+        return connect(args, new Properties());
+    }
+
+    /**
+     * Plans the flow for the command line arguments on top of the given flow properties,
+     * e.g. mapred.reduce.tasks, without running it.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Flow connect(String[] args, Properties properties) {
+
         String inputPath = args[0];
         String outputPath = args[1];
         String topK       = args[2];
+        // optional: "sketch" ships one sketch per map task instead of one tuple per counter,
+        // "utf8" counts the words as byte slices of the line, never building a key tuple
+        String mode = args.length > 3 ? args[3] : "counts";
+        boolean sketchShuffle = "sketch".equals(mode);
 
         // Define source and sink Taps.
 
 
-        Scheme sourceScheme = new TextLine(new Fields("line"));
+        Scheme sourceScheme = new RawTextLine(new Fields("line"));
         Tap source = new Hfs(sourceScheme, inputPath);
 
         Scheme sinkScheme = new TextLine(new Fields("word", "count"));
@@ -44,21 +74,36 @@ public class SpaceSavingTopNCascading {
         // the 'head' of the pipe assembly
         Pipe assembly = new Pipe("wordcount");
 
-        // For each input Tuple
-        // parse out each word into a new Tuple with the field name "word"
-        // regular expressions are optional in Cascading
-        Function function = new RegexSplitGenerator(new Fields("word"), "\\s+");
-        assembly = new Each(assembly, new Fields("line"), function);
-
-        // For every Tuple group
-        // count the number of occurrences of "word" and store result in
-        // a field named "count"
-        assembly = new CountBySketch(assembly, new Fields("word"), new Fields("count"), Integer.valueOf(topK));
+        if("utf8".equals(mode)){
+            // tokenize and count in one step, then sum and rank like CountBySketch does
+            assembly = new Each(assembly, new Fields("line"), new Utf8TopNFunction(new Fields("word", "count"), Integer.valueOf(topK)));
+            assembly = new GroupBy(assembly, new Fields("word"));
+            assembly = new Every(assembly, new Fields("count"), new Sum(new Fields("count"), Long.TYPE), Fields.ALL);
+            assembly = new GlobalTopKByCount(assembly, new Fields("word"), new Fields("count"), Integer.valueOf(topK));
+        }else{
+            // For each input Tuple
+            // parse out each word into a new Tuple with the field name "word",
+            // splitting the raw line bytes at whitespace
+            Function function = new WhitespaceTokenizer(new Fields("word"));
+            assembly = new Each(assembly, new Fields("line"), function);
+
+            // For every Tuple group
+            // count the number of occurrences of "word" and store result in
+            // a field named "count"
+            assembly = new CountBySketch(assembly, new Fields("word"), new Fields("count"), Integer.valueOf(topK),
+                    sketchShuffle ? CountBySketch.Shuffle.SKETCH : CountBySketch.Shuffle.COUNTS);
+        }
         //assembly = new CountBySketch(assembly, new Fields("word"), new Fields("count"), 10);
 
         // initialize app properties, tell Hadoop which jar file to use
-        Properties properties = new Properties();
         AppProps.setApplicationJarClass(properties, SpaceSavingTopNCascading.class);
+        if(sketchShuffle)
+            SpaceSavingTopNSerialization.register(properties);
+        // -Dtopn.sketch.engine=misra-gries etc. picks the map side sketch, checked here so
+        // that a typo fails the planning rather than every task
+        String engine = System.getProperty(SketchEngine.PROPERTY);
+        if(engine != null)
+            properties.setProperty(SketchEngine.PROPERTY, SketchEngine.fromProperty(engine).name());
 
         // plan a new Flow from the assembly using the source and sink Taps
         // with the above properties
@@ -72,12 +117,6 @@ public class SpaceSavingTopNCascading {
 
         HadoopFlowConnector flowConnector = new HadoopFlowConnector( properties );
         //Flow flow = flowConnector.connect("word-count", source, sink, assembly);
-        Flow flow = flowConnector.connect(flowDef);
-
-
-        // execute the flow, block until complete
-        flow.complete();
-
-
+        return flowConnector.connect(flowDef);
     }
 }
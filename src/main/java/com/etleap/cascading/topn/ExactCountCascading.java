@@ -0,0 +1,66 @@
+/**
+ */
+package com.etleap.cascading.topn;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowDef;
+import cascading.flow.hadoop.HadoopFlowConnector;
+import cascading.pipe.Each;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.assembly.CountBy;
+import cascading.property.AppProps;
+import cascading.scheme.Scheme;
+import cascading.scheme.hadoop.TextLine;
+import cascading.tap.SinkMode;
+import cascading.tap.Tap;
+import cascading.tap.hadoop.Hfs;
+import cascading.tuple.Fields;
+
+import java.util.Properties;
+
+/**
+ * Exact word count with the plain Cascading CountBy, every word sorted by count, highest
+ * first. The baseline the sketch flows are measured against.
+ */
+public class ExactCountCascading {
+
+    public final static void main(String[] args) {
+
+        // execute the flow, block until complete
+        connect(args).complete();
+    }
+
+    /**
+     * Plans the flow for the command line arguments without running it.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Flow connect(String[] args) {
+
+        String inputPath = args[0];
+        String outputPath = args[1];
+
+        Scheme sourceScheme = new RawTextLine(new Fields("line"));
+        Tap source = new Hfs(sourceScheme, inputPath);
+
+        Scheme sinkScheme = new TextLine(new Fields("word", "count"));
+        Tap sink = new Hfs(sinkScheme, outputPath, SinkMode.REPLACE);
+
+        Pipe assembly = new Pipe("wordcount");
+        assembly = new Each(assembly, new Fields("line"), new WhitespaceTokenizer(new Fields("word")));
+        assembly = new CountBy(assembly, new Fields("word"), new Fields("count"));
+
+        // a single group, sorted on the count
+        assembly = new GroupBy(assembly, Fields.NONE, new Fields("count"), true);
+
+        Properties properties = new Properties();
+        AppProps.setApplicationJarClass(properties, ExactCountCascading.class);
+
+        FlowDef flowDef = FlowDef.flowDef()
+                .setName( "exact" )
+                .addSource( assembly, source )
+                .addTailSink( assembly, sink );
+
+        return new HadoopFlowConnector( properties ).connect(flowDef);
+    }
+}
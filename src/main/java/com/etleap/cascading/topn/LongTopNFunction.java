@@ -0,0 +1,85 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.LongSpaceSavingTopN;
+
+/**
+ * Counts a numeric id field straight into a {@link LongSpaceSavingTopN}, the ids being
+ * read as primitive longs so that no key is boxed or copied. The monitored (id, count)
+ * pairs are emitted on flush.
+ *
+ * @author: pavanachanta
+ */
+public class LongTopNFunction extends BaseOperation<LongSpaceSavingTopN> implements Function<LongSpaceSavingTopN>
+{
+
+    private final int topK;
+
+    /**
+     * @param keyCountFields of type Fields, the id and count fields to declare
+     * @param topK           of type int, number of counters
+     */
+    public LongTopNFunction(Fields keyCountFields, int topK)
+    {
+        super(1, keyCountFields);
+        this.topK = topK;
+    }
+
+    @Override
+    public void prepare(FlowProcess flowProcess, OperationCall<LongSpaceSavingTopN> operationCall)
+    {
+        operationCall.setContext(new LongSpaceSavingTopN(topK));
+    }
+
+    @Override
+    public void operate(FlowProcess flowProcess, FunctionCall<LongSpaceSavingTopN> functionCall)
+    {
+        Tuple arguments = functionCall.getArguments().getTuple();
+        if(arguments.getObject(0) == null)
+            return;
+
+        functionCall.getContext().add(arguments.getLong(0));
+    }
+
+    @Override
+    public void flush(FlowProcess flowProcess, OperationCall<LongSpaceSavingTopN> operationCall)
+    {
+        TupleEntryCollector collector = ((FunctionCall) operationCall).getOutputCollector();
+        LongSpaceSavingTopN topN = operationCall.getContext();
+
+        Tuple result = Tuple.size(2);
+        for(int slot = 0; slot < topN.size(); slot++){
+            result.set(0, topN.key(slot));
+            result.set(1, topN.count(slot));
+            collector.add(result);
+        }
+
+        operationCall.setContext(null);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if(this == object)
+            return true;
+        if(!(object instanceof LongTopNFunction))
+            return false;
+        if(!super.equals(object))
+            return false;
+
+        return topK == ((LongTopNFunction)object).topK;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + topK;
+    }
+}
@@ -0,0 +1,82 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.scheme.SourceCall;
+import cascading.scheme.hadoop.TextLine;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * TextLine that hands the line over as the raw {@link Text} read by the record reader
+ * instead of decoding it into a String, for operations like {@link WhitespaceTokenizer}
+ * that work on the UTF-8 bytes.
+ * <p/>
+ * The Text is reused for the next line, so it must be consumed, not kept, downstream.
+ * Preparing the source is left to TextLine, so compressed input is read through the same
+ * codecs and zip files are rejected the same way. A Text only holds UTF-8, input in any
+ * other charset is decoded into a String by TextLine as usual. Sinking is left to TextLine.
+ *
+ * @author: pavanachanta
+ */
+public class RawTextLine extends TextLine
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public RawTextLine(Fields sourceFields)
+    {
+        super(sourceFields);
+    }
+
+    public RawTextLine(Fields sourceFields, Fields sinkFields)
+    {
+        super(sourceFields, sinkFields);
+    }
+
+    public RawTextLine(Fields sourceFields, Fields sinkFields, String charsetName)
+    {
+        super(sourceFields, sinkFields, charsetName);
+    }
+
+    @Override
+    public void sourcePrepare(FlowProcess<JobConf> flowProcess, SourceCall<Object[], RecordReader> sourceCall)
+    {
+        super.sourcePrepare(flowProcess, sourceCall);
+
+        //TextLine's key, value and charset, and whether the value can be passed on raw
+        Object[] context = sourceCall.getContext();
+        context = Arrays.copyOf(context, context.length + 1);
+        context[context.length - 1] = context.length > 3 && UTF8.equals(context[2]);
+        sourceCall.setContext(context);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean source(FlowProcess<JobConf> flowProcess, SourceCall<Object[], RecordReader> sourceCall) throws IOException
+    {
+        Object[] context = sourceCall.getContext();
+
+        if(!(Boolean)context[context.length - 1])
+            return super.source(flowProcess, sourceCall);
+
+        if(!sourceCall.getInput().next(context[0], context[1]))
+            return false;
+
+        //offset and line, or the line alone
+        Tuple tuple = sourceCall.getIncomingEntry().getTuple();
+        if(getSourceFields().size() == 2){
+            tuple.set(0, ((LongWritable)context[0]).get());
+            tuple.set(1, context[1]);
+        }else{
+            tuple.set(0, context[1]);
+        }
+        return true;
+    }
+}
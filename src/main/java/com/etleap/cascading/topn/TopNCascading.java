@@ -8,12 +8,12 @@ import cascading.flow.hadoop.HadoopFlowConnector;
 import cascading.operation.Function;
 import cascading.operation.aggregator.Count;
 import cascading.operation.aggregator.Sum;
-import cascading.operation.regex.RegexSplitGenerator;
 import cascading.pipe.Each;
 import cascading.pipe.Every;
 import cascading.pipe.GroupBy;
 import cascading.pipe.Pipe;
 import cascading.pipe.assembly.CountBySketch;
+import cascading.pipe.assembly.GlobalTopKByCount;
 import cascading.property.AppProps;
 import cascading.scheme.Scheme;
 import cascading.scheme.hadoop.TextLine;
@@ -30,9 +30,27 @@ import java.util.Properties;
  */
 public class TopNCascading {
 
-    @SuppressWarnings("rawtypes")
     public final static void main(String[] args) {
 
+        // execute the flow, block until complete
+        connect(args).complete();
+    }
+
+    /**
+     * Plans the flow for the command line arguments without running it.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Flow connect(String[] args) {
+        return connect(args, new Properties());
+    }
+
+    /**
+     * Plans the flow for the command line arguments on top of the given flow properties,
+     * e.g. mapred.reduce.tasks, without running it.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Flow connect(String[] args, Properties properties) {
+
         String inputPath = args[0];
         String outputPath = args[1];
         String topK       = args[2];
@@ -40,7 +58,7 @@ public class TopNCascading {
         // Define source and sink Taps.
 
 
-        Scheme sourceScheme = new TextLine(new Fields("line"));
+        Scheme sourceScheme = new RawTextLine(new Fields("line"));
         Tap source = new Hfs(sourceScheme, inputPath);
 
         Scheme sinkScheme = new TextLine(new Fields("word", "count"));
@@ -50,9 +68,9 @@ public class TopNCascading {
         Pipe assembly = new Pipe("wordcount");
 
         // For each input Tuple
-        // parse out each word into a new Tuple with the field name "word"
-        // regular expressions are optional in Cascading
-        Function function = new RegexSplitGenerator(new Fields("word"), "\\s+");
+        // parse out each word into a new Tuple with the field name "word",
+        // splitting the raw line bytes at whitespace
+        Function function = new WhitespaceTokenizer(new Fields("word"));
         assembly = new Each(assembly, new Fields("line"), function);
 
         // For every Tuple group
@@ -61,10 +79,10 @@ public class TopNCascading {
         assembly = new Each(assembly, new Fields("word"), new TopNFunction(new Fields("word","count"),Integer.valueOf(topK)));
 
         assembly = new GroupBy( "topn", assembly,new Fields("word"));
-        assembly = new Every(assembly,new Fields("count"), new Sum(),Fields.ALL);
-        assembly = new Each(assembly, new Fields("word"), new TopNFunction(new Fields("word","count"),Integer.valueOf(topK)));
+        assembly = new Every(assembly,new Fields("count"), new Sum(new Fields("count"), Long.TYPE),Fields.ALL);
+        // keep the topK summed words, highest count first
+        assembly = new GlobalTopKByCount(assembly, new Fields("word"), new Fields("count"), Integer.valueOf(topK));
         // initialize app properties, tell Hadoop which jar file to use
-        Properties properties = new Properties();
         AppProps.setApplicationJarClass(properties, TopNCascading.class);
 
         // plan a new Flow from the assembly using the source and sink Taps
@@ -79,12 +97,6 @@ public class TopNCascading {
 
         HadoopFlowConnector flowConnector = new HadoopFlowConnector( properties );
         //Flow flow = flowConnector.connect("word-count", source, sink, assembly);
-        Flow flow = flowConnector.connect(flowDef);
-
-
-        // execute the flow, block until complete
-        flow.complete();
-
-
+        return flowConnector.connect(flowDef);
     }
 }
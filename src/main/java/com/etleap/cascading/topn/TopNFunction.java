@@ -5,33 +5,30 @@ import cascading.operation.BaseOperation;
 import cascading.operation.Function;
 import cascading.operation.FunctionCall;
 import cascading.operation.OperationCall;
-import cascading.pipe.assembly.AggregateBy.Functor;
 import cascading.pipe.assembly.AggregateBySketch;
+import cascading.pipe.assembly.CompositeFunction;
 import cascading.tuple.*;
-import cascading.tuple.hadoop.SerializationToken;
-import cascading.tuple.hadoop.io.BufferedInputStream;
 import cascading.tuple.util.TupleViews;
+import com.akeera.collections.CounterIterator;
+import com.akeera.collections.FrequentItemsSketch;
+import com.akeera.collections.SketchEngine;
 import com.akeera.collections.SpaceSavingTopN;
-import org.apache.hadoop.io.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.DataInput;
-import java.io.DataOutput;
-import java.io.IOException;
-import java.io.Serializable;
-import java.util.Arrays;
-
 /**
- * Class CompositeFunction takes multiple Functor instances and manages them as a single {@link cascading.operation.Function}.
+ * Class TopNFunction counts the "word" field of every tuple into a sketch of topK counters and emits the
+ * monitored (word, count) pairs, highest count first for the linked engine, when it is flushed.
  *
- * @see cascading.pipe.assembly.AggregateBy.Functor
+ * @see CompositeFunction
  */
 public class TopNFunction extends BaseOperation<TopNFunction.Context> implements Function<TopNFunction.Context>
 {
 
     private static final Logger LOG = LoggerFactory.getLogger(AggregateBySketch.class);
 
+    private static final Fields WORD = new Fields("word");
+
     private int topK = 0;
     private final Fields topNFields;
 
@@ -43,13 +40,15 @@ public class TopNFunction extends BaseOperation<TopNFunction.Context> implements
 
     public static class Context
     {
-        SpaceSavingTopN<Tuple> topN;
-        TupleEntry[] arguments;
+        FrequentItemsSketch<Tuple> topN;
+        Tuple key;
+        Tuple[] pending;
+        int numPending;
         Tuple result;
     }
 
     /**
-     * Constructor CompositeFunction creates a new CompositeFunction instance.
+     * Constructor TopNFunction creates a new TopNFunction instance.
      *
      * @param topNFields of type Fields
      * @param topK      of type int
@@ -65,24 +64,34 @@ public class TopNFunction extends BaseOperation<TopNFunction.Context> implements
     @Override
     public void prepare( final FlowProcess flowProcess, final OperationCall<Context> operationCall )
     {
-        Fields[] fields = new Fields[2];
-        fields[0] = new Fields("key");
-        fields[1] = new Fields("count");
-
         final Context context = new Context();
-        context.topN = new SpaceSavingTopN<Tuple>(topK);
+        context.topN = SketchEngine.fromProperty(flowProcess.getProperty(SketchEngine.PROPERTY)).create(topK);
+        context.pending = new Tuple[CompositeFunction.BATCH_SIZE];
+        context.key = TupleViews.createNarrow(operationCall.getArgumentFields().getPos(WORD));
 
-        context.result = TupleViews.createComposite( fields );
+        context.result = Tuple.size(2);
         operationCall.setContext( context );
     }
 
     @Override
     public void operate( FlowProcess flowProcess, FunctionCall<TopNFunction.Context> functionCall )
     {
-        TupleEntry arguments = functionCall.getArguments();
-        Tuple key   = arguments.selectTupleCopy(new Fields("word"));
         Context context = functionCall.getContext();
-        context.topN.add(key);
+        TupleViews.reset(context.key, functionCall.getArguments().getTuple());
+
+        //monitored words are counted through the view, only new ones are copied
+        if(context.topN.addIfMonitored(context.key, 1))
+            return;
+
+        context.pending[context.numPending++] = new Tuple(context.key);
+        if(context.numPending == context.pending.length)
+            addPending(context);
+    }
+
+    private static void addPending(Context context)
+    {
+        context.topN.addAll(context.pending, 0, context.numPending);
+        context.numPending = 0;
     }
 
 
@@ -94,140 +103,33 @@ public class TopNFunction extends BaseOperation<TopNFunction.Context> implements
 
         Tuple result = operationCall.getContext().result;
 
-        SpaceSavingTopN<Tuple> topN = operationCall.getContext().topN;
-
-        for(Tuple tuple : topN.getElementIndex().keySet()){
-
-
-            Tuple countTuple = new Tuple();
-            IntWritable  count = new IntWritable();
-            count.set(topN.getCountByElement(tuple));
-            countTuple.add(count.get());
-
-            Text text = new Text();
-            text.set(tuple.getString(0));
-
-
-            Tuple keyTuple = new Tuple();
-            CountTupleKey key = new CountTupleKey();
-            key.set(count,text);
-            keyTuple.add(key);
-
-
-
-            Tuple countResult =  new Tuple();
-            countResult.add(key);
-            countResult.add(count);
-
-
-            //TupleViews.reset(result,countResult);
-            collector.add(countResult);
-        }
-
-        operationCall.setContext( null );
-    }
-
-
-    static class CountTupleKey implements WritableComparable<CountTupleKey> , Serializable{
-        Text value = new Text();
-        IntWritable count = new IntWritable();
-
+        addPending(operationCall.getContext());
 
-        public void set(IntWritable count, Text value) {
-            this.count = count;
-            this.value = value;
-        }
-
-        @Override
-        public void readFields(DataInput in) throws IOException {
-
-            value.readFields(in);
-            count.set(in.readInt());
-        }
+        FrequentItemsSketch<Tuple> topN = operationCall.getContext().topN;
 
-
-        @Override
-        public void write(DataOutput out) throws IOException {
-            value.write(out);
-            count.write(out);
-
-        }
-
-        @Override
-        public int hashCode() {
-            return value.hashCode();
-        }
-
-        public static class Comparator extends  WritableComparator {
-            public Comparator() {
-                super(CountTupleKey.class);
+        if(topN instanceof SpaceSavingTopN){
+            //highest count first, the count is read off the element's bucket
+            CounterIterator<Tuple> counters = ((SpaceSavingTopN<Tuple>)topN).descendingIterator();
+            while(counters.hasNext()){
+                Tuple tuple = counters.next();
+                emit(collector, result, tuple, counters.count());
             }
-
-            public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-                try {
-                    int val1 = WritableComparator.readInt(b1, s1);
-                    int val2 = WritableComparator.readInt(b2, s2);
-                    if(val1 != val2) {
-                        return val1 > val2 ? 1 : -1;
-                    }
-                    int offset1 = s1 + 4;
-                    int offset2 = s2 + 4;
-                    int strSize1 = WritableComparator.readVInt(b1, offset1);
-                    int strSize2 = WritableComparator.readVInt(b2, offset2);
-                    offset1 += WritableUtils.decodeVIntSize(b1[offset1]);
-                    offset2 += WritableUtils.decodeVIntSize(b2[offset2]);
-                    int cmp = WritableComparator.compareBytes(b1, offset1, strSize1, b2, offset2, strSize2);
-                    if(cmp != 0) {
-                        return cmp;
-                    }
-                    offset1 += strSize1;
-                    offset2 += strSize2;
-                    long f1 = WritableComparator.readLong(b1, offset1);
-                    long f2 = WritableComparator.readLong(b2, offset2);
-                    if(f1 != f2) {
-                        return f1 > f2 ? 1 : -1;
-                    }
-                    return 0;
-                } catch(IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-
-        }
-
-        static { // register this comparator
-            WritableComparator.define(CountTupleKey.class, new Comparator());
-        }
-
-
-
-        public boolean equals(Object object){
-            if( this == object )
-                return true;
-            if( !( object instanceof CountTupleKey) )
-                return false;
-            if( !super.equals( object ) )
-                return false;
-
-            CountTupleKey that = (CountTupleKey)object;
-            return (value.equals(that.value) && count.equals(that.count));
-        }
-
-        @Override
-        public int compareTo(CountTupleKey o) {
-            if(o.count.equals(count)){
-                return value.compareTo(o.value);
-            }else{
-                return o.count.compareTo(count);
+        }else{
+            for(Tuple tuple : topN.elements()){
+                emit(collector, result, tuple, topN.getCountByElement(tuple));
             }
         }
 
-        @Override
-        public String toString(){
-            return  value.toString() + "\t" + count;
-        }
+        operationCall.setContext( null );
     }
 
+    private static void emit(TupleEntryCollector collector, Tuple result, Tuple tuple, long count)
+    {
+        //plain (word, count), so that the reduce side can group on the word and sum
+        result.set(0, tuple.getObject(0));
+        result.set(1, count);
+        collector.add(result);
+    }
 
 
     @Override
@@ -0,0 +1,112 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.Utf8SpaceSavingTopN;
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.Charset;
+
+/**
+ * Tokenizes lines like {@link WhitespaceTokenizer} and counts the words straight into a
+ * {@link Utf8SpaceSavingTopN}, as slices of the line bytes: a word only becomes a String
+ * when the monitored (word, count) pairs are emitted, once, on flush.
+ * <p/>
+ * Takes the raw Text lines of {@link RawTextLine}, String lines are encoded first.
+ *
+ * @author: pavanachanta
+ */
+public class Utf8TopNFunction extends BaseOperation<Utf8SpaceSavingTopN> implements Function<Utf8SpaceSavingTopN>
+{
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final int topK;
+
+    /**
+     * @param wordCountFields of type Fields, the word and count fields to declare
+     * @param topK            of type int, number of counters
+     */
+    public Utf8TopNFunction(Fields wordCountFields, int topK)
+    {
+        super(1, wordCountFields);
+        this.topK = topK;
+    }
+
+    @Override
+    public void prepare(FlowProcess flowProcess, OperationCall<Utf8SpaceSavingTopN> operationCall)
+    {
+        operationCall.setContext(new Utf8SpaceSavingTopN(topK));
+    }
+
+    @Override
+    public void operate(FlowProcess flowProcess, FunctionCall<Utf8SpaceSavingTopN> functionCall)
+    {
+        Object line = functionCall.getArguments().getObject(0);
+        if(line == null)
+            return;
+
+        byte[] bytes;
+        int length;
+        if(line instanceof Text){
+            bytes = ((Text)line).getBytes();
+            length = ((Text)line).getLength();
+        }else{
+            bytes = line.toString().getBytes(UTF8);
+            length = bytes.length;
+        }
+
+        Utf8SpaceSavingTopN topN = functionCall.getContext();
+        int i = 0;
+        while(i < length){
+            while(i < length && WhitespaceTokenizer.isWhitespace(bytes[i]))
+                i++;
+            int start = i;
+            while(i < length && !WhitespaceTokenizer.isWhitespace(bytes[i]))
+                i++;
+            if(i > start)
+                topN.add(bytes, start, i - start);
+        }
+    }
+
+    @Override
+    public void flush(FlowProcess flowProcess, OperationCall<Utf8SpaceSavingTopN> operationCall)
+    {
+        TupleEntryCollector collector = ((FunctionCall) operationCall).getOutputCollector();
+        Utf8SpaceSavingTopN topN = operationCall.getContext();
+
+        Tuple result = Tuple.size(2);
+        for(int slot = 0; slot < topN.size(); slot++){
+            result.set(0, topN.keyAsString(slot));
+            result.set(1, topN.count(slot));
+            collector.add(result);
+        }
+
+        operationCall.setContext(null);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if(this == object)
+            return true;
+        if(!(object instanceof Utf8TopNFunction))
+            return false;
+        if(!super.equals(object))
+            return false;
+
+        return topK == ((Utf8TopNFunction)object).topK;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + topK;
+    }
+}
@@ -0,0 +1,92 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.Charset;
+
+/**
+ * Splits a line into words at runs of whitespace, the same words as a RegexSplitGenerator
+ * on "\\s+" (space, \t, \n, \x0B, \f, \r) but scanned by hand, without a regex.
+ * <p/>
+ * A line read by {@link RawTextLine} arrives as the raw UTF-8 {@link Text} and is split on
+ * the bytes directly, only the words themselves being decoded. Multi-byte UTF-8 sequences
+ * never contain these ASCII bytes, so no character is ever cut. String lines are scanned
+ * the same way char by char. Empty words are not emitted.
+ *
+ * @author: pavanachanta
+ */
+public class WhitespaceTokenizer extends BaseOperation<Tuple> implements Function<Tuple>
+{
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public WhitespaceTokenizer(Fields fieldDeclaration)
+    {
+        super(1, fieldDeclaration);
+    }
+
+    @Override
+    public void prepare(FlowProcess flowProcess, OperationCall<Tuple> operationCall)
+    {
+        //one output tuple, reset for every word
+        operationCall.setContext(Tuple.size(1));
+    }
+
+    @Override
+    public void operate(FlowProcess flowProcess, FunctionCall<Tuple> functionCall)
+    {
+        Object line = functionCall.getArguments().getObject(0);
+        if(line == null)
+            return;
+
+        TupleEntryCollector collector = functionCall.getOutputCollector();
+        Tuple output = functionCall.getContext();
+
+        if(line instanceof Text){
+            Text text = (Text)line;
+            byte[] bytes = text.getBytes();
+            int length = text.getLength();
+            int i = 0;
+            while(i < length){
+                while(i < length && isWhitespace(bytes[i]))
+                    i++;
+                int start = i;
+                while(i < length && !isWhitespace(bytes[i]))
+                    i++;
+                if(i > start){
+                    output.set(0, new String(bytes, start, i - start, UTF8));
+                    collector.add(output);
+                }
+            }
+        }else{
+            String chars = line.toString();
+            int length = chars.length();
+            int i = 0;
+            while(i < length){
+                while(i < length && isWhitespace(chars.charAt(i)))
+                    i++;
+                int start = i;
+                while(i < length && !isWhitespace(chars.charAt(i)))
+                    i++;
+                if(i > start){
+                    output.set(0, chars.substring(start, i));
+                    collector.add(output);
+                }
+            }
+        }
+    }
+
+    //the \s class of java.util.regex
+    static boolean isWhitespace(int c)
+    {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+}
@@ -0,0 +1,156 @@
+package cascading.pipe.assembly;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.util.TupleViews;
+import com.akeera.collections.AddAllocationTest;
+import com.akeera.collections.SpaceSavingTopN;
+import com.akeera.collections.WordStreams;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link CompositeFunction#operate} the way a map task does, through a {@link ConcreteCall}
+ * with one reused argument {@link TupleEntry}. Checks that a monitored key is counted through the
+ * narrow key view, without being copied, and measures the heap allocated per input tuple against
+ * copying every key as selectTupleCopy did.
+ *
+ * @author: pavanachanta
+ */
+public class CompositeFunctionAllocationTest
+{
+    private static final Fields WORD = new Fields( "word" );
+
+    private static final int MAX_COUNTERS = 1000;
+
+    @Test
+    public void testViewMatchesTupleCopy()
+    {
+        CompositeFunction function = newFunction();
+        ConcreteCall<CompositeFunction.Context, Object> call = prepare( function );
+        Tuple input = call.getArguments().getTuple();
+
+        input.set( 0, "w0" );
+        function.operate( FlowProcess.NULL, call );
+
+        // the sketch stores the copies, it only finds them again if the view hashes and compares like one
+        Tuple view = call.getContext().key;
+        Tuple copy = new Tuple( view );
+        assertEquals( copy.hashCode(), view.hashCode() );
+        assertTrue( view.equals( copy ) );
+        assertTrue( copy.equals( view ) );
+    }
+
+    @Test
+    public void testMonitoredKeyIsHitThroughTheView()
+    {
+        CompositeFunction function = newFunction();
+        ConcreteCall<CompositeFunction.Context, Object> call = prepare( function );
+        CompositeFunction.Context context = call.getContext();
+        Tuple input = call.getArguments().getTuple();
+
+        context.topN.add( new Tuple( "w0" ) );
+
+        input.set( 0, "w0" );
+        for( int i = 0; i < 10; i++ )
+            function.operate( FlowProcess.NULL, call );
+
+        // counted in place, nothing was copied into the pending batch
+        assertEquals( 0, context.numPending );
+        assertEquals( 11, context.topN.getCountByElement( new Tuple( "w0" ) ) );
+
+        input.set( 0, "w1" );
+        function.operate( FlowProcess.NULL, call );
+
+        assertEquals( 1, context.numPending );
+    }
+
+    @Test
+    public void testProbingAllocatesLessThanCopying()
+    {
+        Assume.assumeTrue( AddAllocationTest.allocationCounter() != null );
+
+        String[] stream = WordStreams.zipfStream( 1000000, 20000, 1.1, new Random( 1 ) );
+
+        // warm up both paths so that the measured runs are compiled
+        copying( stream );
+        operating( stream );
+
+        double copying = copying( stream );
+        double operating = operating( stream );
+        System.out.printf( "CompositeFunctionAllocationTest: copy per tuple %.1f bytes/tuple, operate %.1f bytes/tuple%n",
+            copying, operating );
+
+        assertTrue( operating < copying );
+    }
+
+    private static double operating( String[] stream )
+    {
+        CompositeFunction function = newFunction();
+        ConcreteCall<CompositeFunction.Context, Object> call = prepare( function );
+        Tuple input = call.getArguments().getTuple();
+
+        long before = AddAllocationTest.allocatedBytes();
+
+        for( String word : stream )
+        {
+            input.set( 0, word );
+            function.operate( FlowProcess.NULL, call );
+        }
+
+        return (double) ( AddAllocationTest.allocatedBytes() - before ) / stream.length;
+    }
+
+    // the update path before the view: every key copied into the batch
+    private static double copying( String[] stream )
+    {
+        SpaceSavingTopN<Tuple> topN = new SpaceSavingTopN<Tuple>( MAX_COUNTERS );
+        Tuple input = Tuple.size( 1 );
+        Tuple key = TupleViews.createNarrow( new int[]{0} );
+        Tuple[] pending = new Tuple[ CompositeFunction.BATCH_SIZE ];
+        int numPending = 0;
+
+        long before = AddAllocationTest.allocatedBytes();
+
+        for( String word : stream )
+        {
+            input.set( 0, word );
+            TupleViews.reset( key, input );
+            pending[ numPending++ ] = new Tuple( key );
+
+            if( numPending == pending.length )
+            {
+                topN.addAll( pending, 0, numPending );
+                numPending = 0;
+            }
+        }
+
+        topN.addAll( pending, 0, numPending );
+
+        return (double) ( AddAllocationTest.allocatedBytes() - before ) / stream.length;
+    }
+
+    private static CompositeFunction newFunction()
+    {
+        return new CompositeFunction( WORD, Fields.ALL, new CountBySketch.CountPartials( new Fields( "count" ).applyTypes( Long.TYPE ) ), MAX_COUNTERS );
+    }
+
+    private static ConcreteCall<CompositeFunction.Context, Object> prepare( CompositeFunction function )
+    {
+        ConcreteCall<CompositeFunction.Context, Object> call = new ConcreteCall<CompositeFunction.Context, Object>( WORD );
+        function.prepare( FlowProcess.NULL, call );
+
+        // reused for every tuple, like the arguments entry of a map task
+        call.setArguments( new TupleEntry( WORD, Tuple.size( 1 ) ) );
+
+        return call;
+    }
+}
@@ -0,0 +1,141 @@
+package cascading.pipe.assembly;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.FrequentItemsSketch;
+import com.akeera.collections.SketchEngine;
+import com.akeera.hadoop.topn.SpaceSavingTopNWritable;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs {@link MergeSketches} through a {@link ConcreteCall} on map side sketches with more
+ * counters than the topK it emits, written and read back as they are between map and reduce.
+ *
+ * @author: pavanachanta
+ */
+public class MergeSketchesTest
+{
+    private static final Fields WORD_COUNT = new Fields( "word", "count" );
+
+    @Test
+    public void testRankedEmitsTopK() throws IOException
+    {
+        List<String> emitted = merge( new MergeSketches( WORD_COUNT, 3, true ) );
+
+        assertEquals( 3, emitted.size() );
+        assertEquals( "a\t9", emitted.get( 0 ) );
+        assertEquals( "b\t7", emitted.get( 1 ) );
+        assertEquals( "c\t5", emitted.get( 2 ) );
+    }
+
+    @Test
+    public void testRankedEmitsTopKOfEveryEngine() throws IOException
+    {
+        for( SketchEngine engine : SketchEngine.values() )
+        {
+            List<String> emitted = merge( new MergeSketches( WORD_COUNT, 3, true ), engine );
+
+            assertEquals( engine.name(), 3, emitted.size() );
+            assertEquals( engine.name(), "a\t9", emitted.get( 0 ) );
+            assertEquals( engine.name(), "b\t7", emitted.get( 1 ) );
+            assertEquals( engine.name(), "c\t5", emitted.get( 2 ) );
+        }
+    }
+
+    @Test
+    public void testUnrankedEmitsTopK() throws IOException
+    {
+        List<String> emitted = merge( new MergeSketches( WORD_COUNT, 3 ) );
+        Collections.sort( emitted );
+
+        assertEquals( 3, emitted.size() );
+        assertEquals( "a\t9", emitted.get( 0 ) );
+        assertEquals( "b\t7", emitted.get( 1 ) );
+        assertEquals( "c\t5", emitted.get( 2 ) );
+    }
+
+    @Test
+    public void testUnrankedEmitsEveryCounterWithinTopK() throws IOException
+    {
+        List<String> emitted = merge( new MergeSketches( WORD_COUNT, 100 ) );
+
+        assertEquals( 6, emitted.size() );
+    }
+
+    // two map side sketches of 10 counters, a 9, b 7, c 5, d 3, e 2, f 1 once merged
+    private static List<String> merge( MergeSketches merge ) throws IOException
+    {
+        return merge( merge, SketchEngine.LINKED );
+    }
+
+    private static List<String> merge( MergeSketches merge, SketchEngine engine ) throws IOException
+    {
+        FrequentItemsSketch<Tuple> first = engine.create( 10 );
+        first.add( new Tuple( "a" ), 5 );
+        first.add( new Tuple( "b" ), 7 );
+        first.add( new Tuple( "c" ), 2 );
+        first.add( new Tuple( "f" ), 1 );
+
+        FrequentItemsSketch<Tuple> second = engine.create( 10 );
+        second.add( new Tuple( "a" ), 4 );
+        second.add( new Tuple( "c" ), 3 );
+        second.add( new Tuple( "d" ), 3 );
+        second.add( new Tuple( "e" ), 2 );
+
+        ListCollector collector = new ListCollector();
+        ConcreteCall<MergeSketches.Context, Object> call = new ConcreteCall<MergeSketches.Context, Object>( CompositeFunction.SKETCH_FIELDS );
+        call.setOutputCollector( collector );
+
+        merge.start( FlowProcess.NULL, call );
+
+        aggregate( merge, call, first );
+        aggregate( merge, call, second );
+
+        merge.complete( FlowProcess.NULL, call );
+
+        return collector.lines;
+    }
+
+    private static void aggregate( MergeSketches merge, ConcreteCall<MergeSketches.Context, Object> call, FrequentItemsSketch<Tuple> sketch ) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new SpaceSavingTopNWritable( sketch ).write( new DataOutputStream( bytes ) );
+
+        SpaceSavingTopNWritable shuffled = new SpaceSavingTopNWritable();
+        shuffled.readFields( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+
+        call.setArguments( new TupleEntry( CompositeFunction.SKETCH_FIELDS, new Tuple( shuffled ) ) );
+        merge.aggregate( FlowProcess.NULL, call );
+    }
+
+    static class ListCollector extends TupleEntryCollector
+    {
+        final List<String> lines = new ArrayList<String>();
+
+        ListCollector()
+        {
+            super( WORD_COUNT );
+        }
+
+        @Override
+        protected void collect( TupleEntry tupleEntry )
+        {
+            lines.add( tupleEntry.getTuple().toString( "\t", false ) );
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.akeera.collections;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the heap allocated per add once the counters are full, with the HotSpot
+ * per-thread allocation counter. The map side update path through CompositeFunction is
+ * measured by CompositeFunctionAllocationTest.
+ *
+ * @author: pavanachanta
+ */
+public class AddAllocationTest {
+
+    private static final int MAX_COUNTERS = 1000;
+
+    //a key with a cheap equals, so that only the sketch allocates
+    static final class Key {
+        String word;
+
+        Key(String word) {
+            this.word = word;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && word.equals(((Key)o).word);
+        }
+
+        @Override
+        public int hashCode() {
+            return word.hashCode();
+        }
+    }
+
+
+    @Test
+    public void testSteadyStateAddIsAllocationFree(){
+
+        Assume.assumeTrue(allocationCounter() != null);
+
+        String[] words = WordStreams.zipfStream(1000000, 20000, 1.1, new Random(1));
+        Key[] stream = new Key[words.length];
+        for(int i = 0; i < words.length; i++){
+            stream[i] = new Key(words[i]);
+        }
+
+        //the first pass fills the counters and builds up the recycled buckets
+        SpaceSavingTopN<Key> topN = new SpaceSavingTopN<Key>(MAX_COUNTERS);
+        for(Key key : stream){
+            topN.add(key);
+        }
+
+        long before = allocatedBytes();
+        for(Key key : stream){
+            topN.add(key);
+        }
+        double perAdd = (double)(allocatedBytes() - before) / stream.length;
+        System.out.printf("AddAllocationTest: steady state add %.2f bytes/tuple%n", perAdd);
+
+        assertTrue(perAdd < 1);
+    }
+
+    public static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported())
+            return (com.sun.management.ThreadMXBean)bean;
+        return null;
+    }
+
+    public static long allocatedBytes() {
+        return allocationCounter().getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,124 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.util.Hashtable;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author: pavanachanta
+ */
+public class ArraySpaceSavingTopNTest {
+
+
+    @Test
+    public void testSmallerInputWithLimit(){
+
+        final int MAX_COUNTERS = 7;
+        String input = "AWBCHZMSLSURTSJVBNAHBSLJVSDPQABAS" ;
+
+        ArraySpaceSavingTopN<String> topN = new ArraySpaceSavingTopN<String>(MAX_COUNTERS);
+
+        for(char c : input.toCharArray()){
+            topN.add(String.valueOf(c));
+        }
+
+        Hashtable<String,Integer> expected = new Hashtable<String,Integer>();
+        //new elements take over the minimum counter, so counts are overestimates
+        expected.put("S",7);
+        expected.put("B",5);
+        expected.put("A",5);
+        expected.put("Q",4);
+        expected.put("P",4);
+        expected.put("D",4);
+        expected.put("V",4);
+
+        assertEquals(expected.size(), topN.size());
+        for(String s : topN.elements()){
+            assertEquals(expected.get(s).intValue(), topN.getCountByElement(s));
+        }
+    }
+
+
+    @Test
+    public void testMatchesLinkedImplementation(){
+
+        final int MAX_COUNTERS = 50;
+
+        SpaceSavingTopN<Integer> linked = new SpaceSavingTopN<Integer>(MAX_COUNTERS);
+        ArraySpaceSavingTopN<Integer> array = new ArraySpaceSavingTopN<Integer>(MAX_COUNTERS);
+
+        Random rn = new Random(42);
+        for(int i = 0; i < 100000; i++){
+            //skewed stream so that both heavy and evicted keys are exercised
+            int e = (int)Math.floor(Math.pow(rn.nextDouble(), 3) * 500);
+            linked.add(e);
+            array.add(e);
+        }
+
+        assertEquals(linked.size(), array.size());
+        for(Integer e : linked.elements()){
+            assertEquals(linked.getCountByElement(e), array.getCountByElement(e));
+            assertEquals(linked.getErrorByElement(e), array.getErrorByElement(e));
+        }
+        assertEquals(linked.guaranteedTopK(10), array.guaranteedTopK(10));
+        assertEquals(linked.countersForExactTopK(10), array.countersForExactTopK(10));
+        assertEquals(linked.toString().replace("SpaceSavingTopN", ""), array.toString().replace("ArraySpaceSavingTopN", ""));
+    }
+
+
+    @Test
+    public void testWeightedMatchesLinkedImplementation(){
+
+        final int MAX_COUNTERS = 50;
+
+        SpaceSavingTopN<Integer> linked = new SpaceSavingTopN<Integer>(MAX_COUNTERS);
+        ArraySpaceSavingTopN<Integer> array = new ArraySpaceSavingTopN<Integer>(MAX_COUNTERS);
+
+        Random rn = new Random(5);
+        for(int i = 0; i < 100000; i++){
+            int e = (int)Math.floor(Math.pow(rn.nextDouble(), 3) * 500);
+            long weight = 1 + rn.nextInt(rn.nextInt(10) == 0 ? 1000 : 3);
+            linked.add(e, weight);
+            array.add(e, weight);
+        }
+
+        assertEquals(linked.getStreamLength(), array.getStreamLength());
+        for(Integer e : linked.elements()){
+            assertEquals(linked.getCountByElement(e), array.getCountByElement(e));
+            assertEquals(linked.getErrorByElement(e), array.getErrorByElement(e));
+        }
+        assertEquals(linked.toString().replace("SpaceSavingTopN", ""), array.toString().replace("ArraySpaceSavingTopN", ""));
+    }
+
+
+    @Test
+    public void testManyBucketsMatchLinkedImplementation(){
+
+        final int MAX_COUNTERS = 500;
+
+        SpaceSavingTopN<Integer> linked = new SpaceSavingTopN<Integer>(MAX_COUNTERS);
+        ArraySpaceSavingTopN<Integer> array = new ArraySpaceSavingTopN<Integer>(MAX_COUNTERS);
+
+        //hundreds of distinct counts, so that the bucket skip list spans several levels,
+        //and a clear in between that drops every bucket
+        Random rn = new Random(3);
+        for(int round = 0; round < 2; round++){
+            for(int i = 0; i < 100000; i++){
+                int e = rn.nextInt(3000);
+                long weight = 1 + rn.nextInt(1000);
+                linked.add(e, weight);
+                array.add(e, weight);
+            }
+            assertTrue(linked.getBuckets().size() > 100);
+            assertEquals(linked.toString().replace("SpaceSavingTopN", ""), array.toString().replace("ArraySpaceSavingTopN", ""));
+
+            linked.clear();
+            array.clear();
+        }
+    }
+
+}
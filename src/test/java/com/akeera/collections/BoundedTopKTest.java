@@ -0,0 +1,74 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author: pavanachanta
+ */
+public class BoundedTopKTest {
+
+
+    @Test
+    public void testKeepsLargestInDescendingOrder(){
+
+        BoundedTopK<String> topK = new BoundedTopK<String>(3);
+        topK.offer("a", 4);
+        topK.offer("b", 9);
+        topK.offer("c", 1);
+        topK.offer("d", 7);
+        assertFalse(topK.offer("e", 2));
+        //ties go to the element offered first
+        assertFalse(topK.offer("f", 4));
+        topK.sort();
+
+        assertEquals(3, topK.size());
+        assertEquals("b", topK.element(0));
+        assertEquals(9, topK.count(0));
+        assertEquals("d", topK.element(1));
+        assertEquals("a", topK.element(2));
+        assertEquals(4, topK.count(2));
+    }
+
+
+    @Test
+    public void testMatchesFullSort(){
+
+        final int K = 100;
+
+        BoundedTopK<Integer> topK = new BoundedTopK<Integer>(K);
+        List<long[]> all = new ArrayList<long[]>();
+        Random rn = new Random(3);
+        for(int i = 0; i < 10000; i++){
+            long count = rn.nextInt(500);
+            all.add(new long[]{-count, i});
+            topK.offer(i, count);
+        }
+        topK.sort();
+
+        Collections.sort(all, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                return a[0] != b[0] ? (a[0] < b[0] ? -1 : 1) : (a[1] < b[1] ? -1 : 1);
+            }
+        });
+        assertEquals(K, topK.size());
+        for(int i = 0; i < K; i++){
+            assertEquals(all.get(i)[1], topK.element(i).longValue());
+            assertEquals(-all.get(i)[0], topK.count(i));
+        }
+
+        topK.clear();
+        assertEquals(0, topK.size());
+        assertTrue(topK.accepts(0));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author: pavanachanta
+ */
+public class DecayingTopNTest {
+
+    //half-life of 100 time units
+    private static final double LAMBDA = Math.log(2) / 100;
+
+
+    @Test
+    public void testRecentKeysRankFirst(){
+
+        DecayingTopN<String> decaying = new DecayingTopN<String>(10, LAMBDA, 0);
+        SpaceSavingTopN<String> plain = new SpaceSavingTopN<String>(10);
+
+        //"old" is three times as frequent as "new" overall, but ten half-lives earlier
+        for(long t = 0; t < 1000; t++){
+            for(int i = 0; i < 3; i++){
+                decaying.add("old", t);
+                plain.add("old");
+            }
+        }
+        for(long t = 1000; t < 2000; t++){
+            decaying.add("new", t);
+            plain.add("new");
+        }
+
+        assertEquals("old", plain.descendingIterator().next());
+        assertEquals(Arrays.asList("new", "old"), decaying.topK(2));
+        assertEquals(Arrays.asList("new"), decaying.heavyHitters(0.5));
+        assertTrue(decaying.getCount("new", 2000) > 100 * decaying.getCount("old", 2000));
+    }
+
+
+    @Test
+    public void testCountsSurviveRescales(){
+
+        final int KEYS = 20;
+        DecayingTopN<Integer> decaying = new DecayingTopN<Integer>(KEYS, LAMBDA, 0);
+        Map<Integer, Double> exact = new HashMap<Integer, Double>();
+        Random rn = new Random(17);
+
+        //fifty half-lives, the landmark moves every ten
+        long end = 5000;
+        for(long t = 0; t < end; t++){
+            int key = (int)(Math.pow(rn.nextDouble(), 2) * KEYS);
+            decaying.add(key, t);
+            Double count = exact.get(key);
+            exact.put(key, (count == null ? 0 : count) + Math.exp(-LAMBDA * (end - t)));
+        }
+        assertTrue(decaying.getLandmark() >= 4000);
+
+        //no counter was ever evicted, so only the rounding of the units and rescales is left
+        double total = 0;
+        for(Map.Entry<Integer, Double> entry : exact.entrySet()){
+            assertEquals(entry.getValue(), decaying.getCount(entry.getKey(), end), 1e-4 * entry.getValue() + 1e-5);
+            assertEquals(0, decaying.getError(entry.getKey(), end), 1e-9);
+            total += entry.getValue();
+        }
+        assertEquals(total, decaying.getTotal(end), 1e-4 * total);
+
+        //the ranking still follows the decayed counts
+        double previous = Double.MAX_VALUE;
+        for(Integer key : decaying.topK(KEYS)){
+            double count = decaying.getCount(key, end);
+            assertTrue(count <= previous);
+            previous = count;
+        }
+    }
+
+
+    @Test
+    public void testLongGapDecaysToTheFloor(){
+
+        //one half-life per time unit, "c" comes 2000 half-lives after the others
+        DecayingTopN<String> decaying = new DecayingTopN<String>(10, Math.log(2), 0);
+        decaying.add("a", 0);
+        decaying.add("b", 5);
+        decaying.add("c", 2000);
+
+        assertEquals(2000, decaying.getLandmark());
+        assertEquals("c", decaying.topK(1).get(0));
+        assertEquals(1.0, decaying.getCount("c", 2000), 1e-5);
+        assertTrue(decaying.getCount("a", 2000) <= 1.0 / (1 << 20));
+        assertTrue(decaying.getCount("b", 2000) <= 1.0 / (1 << 20));
+
+        decaying.add("c", 2001);
+        //half of the first one left and the new one
+        assertEquals(1.5, decaying.getCount("c", 2001), 1e-5);
+    }
+
+
+    @Test
+    public void testScaleMergesEqualBuckets(){
+
+        SpaceSavingTopN<String> topN = new SpaceSavingTopN<String>(4);
+        topN.add("a", 10);
+        topN.add("b", 11);
+        topN.add("c", 40);
+        topN.add("d", 41);
+        topN.add("e", 3);
+
+        //10 and 11 both round to 1, 40 and 41 to 4, e takes over a's counter at 13, 1 once scaled
+        topN.scale(0.1);
+
+        assertEquals(2, topN.getBuckets().size());
+        assertEquals(1, topN.getCountByElement("b"));
+        assertEquals(1, topN.getCountByElement("e"));
+        assertEquals(1, topN.getErrorByElement("e"));
+        assertEquals(4, topN.getCountByElement("c"));
+        assertEquals(4, topN.getCountByElement("d"));
+        assertEquals(11, topN.getStreamLength());
+
+        //still a working sketch, evicting the older of the two lowest
+        topN.add("f");
+        assertEquals(0, topN.getCountByElement("b"));
+        assertEquals(2, topN.getCountByElement("f"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author: pavanachanta
+ */
+public class LiveSpaceSavingTopNTest {
+
+
+    @Test
+    public void testTopKIsRankedHighestFirst(){
+
+        LiveSpaceSavingTopN<String> topN = new LiveSpaceSavingTopN<String>(10);
+        for(String s : new String[]{"A", "B", "A", "C", "A", "B", "D"}){
+            topN.add(s);
+        }
+
+        BoundedTopK<String> top = topN.topK(2);
+        assertEquals(2, top.size());
+        assertEquals("A", top.element(0));
+        assertEquals(3, top.count(0));
+        assertEquals("B", top.element(1));
+        assertEquals(2, top.count(1));
+        assertEquals(7, topN.getStreamLength());
+    }
+
+
+    @Test
+    public void testReadersSeeConsistentTopKWhileTheWriterAdds() throws InterruptedException {
+
+        //the writer adds the keys 0 to 9 round robin: at any point of the stream the
+        //counts fall with the key and differ by at most one
+        final int KEYS = 10;
+        final int ROUNDS = 100000;
+        final LiveSpaceSavingTopN<Integer> topN = new LiveSpaceSavingTopN<Integer>(100);
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Thread writer = new Thread() {
+            public void run() {
+                for(int round = 0; round < ROUNDS; round++){
+                    for(int key = 0; key < KEYS; key++){
+                        topN.add(key);
+                    }
+                }
+                done.set(true);
+            }
+        };
+        writer.start();
+
+        BoundedTopK<Integer> top = new BoundedTopK<Integer>(KEYS);
+        int polls = 0;
+        while(!done.get() || polls == 0){
+            topN.topK(top);
+            polls++;
+            if(top.size() == 0)
+                continue;
+
+            Set<Integer> seen = new HashSet<Integer>();
+            long highest = top.count(0);
+            for(int i = 0; i < top.size(); i++){
+                assertTrue("duplicate " + top.element(i), seen.add(top.element(i)));
+                assertTrue("counts " + highest + " and " + top.count(i), highest - top.count(i) <= 1);
+            }
+            //the keys with the higher count are a prefix of the round
+            for(int i = 0; i < top.size(); i++){
+                boolean higher = top.count(i) == highest;
+                for(int j = 0; j < top.size(); j++){
+                    if(higher && top.count(j) < highest)
+                        assertTrue(top.element(i) + " counted before " + top.element(j), top.element(i) < top.element(j));
+                }
+            }
+        }
+        writer.join();
+
+        assertEquals((long)KEYS * ROUNDS, topN.getStreamLength());
+        assertTrue(polls > 0);
+    }
+}
@@ -0,0 +1,66 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author: pavanachanta
+ */
+public class LongSpaceSavingTopNTest {
+
+
+    @Test
+    public void testMatchesArrayImplementation(){
+
+        final int MAX_COUNTERS = 50;
+
+        ArraySpaceSavingTopN<Long> array = new ArraySpaceSavingTopN<Long>(MAX_COUNTERS);
+        LongSpaceSavingTopN longs = new LongSpaceSavingTopN(MAX_COUNTERS);
+
+        Random rn = new Random(29);
+        for(int i = 0; i < 100000; i++){
+            //spread out ids, negative ones included
+            long e = ((long)Math.floor(Math.pow(rn.nextDouble(), 3) * 500) - 100) * 0x9E3779B97F4A7C15L;
+            long weight = 1 + rn.nextInt(3);
+            array.add(e, weight);
+            longs.add(e, weight);
+        }
+
+        assertEquals(array.size(), longs.size());
+        assertEquals(array.getStreamLength(), longs.getStreamLength());
+        for(int slot = 0; slot < longs.size(); slot++){
+            long key = longs.key(slot);
+            assertEquals(array.getCountByElement(key), longs.count(slot));
+            assertEquals(array.getCountByElement(key), longs.getCountByKey(key));
+            assertEquals(array.getErrorByElement(key), longs.getErrorByKey(key));
+            assertEquals(array.getLowerBound(key), longs.getLowerBound(key));
+        }
+        assertEquals(array.getUpperBound(-1L), longs.getUpperBound(-1L));
+        assertEquals(array.toString().replace("ArraySpaceSavingTopN", ""), longs.toString().replace("LongSpaceSavingTopN", ""));
+    }
+
+
+    @Test
+    public void testManyBucketsMatchArrayImplementation(){
+
+        final int MAX_COUNTERS = 500;
+
+        ArraySpaceSavingTopN<Long> array = new ArraySpaceSavingTopN<Long>(MAX_COUNTERS);
+        LongSpaceSavingTopN longs = new LongSpaceSavingTopN(MAX_COUNTERS);
+
+        //hundreds of distinct counts, the bucket arrays and their skip list grow several times
+        Random rn = new Random(31);
+        for(int i = 0; i < 100000; i++){
+            long e = rn.nextInt(3000);
+            long weight = 1 + rn.nextInt(1000);
+            array.add(e, weight);
+            longs.add(e, weight);
+        }
+
+        assertEquals(array.toString().replace("ArraySpaceSavingTopN", ""), longs.toString().replace("LongSpaceSavingTopN", ""));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author: pavanachanta
+ */
+public class OpenAddressingIndexTest {
+
+
+    @Test
+    public void testPutIfAbsent(){
+
+        OpenAddressingIndex<String> index = new OpenAddressingIndex<String>(3);
+
+        assertEquals(-1, index.putIfAbsent("X", 0));
+        assertEquals(-1, index.putIfAbsent("Y", 1));
+        assertEquals(0, index.putIfAbsent("X", 2));
+        assertEquals(1, index.get("Y"));
+        assertEquals(-1, index.get("Z"));
+        assertEquals(2, index.size());
+    }
+
+
+    @Test
+    public void testRemoveUnderChurn(){
+
+        final int MAX_SIZE = 64;
+
+        OpenAddressingIndex<Integer> index = new OpenAddressingIndex<Integer>(MAX_SIZE);
+        Map<Integer,Integer> expected = new HashMap<Integer,Integer>();
+
+        Random rn = new Random(7);
+        for(int i = 0; i < 200000; i++){
+            Integer key = rn.nextInt(1000);
+            if(expected.containsKey(key)){
+                assertEquals(expected.remove(key).intValue(), index.remove(key));
+            }else if(expected.size() <= MAX_SIZE){
+                expected.put(key, i);
+                assertEquals(-1, index.putIfAbsent(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for(int key = 0; key < 1000; key++){
+            Integer slot = expected.get(key);
+            assertEquals(slot == null ? -1 : slot.intValue(), index.get(key));
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Properties every {@link SketchEngine} has to keep.
+ *
+ * @author: pavanachanta
+ */
+public class SketchEngineTest {
+
+    private static final int MAX_COUNTERS = 100;
+
+
+    @Test
+    public void testBoundsHold(){
+
+        for(SketchEngine engine : SketchEngine.values()){
+            FrequentItemsSketch<Long> topN = engine.create(MAX_COUNTERS);
+            Map<Long, Long> exact = new HashMap<Long, Long>();
+            addStream(topN, exact, new Random(11), 100000);
+
+            assertEquals(engine.name(), 100032, topN.getStreamLength());
+            assertBounds(engine, topN, exact);
+        }
+    }
+
+
+    @Test
+    public void testMergeKeepsBounds(){
+
+        for(SketchEngine engine : SketchEngine.values()){
+            FrequentItemsSketch<Long> left = engine.create(MAX_COUNTERS);
+            FrequentItemsSketch<Long> right = engine.create(MAX_COUNTERS);
+            Map<Long, Long> exact = new HashMap<Long, Long>();
+            addStream(left, exact, new Random(1), 50000);
+            addStream(right, exact, new Random(2), 30000);
+
+            left.merge(right);
+
+            assertEquals(engine.name(), 80064, left.getStreamLength());
+            assertBounds(engine, left, exact);
+        }
+    }
+
+
+    @Test
+    public void testMergeRejectsOtherEngines(){
+
+        for(SketchEngine engine : SketchEngine.values()){
+            SketchEngine other = SketchEngine.values()[(engine.ordinal() + 1) % SketchEngine.values().length];
+            try{
+                engine.<String>create(10).merge(other.<String>create(10));
+                throw new AssertionError(engine + " merged a " + other + " sketch");
+            }catch(IllegalArgumentException expected){
+            }
+        }
+    }
+
+
+    @Test
+    public void testWriteReadRoundTrip() throws IOException {
+
+        for(SketchEngine engine : SketchEngine.values()){
+            FrequentItemsSketch<Long> topN = engine.create(MAX_COUNTERS);
+            addStream(topN, new HashMap<Long, Long>(), new Random(5), 20000);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            topN.write(new DataOutputStream(bytes), KeySerializers.LONG);
+            FrequentItemsSketch<Long> copy = engine.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), KeySerializers.LONG);
+
+            assertEquals(engine.name(), topN.size(), copy.size());
+            assertEquals(engine.name(), topN.getStreamLength(), copy.getStreamLength());
+            assertEquals(engine.name(), topN.getMinCount(), copy.getMinCount());
+            for(Long e : topN.elements()){
+                assertEquals(engine.name(), topN.getCountByElement(e), copy.getCountByElement(e));
+                assertEquals(engine.name(), topN.getLowerBound(e), copy.getLowerBound(e));
+                assertEquals(engine.name(), topN.getUpperBound(e), copy.getUpperBound(e));
+            }
+            assertEquals(engine.name(), topN.guaranteedTopK(10), copy.guaranteedTopK(10));
+        }
+    }
+
+
+    @Test
+    public void testEngineOfItsSketches(){
+
+        for(SketchEngine engine : SketchEngine.values()){
+            assertEquals(engine, SketchEngine.of(engine.create(10)));
+        }
+    }
+
+
+    @Test
+    public void testSpaceSavingEnginesShareTheFormat() throws IOException {
+
+        SpaceSavingTopN<Long> linked = new SpaceSavingTopN<Long>(MAX_COUNTERS);
+        addStream(linked, new HashMap<Long, Long>(), new Random(9), 20000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        linked.write(new DataOutputStream(bytes), KeySerializers.LONG);
+        ArraySpaceSavingTopN<Long> array = ArraySpaceSavingTopN.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), KeySerializers.LONG);
+
+        assertEquals(linked.toString().replace("SpaceSavingTopN", ""), array.toString().replace("ArraySpaceSavingTopN", ""));
+    }
+
+
+    @Test
+    public void testHeavyHitters(){
+
+        final double PHI = 0.01;
+
+        for(SketchEngine engine : SketchEngine.values()){
+            FrequentItemsSketch<Long> topN = engine.create(MAX_COUNTERS);
+            Map<Long, Long> exact = new HashMap<Long, Long>();
+            addStream(topN, exact, new Random(13), 100000);
+            double threshold = PHI * topN.getStreamLength();
+
+            List<Long> heavy = topN.heavyHitters(PHI);
+            List<Long> guaranteed = topN.guaranteedHeavyHitters(PHI);
+            assertTrue(engine.name(), guaranteed.size() > 0);
+
+            //highest estimate first, each upper bound reaching phi N
+            long previous = Long.MAX_VALUE;
+            for(Long e : heavy){
+                assertTrue(engine.name() + " " + e, topN.getCountByElement(e) <= previous);
+                assertTrue(engine.name() + " " + e, topN.getUpperBound(e) >= threshold);
+                previous = topN.getCountByElement(e);
+            }
+            //no false positives among the guaranteed ones
+            for(Long e : guaranteed){
+                assertTrue(engine.name() + " " + e, exact.get(e) >= threshold);
+                assertTrue(engine.name() + " " + e, heavy.contains(e));
+            }
+            //no false negatives while unmonitored elements stay below phi N
+            if(topN.getMinCount() < threshold){
+                for(Map.Entry<Long, Long> entry : exact.entrySet()){
+                    if(entry.getValue() >= threshold)
+                        assertTrue(engine.name() + " " + entry.getKey(), heavy.contains(entry.getKey()));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testGuaranteedTopKIsTrueTopK(){
+
+        final int K = 10;
+
+        for(SketchEngine engine : SketchEngine.values()){
+            FrequentItemsSketch<Long> topN = engine.create(MAX_COUNTERS);
+            Map<Long, Long> exact = new HashMap<Long, Long>();
+            addStream(topN, exact, new Random(7), 100000);
+
+            List<Map.Entry<Long, Long>> sorted = new ArrayList<Map.Entry<Long, Long>>(exact.entrySet());
+            Collections.sort(sorted, new Comparator<Map.Entry<Long, Long>>() {
+                public int compare(Map.Entry<Long, Long> a, Map.Entry<Long, Long> b) {
+                    return b.getValue().compareTo(a.getValue());
+                }
+            });
+            long kthTrue = sorted.get(K - 1).getValue();
+
+            List<Long> guaranteed = topN.guaranteedTopK(K);
+            assertTrue(engine.name(), guaranteed.size() > 0);
+            for(Long e : guaranteed){
+                assertTrue(engine.name() + " " + e, exact.get(e) >= kthTrue);
+            }
+        }
+    }
+
+
+    @Test
+    public void testMisraGriesDecrements(){
+
+        MisraGriesTopN<String> topN = new MisraGriesTopN<String>(2);
+        for(String s : new String[]{"A", "B", "A", "C", "A", "D", "B"}){
+            topN.add(s);
+        }
+
+        //C cancels against A and B, dropping B, and the last B against A and D
+        assertEquals(1, topN.size());
+        assertEquals(1, topN.getCountByElement("A"));
+        assertEquals(0, topN.getCountByElement("B"));
+        assertEquals(2, topN.getMinCount());
+        assertEquals(3, topN.getUpperBound("A"));
+        assertEquals(2, topN.getUpperBound("B"));
+    }
+
+
+    @Test
+    public void testLossyCountingPrunesOnProbes(){
+
+        LossyCountingTopN<String> topN = new LossyCountingTopN<String>(10);
+        topN.add("hot");
+        for(int i = 0; i < 5; i++){
+            topN.add("cold" + i);
+        }
+
+        //only monitored updates until past the window boundary, the singletons must go anyway
+        for(int i = 0; i < 10; i++){
+            assertTrue(topN.addIfMonitored("hot", 1));
+        }
+
+        assertEquals(1, topN.size());
+        assertEquals(11, topN.getCountByElement("hot"));
+        assertEquals(1, topN.getMinCount());
+    }
+
+
+    @Test
+    public void testOrderByCountIsStable(){
+
+        Random rn = new Random(7);
+        for(int n : new int[]{0, 1, 31, 32, 33, 100, 1000}){
+            final long[] counts = new long[n];
+            for(int i = 0; i < n; i++){
+                counts[i] = rn.nextInt(20);
+            }
+
+            //the boxed sort the merges used to do
+            List<Integer> expected = new ArrayList<Integer>();
+            for(int i = 0; i < n; i++){
+                expected.add(i);
+            }
+            Collections.sort(expected, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return counts[a] < counts[b] ? -1 : (counts[a] == counts[b] ? 0 : 1);
+                }
+            });
+
+            int[] ascending = SketchQueries.orderByCount(counts, n, false);
+            int[] descending = SketchQueries.orderByCount(counts, n, true);
+            assertEquals(n, ascending.length);
+            for(int i = 0; i < n; i++){
+                assertEquals(expected.get(i).intValue(), ascending[i]);
+                assertTrue(i == 0 || counts[descending[i - 1]] > counts[descending[i]]
+                        || (counts[descending[i - 1]] == counts[descending[i]] && descending[i - 1] < descending[i]));
+            }
+        }
+    }
+
+
+    /**
+     * Adds length draws, rounded up to whole batches of 64, from a skewed distribution
+     * over 2000 ids, in batches and one by one, counting them exactly as well.
+     */
+    private static void addStream(FrequentItemsSketch<Long> topN, Map<Long, Long> exact, Random rn, int length){
+        Long[] batch = new Long[64];
+        for(int i = 0; i < length; i += batch.length){
+            for(int j = 0; j < batch.length; j++){
+                long e = (long)Math.floor(Math.pow(rn.nextDouble(), 4) * 2000);
+                batch[j] = e;
+                Long count = exact.get(e);
+                exact.put(e, count == null ? 1 : count + 1);
+            }
+            if((i / batch.length) % 2 == 0){
+                topN.addAll(batch, 0, batch.length);
+            }else{
+                for(Long e : batch){
+                    topN.add(e);
+                }
+            }
+        }
+    }
+
+    private static void assertBounds(SketchEngine engine, FrequentItemsSketch<Long> topN, Map<Long, Long> exact){
+        for(Map.Entry<Long, Long> entry : exact.entrySet()){
+            long e = entry.getKey();
+            long count = entry.getValue();
+            assertTrue(engine + " lower bound of " + e, topN.getLowerBound(e) <= count);
+            assertTrue(engine + " upper bound of " + e, topN.getUpperBound(e) >= count);
+            assertTrue(engine + " unmonitored bound", topN.getMinCount() >= (topN.getCountByElement(e) == 0 ? count : 0));
+        }
+    }
+}
@@ -6,9 +6,21 @@ import com.akeera.collections.Bucket;
 import com.akeera.collections.SpaceSavingTopN;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author: pavanachanta
@@ -53,13 +65,14 @@ public class SpaceSavingTopNTest {
         }
 
         Hashtable<String,Integer> expected = new Hashtable<String,Integer>();
-        expected.put("S",6);
-        expected.put("B",3);
-        expected.put("A",2);
-        expected.put("Q",1);
-        expected.put("P",1);
-        expected.put("D",1);
-        expected.put("V",1);
+        //new elements take over the minimum counter, so counts are overestimates
+        expected.put("S",7);
+        expected.put("B",5);
+        expected.put("A",5);
+        expected.put("Q",4);
+        expected.put("P",4);
+        expected.put("D",4);
+        expected.put("V",4);
 
         assertTopNEquals(topN,expected);
 
@@ -107,4 +120,239 @@ public class SpaceSavingTopNTest {
         }
     }
 
+
+
+    @Test
+    public void testErrorBounds(){
+
+        final int MAX_COUNTERS = 20;
+
+        SpaceSavingTopN<Integer> topN = new SpaceSavingTopN<Integer>(MAX_COUNTERS);
+
+        int[] counts = new int[200];
+        Random rn = new Random(11);
+        for(int i = 0; i < 20000; i++){
+            int e = (int)Math.floor(Math.pow(rn.nextDouble(), 4) * counts.length);
+            counts[e]++;
+            topN.add(e);
+        }
+
+        assertEquals(20000, topN.getStreamLength());
+        for(int e = 0; e < counts.length; e++){
+            assertTrue(topN.getLowerBound(e) <= counts[e]);
+            assertTrue(counts[e] <= topN.getUpperBound(e));
+        }
+
+        //whatever is reported as guaranteed must be in the exact top-k
+        final int K = 5;
+        int[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        int kthTrueCount = sorted[sorted.length - K];
+        for(Integer e : topN.guaranteedTopK(K)){
+            assertTrue(counts[e] >= kthTrueCount);
+        }
+    }
+
+
+    @Test
+    public void testGuaranteedTopK(){
+
+        SpaceSavingTopN<String> topN = new SpaceSavingTopN<String>(7);
+
+        for(char c : "AWBCHZMSLSURTSJVBNAHBSLJVSDPQABAS".toCharArray()){
+            topN.add(String.valueOf(c));
+        }
+
+        //S is bounded by [6,7] while everything else is at most 5
+        assertEquals(Arrays.asList("S"), topN.guaranteedTopK(1));
+        assertEquals(7, topN.countersForExactTopK(1));
+        //B and A are tied at 5
+        assertEquals(-1, topN.countersForExactTopK(2));
+    }
+
+
+    @Test
+    public void testWeightedAdd(){
+
+        final int MAX_COUNTERS = 1000;
+
+        SpaceSavingTopN<Integer> topN = new SpaceSavingTopN<Integer>(MAX_COUNTERS);
+
+        long[] counts = new long[MAX_COUNTERS];
+        Random rn = new Random(3);
+        for(int i = 0; i < 50000; i++){
+            int e = rn.nextInt(MAX_COUNTERS);
+            //mostly small weights with the odd huge jump past many buckets
+            long weight = rn.nextInt(10) == 0 ? 1L + rn.nextInt(Integer.MAX_VALUE) : 1 + rn.nextInt(5);
+            counts[e] += weight;
+            topN.add(e, weight);
+        }
+
+        //enough counters, so every count is exact
+        for(int e = 0; e < MAX_COUNTERS; e++){
+            assertEquals(counts[e], topN.getCountByElement(e));
+        }
+
+        //buckets stay strictly ordered by count
+        Node<Bucket> bucketNode = topN.getBuckets().getFirst();
+        while(bucketNode.next != null){
+            assertTrue(bucketNode.item.count < bucketNode.next.item.count);
+            bucketNode = bucketNode.next;
+        }
+    }
+
+
+    @Test
+    public void testAddAll(){
+
+        String[] keys = "AWBCHZMSLSURTSJVBNAHBSLJVSDPQABAS".split("");
+
+        SpaceSavingTopN<String> batched = new SpaceSavingTopN<String>(26);
+        SpaceSavingTopN<String> single = new SpaceSavingTopN<String>(26);
+
+        for(int from = 0; from < keys.length; from += 8){
+            batched.addAll(keys, from, Math.min(keys.length, from + 8));
+        }
+        for(String key : keys){
+            single.add(key);
+        }
+
+        assertEquals(single.getStreamLength(), batched.getStreamLength());
+        assertEquals(single.size(), batched.size());
+        for(String key : single.elements()){
+            assertEquals(single.getCountByElement(key), batched.getCountByElement(key));
+        }
+    }
+
+
+    @Test
+    public void testMergeKeepsBounds(){
+
+        final int MAX_COUNTERS = 30;
+        final int SKETCHES = 8;
+
+        long[] counts = new long[300];
+        List<SpaceSavingTopN<Integer>> sketches = new ArrayList<SpaceSavingTopN<Integer>>();
+        Random rn = new Random(23);
+        for(int s = 0; s < SKETCHES; s++){
+            SpaceSavingTopN<Integer> topN = new SpaceSavingTopN<Integer>(MAX_COUNTERS);
+            for(int i = 0; i < 5000; i++){
+                //each sketch sees a differently shifted skew
+                int e = ((int)Math.floor(Math.pow(rn.nextDouble(), 3) * 200) + 10 * s) % counts.length;
+                counts[e]++;
+                topN.add(e);
+            }
+            sketches.add(topN);
+        }
+
+        SpaceSavingTopN<Integer> merged = SpaceSavingTopN.mergeAll(sketches, new ForkJoinPool(4));
+
+        assertEquals(SKETCHES * 5000, merged.getStreamLength());
+        assertEquals(MAX_COUNTERS, merged.size());
+        for(int e = 0; e < counts.length; e++){
+            assertTrue(merged.getLowerBound(e) <= counts[e]);
+            assertTrue(counts[e] <= merged.getUpperBound(e));
+            assertTrue(merged.getErrorByElement(e) <= merged.getStreamLength() / MAX_COUNTERS);
+        }
+    }
+
+
+    @Test
+    public void testMergeWithoutEvictionIsExact(){
+
+        SpaceSavingTopN<String> left = new SpaceSavingTopN<String>(26);
+        SpaceSavingTopN<String> right = new SpaceSavingTopN<String>(26);
+        SpaceSavingTopN<String> all = new SpaceSavingTopN<String>(26);
+
+        String input = "AWBCHZMSLSURTSJVBNAHBSLJVSDPQABAS";
+        for(int i = 0; i < input.length(); i++){
+            String key = String.valueOf(input.charAt(i));
+            (i % 2 == 0 ? left : right).add(key);
+            all.add(key);
+        }
+
+        left.merge(right);
+
+        assertEquals(all.size(), left.size());
+        for(String key : all.elements()){
+            assertEquals(all.getCountByElement(key), left.getCountByElement(key));
+            assertEquals(0, left.getErrorByElement(key));
+        }
+    }
+
+
+    @Test
+    public void testWriteReadRoundTrip() throws IOException {
+
+        SpaceSavingTopN<String> left = new SpaceSavingTopN<String>(40);
+        SpaceSavingTopN<String> right = new SpaceSavingTopN<String>(40);
+        Random rn = new Random(11);
+        for(int i = 0; i < 20000; i++){
+            String e = "k" + (int)Math.floor(Math.pow(rn.nextDouble(), 3) * 300);
+            (i % 3 == 0 ? left : right).add(e, 1 + rn.nextInt(4));
+        }
+        //merging leaves a bound on the unmonitored elements, which has to survive too
+        left.merge(right);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        left.write(new DataOutputStream(bytes), KeySerializers.STRING);
+        SpaceSavingTopN<String> read = SpaceSavingTopN.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), KeySerializers.STRING);
+
+        assertEquals(left.toString(), read.toString());
+        assertEquals(left.size(), read.size());
+        assertEquals(left.getStreamLength(), read.getStreamLength());
+        assertEquals(left.getUpperBound("unseen"), read.getUpperBound("unseen"));
+        for(String e : left.elements()){
+            assertEquals(left.getCountByElement(e), read.getCountByElement(e));
+            assertEquals(left.getErrorByElement(e), read.getErrorByElement(e));
+        }
+
+        //the copy keeps working as a sketch
+        left.add("k0", 5);
+        read.add("k0", 5);
+        assertEquals(left.toString(), read.toString());
+    }
+
+
+    @Test
+    public void testDescendingIterator(){
+
+        SpaceSavingTopN<String> topN = new SpaceSavingTopN<String>(20);
+        Random rn = new Random(11);
+        for(int i = 0; i < 5000; i++){
+            topN.add("k" + (int)Math.pow(rn.nextInt(1000) + 1, 0.6));
+        }
+
+        //every counter once, counts never increasing, count and error those of the sketch
+        CounterIterator<String> counters = topN.descendingIterator();
+        List<String> seen = new ArrayList<String>();
+        long previous = Long.MAX_VALUE;
+        while(counters.hasNext()){
+            String e = counters.next();
+            seen.add(e);
+            assertTrue(counters.count() <= previous);
+            assertEquals(topN.getCountByElement(e), counters.count());
+            assertEquals(topN.getErrorByElement(e), counters.error());
+            assertEquals(topN.getLowerBound(e), counters.lowerBound());
+            previous = counters.count();
+        }
+        assertEquals(topN.size(), seen.size());
+        assertEquals(topN.size(), new HashSet<String>(seen).size());
+
+        //the limited one stops after k, at the same elements
+        CounterIterator<String> top = topN.descendingIterator(5);
+        for(int i = 0; i < 5; i++){
+            assertEquals(seen.get(i), top.next());
+        }
+        assertTrue(!top.hasNext());
+        assertTrue(!new SpaceSavingTopN<String>(3).descendingIterator().hasNext());
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsUnknownVersion() throws IOException {
+        SpaceSavingTopN.read(new DataInputStream(new ByteArrayInputStream(new byte[]{9, 1, 0, 0, 0, 0})), KeySerializers.STRING);
+    }
+
 }
@@ -0,0 +1,138 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author: pavanachanta
+ */
+public class StripedSpaceSavingTopNTest {
+
+    private static final int THREADS = 4;
+    private static final int PER_THREAD = 50000;
+
+
+    @Test
+    public void testConcurrentAddsAreExactWithUnlimitedSpace() throws InterruptedException {
+
+        StripedSpaceSavingTopN<Long> topN = new StripedSpaceSavingTopN<Long>(100000, 8);
+        Map<Long, Long> exact = addConcurrently(topN);
+
+        assertEquals(8, topN.getStripes());
+        assertEquals(THREADS * PER_THREAD, topN.getStreamLength());
+        assertEquals(exact.size(), topN.size());
+        for(Map.Entry<Long, Long> entry : exact.entrySet()){
+            assertEquals((long)entry.getValue(), topN.getCountByElement(entry.getKey()));
+        }
+    }
+
+
+    @Test
+    public void testConcurrentAddsKeepBounds() throws InterruptedException {
+
+        StripedSpaceSavingTopN<Long> topN = new StripedSpaceSavingTopN<Long>(200, 8);
+        Map<Long, Long> exact = addConcurrently(topN);
+
+        assertEquals(THREADS * PER_THREAD, topN.getStreamLength());
+        assertTrue(topN.size() <= 200);
+        for(Map.Entry<Long, Long> entry : exact.entrySet()){
+            long e = entry.getKey();
+            long count = entry.getValue();
+            assertTrue("lower bound of " + e, topN.getLowerBound(e) <= count);
+            assertTrue("upper bound of " + e, topN.getUpperBound(e) >= count);
+            if(topN.getCountByElement(e) == 0)
+                assertTrue("unmonitored " + e, topN.getMinCount() >= count);
+        }
+        for(Long e : topN.guaranteedTopK(5)){
+            assertTrue(e + " is not a top 5 id", e < 5);
+        }
+    }
+
+
+    @Test
+    public void testMergeAndRoundTripKeepTheStripes() throws IOException {
+
+        StripedSpaceSavingTopN<Long> left = new StripedSpaceSavingTopN<Long>(256, 4);
+        StripedSpaceSavingTopN<Long> right = new StripedSpaceSavingTopN<Long>(256, 4);
+        Random rn = new Random(8);
+        for(int i = 0; i < 20000; i++){
+            left.add(skewed(rn));
+            right.add(skewed(rn));
+        }
+        long rightCount = right.getCountByElement(0L);
+        long leftCount = left.getCountByElement(0L);
+
+        left.merge(right);
+        assertEquals(40000, left.getStreamLength());
+        assertEquals(leftCount + rightCount, left.getCountByElement(0L));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        left.write(new DataOutputStream(bytes), KeySerializers.LONG);
+        StripedSpaceSavingTopN<Long> copy = StripedSpaceSavingTopN.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), KeySerializers.LONG);
+
+        assertEquals(4, copy.getStripes());
+        assertEquals(left.size(), copy.size());
+        assertEquals(left.getMinCount(), copy.getMinCount());
+        for(Long e : left.elements()){
+            assertEquals(left.getCountByElement(e), copy.getCountByElement(e));
+            assertEquals(left.getErrorByElement(e), copy.getErrorByElement(e));
+        }
+    }
+
+
+    /**
+     * Adds PER_THREAD skewed ids from each of THREADS threads, half of them one by one
+     * and half in batches, and returns the exact counts.
+     */
+    private static Map<Long, Long> addConcurrently(final StripedSpaceSavingTopN<Long> topN) throws InterruptedException {
+        final Long[][] streams = new Long[THREADS][PER_THREAD];
+        Map<Long, Long> exact = new HashMap<Long, Long>();
+        for(int t = 0; t < THREADS; t++){
+            Random rn = new Random(t);
+            for(int i = 0; i < PER_THREAD; i++){
+                long e = skewed(rn);
+                streams[t][i] = e;
+                Long count = exact.get(e);
+                exact.put(e, count == null ? 1 : count + 1);
+            }
+        }
+
+        Thread[] threads = new Thread[THREADS];
+        for(int t = 0; t < THREADS; t++){
+            final Long[] stream = streams[t];
+            threads[t] = new Thread() {
+                public void run() {
+                    for(int i = 0; i < stream.length; i += 100){
+                        if((i / 100) % 2 == 0){
+                            topN.addAll(stream, i, Math.min(stream.length, i + 100));
+                        }else{
+                            for(int j = i; j < Math.min(stream.length, i + 100); j++){
+                                topN.add(stream[j]);
+                            }
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        return exact;
+    }
+
+    private static long skewed(Random rn){
+        return (long)Math.floor(Math.pow(rn.nextDouble(), 4) * 5000);
+    }
+}
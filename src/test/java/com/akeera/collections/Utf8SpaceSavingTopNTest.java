@@ -0,0 +1,77 @@
+package com.akeera.collections;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author: pavanachanta
+ */
+public class Utf8SpaceSavingTopNTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+    @Test
+    public void testMatchesArrayImplementation(){
+
+        final int MAX_COUNTERS = 50;
+
+        ArraySpaceSavingTopN<String> array = new ArraySpaceSavingTopN<String>(MAX_COUNTERS);
+        Utf8SpaceSavingTopN utf8 = new Utf8SpaceSavingTopN(MAX_COUNTERS);
+
+        //keys sliced out of one shared buffer, of varying lengths so that evictions
+        //both reuse and give up arena space
+        byte[] buffer = new byte[64];
+        Random rn = new Random(17);
+        for(int i = 0; i < 100000; i++){
+            int e = (int)Math.floor(Math.pow(rn.nextDouble(), 3) * 500);
+            String key = e % 7 == 0 ? "\u043a\u043b\u044e\u0447" + e : Integer.toString(e, 36) + (e % 3 == 0 ? "-long-suffix" : "");
+            byte[] bytes = key.getBytes(UTF8);
+            int offset = rn.nextInt(buffer.length - bytes.length);
+            System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+
+            long weight = 1 + rn.nextInt(3);
+            array.add(key, weight);
+            utf8.add(buffer, offset, bytes.length, weight);
+        }
+
+        assertEquals(array.size(), utf8.size());
+        assertEquals(array.getStreamLength(), utf8.getStreamLength());
+        for(int slot = 0; slot < utf8.size(); slot++){
+            String key = utf8.keyAsString(slot);
+            byte[] bytes = key.getBytes(UTF8);
+            assertEquals(array.getCountByElement(key), utf8.count(slot));
+            assertEquals(array.getCountByElement(key), utf8.getCountByKey(bytes, 0, bytes.length));
+            assertEquals(array.getErrorByElement(key), utf8.getErrorByKey(bytes, 0, bytes.length));
+        }
+        assertEquals(array.toString().replace("ArraySpaceSavingTopN", ""), utf8.toString().replace("Utf8SpaceSavingTopN", ""));
+    }
+
+
+    @Test
+    public void testUnmonitoredKey(){
+
+        Utf8SpaceSavingTopN utf8 = new Utf8SpaceSavingTopN(2);
+        byte[] a = "a".getBytes(UTF8);
+        byte[] b = "b".getBytes(UTF8);
+        byte[] c = "c".getBytes(UTF8);
+
+        utf8.add(a, 0, 1, 5);
+        utf8.add(b, 0, 1);
+
+        assertEquals(0, utf8.getCountByKey(c, 0, 1));
+        assertEquals(-1, utf8.slotOf(c, 0, 1));
+        assertEquals(1, utf8.getUpperBound(c, 0, 1));
+
+        //c takes over b's counter
+        utf8.add(c, 0, 1);
+        assertEquals(2, utf8.getCountByKey(c, 0, 1));
+        assertEquals(1, utf8.getErrorByKey(c, 0, 1));
+        assertEquals(0, utf8.getCountByKey(b, 0, 1));
+    }
+
+}
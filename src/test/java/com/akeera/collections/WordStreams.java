@@ -0,0 +1,46 @@
+package com.akeera.collections;
+
+import java.util.Random;
+
+/**
+ * Word streams shared by the allocation tests and the JMH benchmarks.
+ *
+ * @author: pavanachanta
+ */
+public final class WordStreams {
+
+    private WordStreams() {
+    }
+
+    /**
+     * Word-like keys drawn from a Zipf(s) distribution over [0, range), built up front.
+     */
+    public static String[] zipfStream(int length, int range, double s, Random rn) {
+        double[] cdf = new double[range];
+        double sum = 0;
+        for(int i = 0; i < range; i++){
+            sum += 1.0 / Math.pow(i + 1, s);
+            cdf[i] = sum;
+        }
+
+        String[] words = new String[range];
+        for(int i = 0; i < range; i++){
+            words[i] = "w" + Integer.toString(i, 36);
+        }
+
+        String[] stream = new String[length];
+        for(int i = 0; i < length; i++){
+            double u = rn.nextDouble() * sum;
+            int lo = 0, hi = range - 1;
+            while(lo < hi){
+                int mid = (lo + hi) >>> 1;
+                if(cdf[mid] < u)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            stream[i] = words[lo];
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,92 @@
+package com.akeera.hadoop.topn;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author: pavanachanta
+ */
+public class ByteLineReaderTest {
+
+
+    @Test
+    public void testReadsTheLinesOfEveryFile() throws IOException {
+
+        File dir = Files.createTempDir();
+        File first = write(dir, "first", "a b\r\n\nccc\n");
+        File empty = write(dir, "empty", "");
+        File last = write(dir, "last", "a line longer than the buffer\nno newline");
+
+        ByteLineReader reader = new ByteLineReader(4, (byte)'\n').add(first).add(empty).add(last);
+        assertEquals(Arrays.asList("a b", "", "ccc", "a line longer than the buffer", "no newline"), read(reader));
+        reader.close();
+    }
+
+
+    @Test
+    public void testSplitsReadEveryLineOnce() throws IOException {
+
+        String text = "one\ntwo three\n\nfour\n55555 5\nsix";
+        File file = write(Files.createTempDir(), "lines", text);
+        List<String> expected = Arrays.asList(text.split("\n", -1));
+
+        for(int splitSize = 1; splitSize <= text.length() + 1; splitSize++){
+            ByteLineReader reader = new ByteLineReader(8, (byte)'\n');
+            for(int from = 0; from < text.length(); from += splitSize){
+                reader.add(file, from, Math.min(text.length(), from + splitSize));
+            }
+            assertEquals("split size " + splitSize, expected, read(reader));
+        }
+    }
+
+
+    @Test
+    public void testRecordOffsets() throws IOException {
+
+        File file = write(Files.createTempDir(), "records", "ab;c;;def");
+        ByteLineReader reader = new ByteLineReader(16, (byte)';').add(file, 2, 9);
+
+        List<Long> offsets = new ArrayList<Long>();
+        while(reader.next()){
+            offsets.add(reader.recordOffset());
+        }
+        //the split starts within "ab", so its first record is "c"
+        assertEquals(Arrays.asList(3L, 5L, 6L), offsets);
+    }
+
+
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingFileFails() throws IOException {
+
+        new ByteLineReader().add(new File(Files.createTempDir(), "missing")).next();
+    }
+
+
+    private static File write(File dir, String name, String text) throws IOException {
+        File file = new File(dir, name);
+        Files.write(text, file, Charsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> read(ByteLineReader reader) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        while(reader.next()){
+            ByteBuffer record = reader.record();
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            lines.add(new String(bytes, Charsets.UTF_8));
+        }
+        return lines;
+    }
+}
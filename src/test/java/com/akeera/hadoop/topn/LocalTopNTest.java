@@ -0,0 +1,66 @@
+package com.akeera.hadoop.topn;
+
+import com.akeera.collections.SpaceSavingTopN;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author: pavanachanta
+ */
+public class LocalTopNTest {
+
+    private final static String TEST_FILE = "src/test/resources/wordcount/words.txt";
+    private final static String EXPECTED_OUTPUT_UNLIMITED_RANKED = "src/test/resources/wordcount/expected-output-unlimited-ranked.txt";
+
+
+    @Test
+    public void testMatchesTheFlowsWithUnlimitedSpace() throws IOException {
+
+        //splits of a few bytes, so most of them start and end within a line
+        for(long splitSize : new long[]{1, 7, 20, 1 << 20}){
+            SpaceSavingTopN<String> topN = LocalTopN.count(Collections.singletonList(new File(TEST_FILE)), 100000000, 3, splitSize);
+
+            StringBuilder output = new StringBuilder();
+            for(String word : LocalTopN.ranked(topN)){
+                output.append(word).append('\t').append(topN.getCountByElement(word)).append('\n');
+            }
+            assertEquals("split size " + splitSize, Files.toString(new File(EXPECTED_OUTPUT_UNLIMITED_RANKED), Charsets.UTF_8), output.toString());
+        }
+    }
+
+
+    @Test
+    public void testCountsEveryWordOnceAcrossSplits() throws IOException {
+
+        File file = new File(Files.createTempDir(), "words");
+        new WorkloadGenerator(WorkloadGenerator.Distribution.ZIPF, WorkloadGenerator.Keys.WORD, 5000, 1.1, 3)
+                .setPerLine(9)
+                .write(file, 300000, 1, 1);
+
+        Map<String, Long> exact = new HashMap<String, Long>();
+        for(String line : Files.readLines(file, Charsets.UTF_8)){
+            for(String word : line.split(" ")){
+                Long count = exact.get(word);
+                exact.put(word, count == null ? 1 : count + 1);
+            }
+        }
+
+        SpaceSavingTopN<String> topN = LocalTopN.count(Collections.singletonList(file), 10000, 4, 4096);
+        assertEquals(300000, topN.getStreamLength());
+        assertEquals(exact.size(), topN.size());
+        List<String> ranked = LocalTopN.ranked(topN);
+        for(String word : ranked){
+            assertEquals(word, (long)exact.get(word), topN.getCountByElement(word));
+        }
+    }
+}
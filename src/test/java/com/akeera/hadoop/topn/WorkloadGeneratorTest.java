@@ -0,0 +1,83 @@
+package com.akeera.hadoop.topn;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author: pavanachanta
+ */
+public class WorkloadGeneratorTest {
+
+
+    @Test
+    public void testOutputDependsOnTheSeedOnly() throws IOException {
+
+        File dir = Files.createTempDir();
+        long rows = 2 * WorkloadGenerator.CHUNK_ROWS + 1000;
+        WorkloadGenerator generator = new WorkloadGenerator(WorkloadGenerator.Distribution.BURSTY, WorkloadGenerator.Keys.WORD, 50000, 1.1, 42)
+                .setPerLine(7)
+                .setPeriod(100000);
+
+        File single = new File(dir, "single");
+        long bytes = generator.write(single, rows, 1, 1);
+        File parts = new File(dir, "parts");
+        generator.write(parts, rows, 3, 4);
+
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for(int part = 0; part < 3; part++){
+            Files.copy(new File(parts, String.format("part-%05d", part)), joined);
+        }
+        byte[] expected = Files.toByteArray(single);
+        assertEquals(bytes, expected.length);
+        assertArrayEquals(expected, joined.toByteArray());
+
+        //whole lines of 7 keys and a shorter last one
+        String text = new String(expected, "US-ASCII");
+        assertEquals((rows + 6) / 7, text.split("\n").length);
+        assertEquals('\n', text.charAt(text.length() - 1));
+    }
+
+
+    @Test
+    public void testAdversarialCyclesThroughTheKeys() throws IOException {
+
+        File file = new File(Files.createTempDir(), "adversarial");
+        new WorkloadGenerator(WorkloadGenerator.Distribution.ADVERSARIAL, WorkloadGenerator.Keys.NUMERIC, 3, 0, 1).write(file, 7, 1, 2);
+
+        assertEquals("0\n1\n2\n0\n1\n2\n0\n", Files.toString(file, Charsets.US_ASCII));
+    }
+
+
+    @Test
+    public void testZipfSamplerMatchesTheWeights(){
+
+        int n = 100;
+        double s = 1.2;
+        double norm = 0;
+        for(int r = 1; r <= n; r++){
+            norm += Math.pow(r, -s);
+        }
+
+        WorkloadGenerator.ZipfSampler sampler = new WorkloadGenerator.ZipfSampler(n, s);
+        Random rn = new Random(3);
+        int draws = 500000;
+        int[] counts = new int[n + 1];
+        for(int i = 0; i < draws; i++){
+            counts[sampler.sample(rn)]++;
+        }
+
+        for(int r : new int[]{1, 2, 10, 100}){
+            double expected = Math.pow(r, -s) / norm;
+            assertEquals("rank " + r, expected, (double)counts[r] / draws, 0.005);
+        }
+    }
+}
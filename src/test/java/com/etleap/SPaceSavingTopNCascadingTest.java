@@ -4,8 +4,14 @@ import com.google.common.io.Files;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
 
@@ -18,14 +24,21 @@ public class SPaceSavingTopNCascadingTest {
     private final static String TEST_FILE = "src/test/resources/wordcount/words.txt";
     private final static String EXPECTED_OUTPUT_UNLIMITED_SPACE = "src/test/resources/wordcount/expected-output-unlimited.txt";
     private final static String EXPECTED_OUTPUT_LIMITED_SPACE = "src/test/resources/wordcount/expected-output-limited.txt";
+    //CountBySketch writes the groups highest count first
+    private final static String EXPECTED_OUTPUT_UNLIMITED_RANKED = "src/test/resources/wordcount/expected-output-unlimited-ranked.txt";
+    private final static String EXPECTED_OUTPUT_LIMITED_RANKED = "src/test/resources/wordcount/expected-output-limited-ranked.txt";
+    private final static String EXPECTED_OUTPUT_LIMITED_UNBATCHED_RANKED = "src/test/resources/wordcount/expected-output-limited-unbatched-ranked.txt";
     private final static String OUT_CASCADING = "out-cascading-wc";
+    //more than one reducer, the ranking must still be global; Hadoop's local runner
+    //caps the reduce tasks at one, so only a cluster really splits the groups
+    private final static String REDUCERS = "2";
 
 
     @Test
     public void testTopNWithUnlimitedSpace() throws Exception {
-        SpaceSavingTopNCascading.main(new String[]{TEST_FILE, OUT_CASCADING,"100000000"});
-        String outCascading = getOutputAsText(OUT_CASCADING + "/part-00000");
-        String expectedOutput = getOutputAsText(EXPECTED_OUTPUT_UNLIMITED_SPACE);
+        run(TEST_FILE, OUT_CASCADING,"100000000");
+        String outCascading = getPartsAsText(OUT_CASCADING);
+        String expectedOutput = getOutputAsText(EXPECTED_OUTPUT_UNLIMITED_RANKED);
 
         //should match exact result when given unlimited space..
         assertEquals(expectedOutput, outCascading);
@@ -34,9 +47,9 @@ public class SPaceSavingTopNCascadingTest {
 
     @Test
     public void testTopNWithLimitedSpace() throws Exception {
-        SpaceSavingTopNCascading.main(new String[]{TEST_FILE, OUT_CASCADING,"10"});
-        String outCascading = getOutputAsText(OUT_CASCADING + "/part-00000");
-        String expectedOutput = getOutputAsText(EXPECTED_OUTPUT_LIMITED_SPACE);
+        run(TEST_FILE, OUT_CASCADING,"10");
+        String outCascading = getPartsAsText(OUT_CASCADING);
+        String expectedOutput = getOutputAsText(EXPECTED_OUTPUT_LIMITED_RANKED);
 
         //should give approximate result when given unlimited space..
         assertEquals(expectedOutput, outCascading);
@@ -45,6 +58,74 @@ public class SPaceSavingTopNCascadingTest {
 
 
 
+    @Test
+    public void testSketchShuffleWithUnlimitedSpace() throws Exception {
+        run(TEST_FILE, OUT_CASCADING,"100000000","sketch");
+
+        //the merged sketch is not grouped by word, so compare the lines regardless of order
+        assertEquals(getSortedLines(EXPECTED_OUTPUT_UNLIMITED_SPACE), getSortedPartLines(OUT_CASCADING));
+    }
+
+
+    @Test
+    public void testSketchShuffleWithLimitedSpace() throws Exception {
+        run(TEST_FILE, OUT_CASCADING,"10","sketch");
+
+        //a single map task, so merging leaves its sketch as is
+        assertEquals(getSortedLines(EXPECTED_OUTPUT_LIMITED_SPACE), getSortedPartLines(OUT_CASCADING));
+    }
+
+
+    @Test
+    public void testUtf8KeysWithLimitedSpace() throws Exception {
+        run(TEST_FILE, OUT_CASCADING,"10","utf8");
+        String outCascading = getPartsAsText(OUT_CASCADING);
+
+        //updated one word at a time, without the batching of CountBySketch
+        assertEquals(getOutputAsText(EXPECTED_OUTPUT_LIMITED_UNBATCHED_RANKED), outCascading);
+    }
+
+
+    private static void run(String... args) {
+        Properties properties = new Properties();
+        properties.setProperty("mapred.reduce.tasks", REDUCERS);
+        SpaceSavingTopNCascading.connect(args, properties).complete();
+    }
+
+    //the part files in order, all of them empty but the one of the final group when ranked
+    public String getPartsAsText(String outputDir) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for(File part : getParts(outputDir)){
+            text.append(getOutputAsText(part.getPath()));
+        }
+        return text.toString();
+    }
+
+    public List<String> getSortedPartLines(String outputDir) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        for(File part : getParts(outputDir)){
+            lines.addAll(Files.readLines(part, Charset.forName("UTF-8")));
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static File[] getParts(String outputDir) {
+        File[] parts = new File(outputDir).listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("part-");
+            }
+        });
+        Arrays.sort(parts);
+        return parts;
+    }
+
+    public List<String> getSortedLines(String outFile) throws IOException {
+        List<String> lines = new ArrayList<String>(Files.readLines(new File(outFile), Charset.forName("UTF-8")));
+        Collections.sort(lines);
+        return lines;
+    }
+
     public String getReducerOutputAsText(String outputDir) throws IOException {
         return getOutputAsText(outputDir + "/part-r-00000");
     }
@@ -5,8 +5,11 @@ import com.google.common.io.Files;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
 
@@ -19,14 +22,21 @@ public class TopNCascadingTest {
     private final static String TEST_FILE = "src/test/resources/wordcount/words.txt";
     private final static String EXPECTED_OUTPUT_UNLIMITED_SPACE = "src/test/resources/wordcount/expected-output-unlimited.txt";
     private final static String EXPECTED_OUTPUT_LIMITED_SPACE = "src/test/resources/wordcount/expected-output-limited.txt";
+    //the summed words are written highest count first
+    private final static String EXPECTED_OUTPUT_UNLIMITED_RANKED = "src/test/resources/wordcount/expected-output-unlimited-ranked.txt";
     private final static String OUT_CASCADING = "out-cascading-wc";
+    //more than one reducer, the ranking must still be global; Hadoop's local runner
+    //caps the reduce tasks at one, so only a cluster really splits the groups
+    private final static String REDUCERS = "2";
 
 
     @Test
     public void testTopNWithUnlimitedSpace() throws Exception {
-        TopNCascading.main(new String[]{TEST_FILE, OUT_CASCADING, "100000000"});
-        String outCascading = getOutputAsText(OUT_CASCADING + "/part-00000");
-        String expectedOutput = getOutputAsText(EXPECTED_OUTPUT_UNLIMITED_SPACE);
+        Properties properties = new Properties();
+        properties.setProperty("mapred.reduce.tasks", REDUCERS);
+        TopNCascading.connect(new String[]{TEST_FILE, OUT_CASCADING, "100000000"}, properties).complete();
+        String outCascading = getPartsAsText(OUT_CASCADING);
+        String expectedOutput = getOutputAsText(EXPECTED_OUTPUT_UNLIMITED_RANKED);
 
         //should match exact result when given unlimited space..
         assertEquals(expectedOutput, outCascading);
@@ -46,6 +56,22 @@ public class TopNCascadingTest {
 //
 
 
+    //the part files in order, all of them empty but the one of the final group
+    public String getPartsAsText(String outputDir) throws IOException {
+        File[] parts = new File(outputDir).listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("part-");
+            }
+        });
+        Arrays.sort(parts);
+
+        StringBuilder text = new StringBuilder();
+        for(File part : parts){
+            text.append(getOutputAsText(part.getPath()));
+        }
+        return text.toString();
+    }
+
     public String getReducerOutputAsText(String outputDir) throws IOException {
         return getOutputAsText(outputDir + "/part-r-00000");
     }
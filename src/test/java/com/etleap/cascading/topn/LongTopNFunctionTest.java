@@ -0,0 +1,93 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.LongSpaceSavingTopN;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Runs {@link LongTopNFunction} through a {@link ConcreteCall}: the ids are counted as
+ * primitive longs and the (id, count) pairs emitted on flush.
+ *
+ * @author: pavanachanta
+ */
+public class LongTopNFunctionTest {
+
+    private static final Fields ID = new Fields("id");
+
+    private static final Fields ID_COUNT = new Fields("id", "count");
+
+    @Test
+    public void testCountsIds(){
+        List<String> emitted = run(new LongTopNFunction(ID_COUNT, 10), 7L, 42L, 7L, -1L, null, 7L);
+
+        //the null id is skipped
+        assertEquals(Arrays.asList("-1\t1", "42\t1", "7\t3"), emitted);
+    }
+
+    @Test
+    public void testCoercesIds(){
+        List<String> emitted = run(new LongTopNFunction(ID_COUNT, 10), "42", 42, 42L);
+
+        assertEquals(Arrays.asList("42\t3"), emitted);
+    }
+
+    @Test
+    public void testKeepsTopKCounters(){
+        List<String> emitted = run(new LongTopNFunction(ID_COUNT, 2), 7L, 7L, 42L, 7L, -1L, 42L);
+
+        //-1 replaces 42's counter, then 42 replaces -1's with the error of both
+        assertEquals(Arrays.asList("42\t3", "7\t3"), emitted);
+    }
+
+    @Test
+    public void testEqualityCoversTopK(){
+        assertEquals(new LongTopNFunction(ID_COUNT, 10), new LongTopNFunction(ID_COUNT, 10));
+        assertEquals(new LongTopNFunction(ID_COUNT, 10).hashCode(), new LongTopNFunction(ID_COUNT, 10).hashCode());
+        assertFalse(new LongTopNFunction(ID_COUNT, 10).equals(new LongTopNFunction(ID_COUNT, 20)));
+    }
+
+    private static List<String> run(LongTopNFunction function, Object... ids) {
+        IdCountCollector collector = new IdCountCollector();
+        ConcreteCall<LongSpaceSavingTopN, Object> call = new ConcreteCall<LongSpaceSavingTopN, Object>(ID);
+        call.setOutputCollector(collector);
+        function.prepare(FlowProcess.NULL, call);
+
+        //one entry reused for every id, like the arguments of a map task
+        TupleEntry arguments = new TupleEntry(ID, Tuple.size(1));
+        call.setArguments(arguments);
+        for(Object id : ids){
+            arguments.getTuple().set(0, id);
+            function.operate(FlowProcess.NULL, call);
+        }
+        function.flush(FlowProcess.NULL, call);
+
+        Collections.sort(collector.lines);
+        return collector.lines;
+    }
+
+    static class IdCountCollector extends TupleEntryCollector {
+        final List<String> lines = new ArrayList<String>();
+
+        IdCountCollector() {
+            super(ID_COUNT);
+        }
+
+        @Override
+        protected void collect(TupleEntry tupleEntry) {
+            lines.add(tupleEntry.getLong(0) + "\t" + tupleEntry.getLong(1));
+        }
+    }
+}
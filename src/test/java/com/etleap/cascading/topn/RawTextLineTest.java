@@ -0,0 +1,122 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.hadoop.HadoopFlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads lines through {@link RawTextLine#sourcePrepare} and {@link RawTextLine#source} the way
+ * a map task does: UTF-8 lines come out as the reader's Text, lines in another charset are
+ * decoded into Strings by TextLine.
+ *
+ * @author: pavanachanta
+ */
+public class RawTextLineTest {
+
+    private static final Fields LINE = new Fields("line");
+
+    private static final HadoopFlowProcess FLOW_PROCESS = new HadoopFlowProcess(new JobConf());
+
+    @Test
+    public void testUtf8LinesStayRaw() throws IOException {
+        List<Object> lines = read(new RawTextLine(LINE), "café".getBytes("UTF-8"), "b".getBytes("UTF-8"));
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0) instanceof Text);
+        assertEquals("b", lines.get(1).toString());
+    }
+
+    @Test
+    public void testOtherCharsetsAreDecoded() throws IOException {
+        List<Object> lines = read(new RawTextLine(LINE, LINE, "ISO-8859-1"), "café".getBytes("ISO-8859-1"));
+
+        assertEquals(1, lines.size());
+        assertEquals("café", lines.get(0));
+    }
+
+    @Test
+    public void testOffsetAndLine() throws IOException {
+        Fields fields = new Fields("offset", "line");
+        RawTextLine scheme = new RawTextLine(fields);
+        ConcreteCall<Object[], RecordReader> call = prepare(scheme, fields, "a".getBytes("UTF-8"));
+
+        assertTrue(scheme.source(FLOW_PROCESS, call));
+        assertEquals(0L, call.getIncomingEntry().getTuple().getLong(0));
+        assertEquals("a", call.getIncomingEntry().getTuple().getObject(1).toString());
+    }
+
+    private static List<Object> read(RawTextLine scheme, byte[]... lines) throws IOException {
+        ConcreteCall<Object[], RecordReader> call = prepare(scheme, LINE, lines);
+
+        List<Object> read = new ArrayList<Object>();
+        while(scheme.source(FLOW_PROCESS, call)){
+            Object line = call.getIncomingEntry().getTuple().getObject(0);
+            read.add(line instanceof Text ? new Text((Text)line) : line);
+        }
+        return read;
+    }
+
+    private static ConcreteCall<Object[], RecordReader> prepare(RawTextLine scheme, Fields fields, byte[]... lines) {
+        ConcreteCall<Object[], RecordReader> call = new ConcreteCall<Object[], RecordReader>(fields);
+        call.setInput(new LineReader(lines));
+        call.setIncomingEntry(new TupleEntry(fields, Tuple.size(fields.size())));
+
+        scheme.sourcePrepare(FLOW_PROCESS, call);
+        return call;
+    }
+
+    /**
+     * What the TextInputFormat reader hands over: the byte offset and one reused Text.
+     */
+    static class LineReader implements RecordReader<LongWritable, Text> {
+        private final byte[][] lines;
+        private int next;
+        private long offset;
+
+        LineReader(byte[][] lines) {
+            this.lines = lines;
+        }
+
+        public boolean next(LongWritable key, Text value) {
+            if(next == lines.length)
+                return false;
+            key.set(offset);
+            value.set(lines[next]);
+            offset += lines[next++].length + 1;
+            return true;
+        }
+
+        public LongWritable createKey() {
+            return new LongWritable();
+        }
+
+        public Text createValue() {
+            return new Text();
+        }
+
+        public long getPos() {
+            return offset;
+        }
+
+        public void close() {
+        }
+
+        public float getProgress() {
+            return lines.length == 0 ? 1 : (float)next / lines.length;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import com.akeera.collections.Utf8SpaceSavingTopN;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Runs {@link Utf8TopNFunction} through a {@link ConcreteCall}: raw Text and String lines
+ * are counted as byte slices and the (word, count) pairs emitted on flush.
+ *
+ * @author: pavanachanta
+ */
+public class Utf8TopNFunctionTest {
+
+    private static final Fields LINE = new Fields("line");
+
+    private static final Fields WORD_COUNT = new Fields("word", "count");
+
+    @Test
+    public void testCountsWords(){
+        List<String> emitted = run(new Utf8TopNFunction(WORD_COUNT, 10), new Text(" a b\ta "), "naïve a", new Text("b\r"));
+
+        assertEquals(Arrays.asList("a\t3", "b\t2", "naïve\t1"), emitted);
+    }
+
+    @Test
+    public void testKeepsTopKCounters(){
+        List<String> emitted = run(new Utf8TopNFunction(WORD_COUNT, 1), new Text("a a a b"));
+
+        //b replaces a's counter, over-estimated by a's count
+        assertEquals(Arrays.asList("b\t4"), emitted);
+    }
+
+    @Test
+    public void testEqualityCoversTopK(){
+        assertEquals(new Utf8TopNFunction(WORD_COUNT, 10), new Utf8TopNFunction(WORD_COUNT, 10));
+        assertEquals(new Utf8TopNFunction(WORD_COUNT, 10).hashCode(), new Utf8TopNFunction(WORD_COUNT, 10).hashCode());
+        assertFalse(new Utf8TopNFunction(WORD_COUNT, 10).equals(new Utf8TopNFunction(WORD_COUNT, 20)));
+    }
+
+    private static List<String> run(Utf8TopNFunction function, Object... lines) {
+        WordCountCollector collector = new WordCountCollector();
+        ConcreteCall<Utf8SpaceSavingTopN, Object> call = new ConcreteCall<Utf8SpaceSavingTopN, Object>(LINE);
+        call.setOutputCollector(collector);
+        function.prepare(FlowProcess.NULL, call);
+
+        for(Object line : lines){
+            call.setArguments(new TupleEntry(LINE, new Tuple(line)));
+            function.operate(FlowProcess.NULL, call);
+        }
+        function.flush(FlowProcess.NULL, call);
+
+        Collections.sort(collector.lines);
+        return collector.lines;
+    }
+
+    static class WordCountCollector extends TupleEntryCollector {
+        final List<String> lines = new ArrayList<String>();
+
+        WordCountCollector() {
+            super(WORD_COUNT);
+        }
+
+        @Override
+        protected void collect(TupleEntry tupleEntry) {
+            lines.add(tupleEntry.getString(0) + "\t" + tupleEntry.getLong(1));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.etleap.cascading.topn;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs {@link WhitespaceTokenizer#operate} through a {@link ConcreteCall} on the lines that
+ * words.txt does not have: leading and trailing whitespace, tabs, a carriage return left
+ * over from a \r\n line ending, empty lines and multi-byte UTF-8 words. The raw Text
+ * of {@link RawTextLine} and a String line must give the same words, those of
+ * split("\\s+") without the empty ones.
+ *
+ * @author: pavanachanta
+ */
+public class WhitespaceTokenizerTest {
+
+    private static final Fields LINE = new Fields("line");
+
+    private static final String[] LINES = {
+            "  leading and trailing  ",
+            "tab\tseparated\t\twords",
+            "windows line ending\r",
+            "",
+            " \t\r ",
+            "vertical\u000Btab and\fform feed",
+            "naïve café 日本語 😀 été",
+    };
+
+    @Test
+    public void testRawTextMatchesRegexSplit(){
+        for(String line : LINES){
+            assertEquals(line, regexWords(line), tokenize(new Text(line)));
+        }
+    }
+
+    @Test
+    public void testStringLineMatchesRegexSplit(){
+        for(String line : LINES){
+            assertEquals(line, regexWords(line), tokenize(line));
+        }
+    }
+
+    @Test
+    public void testReusedTextIsSplitOnItsLength(){
+        //the record reader reuses one Text, its buffer may hold more bytes than the line
+        Text text = new Text("a much longer first line");
+        text.set("short");
+        assertEquals(Arrays.asList("short"), tokenize(text));
+    }
+
+    @Test
+    public void testEmptyLinesEmitNothing(){
+        assertEquals(new ArrayList<String>(), tokenize(new Text("")));
+        assertEquals(new ArrayList<String>(), tokenize("\r"));
+        assertEquals(new ArrayList<String>(), tokenize(new Text(" \t ")));
+    }
+
+    private static List<String> regexWords(String line) {
+        List<String> words = new ArrayList<String>();
+        for(String word : line.split("\\s+")){
+            if(!word.isEmpty())
+                words.add(word);
+        }
+        return words;
+    }
+
+    private static List<String> tokenize(Object line) {
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer(new Fields("word"));
+        ListCollector collector = new ListCollector();
+
+        ConcreteCall<Tuple, Object> call = new ConcreteCall<Tuple, Object>(LINE);
+        call.setOutputCollector(collector);
+        tokenizer.prepare(FlowProcess.NULL, call);
+
+        call.setArguments(new TupleEntry(LINE, new Tuple(line)));
+        tokenizer.operate(FlowProcess.NULL, call);
+        return collector.words;
+    }
+
+    static class ListCollector extends TupleEntryCollector {
+        final List<String> words = new ArrayList<String>();
+
+        ListCollector() {
+            super(new Fields("word"));
+        }
+
+        @Override
+        protected void collect(TupleEntry tupleEntry) {
+            words.add(tupleEntry.getString(0));
+        }
+    }
+}